@@ -0,0 +1,69 @@
+package com.dainis.spring_boot_library.config;
+
+import com.dainis.spring_boot_library.service.ShelfSummaryCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+import java.time.Duration;
+
+@Configuration
+@EnableCaching
+public class CacheConfiguration {
+
+    public static final String BOOKS = "books";
+
+    public static final String SHELVES = "shelves";
+
+    public static final String IDEMPOTENCY = "idempotency";
+
+    public static final String JWTS = "jwts";
+
+    @Bean
+    public CacheManager cacheManager(@Value("${library.cache.books.maximum-size}") long booksMaximumSize,
+                                     @Value("${library.cache.books.expire-after-write}") Duration booksExpireAfterWrite,
+                                     @Value("${library.cache.shelves.maximum-size}") long shelvesMaximumSize,
+                                     @Value("${library.cache.shelves.expire-after-load}") Duration shelvesExpireAfterLoad,
+                                     @Value("${library.cache.idempotency.maximum-size}") long idempotencyMaximumSize,
+                                     @Value("${library.idempotency.retention}") Duration idempotencyRetention,
+                                     @Value("${library.cache.jwts.maximum-size}") long jwtsMaximumSize,
+                                     @Value("${library.cache.jwts.max-ttl}") Duration jwtsMaxTtl) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setAllowNullValues(false);
+
+        cacheManager.registerCustomCache(BOOKS, Caffeine.newBuilder()
+                .maximumSize(booksMaximumSize)
+                .expireAfterWrite(booksExpireAfterWrite)
+                .recordStats()
+                .build());
+
+        // Kept current by ShelfSummaryCache for this instance's loans; reloaded after expire-after-load to pick up
+        // loans handled by other instances. Async so a load never runs inside the map's compute lock
+        // (see ShelfSummaryCache.get)
+        cacheManager.registerCustomCache(SHELVES, Caffeine.newBuilder()
+                .maximumSize(shelvesMaximumSize)
+                .expireAfter(ShelfSummaryCache.expireAfterLoad(shelvesExpireAfterLoad))
+                .recordStats()
+                .buildAsync());
+
+        // Completed responses by Idempotency-Key; idempotency_record is the source of truth
+        cacheManager.registerCustomCache(IDEMPOTENCY, Caffeine.newBuilder()
+                .maximumSize(idempotencyMaximumSize)
+                .expireAfterWrite(idempotencyRetention)
+                .build());
+
+        // Verified bearer tokens in front of the resource server's JwtDecoder, see CachingJwtDecoder
+        cacheManager.registerCustomCache(JWTS, Caffeine.newBuilder()
+                .maximumSize(jwtsMaximumSize)
+                .expireAfter(CachingJwtDecoder.expireAtTokenExpiry(Clock.systemUTC(), jwtsMaxTtl))
+                .recordStats()
+                .build());
+
+        return cacheManager;
+    }
+}
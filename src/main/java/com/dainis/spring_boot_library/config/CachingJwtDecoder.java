@@ -0,0 +1,85 @@
+package com.dainis.spring_boot_library.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+
+/**
+ * Remembers tokens the resource server has already verified, so a bearer token sent again skips
+ * the signature check and claim validation. Entries are keyed by the token's SHA-256 and expire at the
+ * token's exp, or after the maximum TTL if that is sooner. Tokens that fail to decode are never cached.
+ */
+public class CachingJwtDecoder implements JwtDecoder {
+
+    private final JwtDecoder delegate;
+
+    private final Cache<Object, Object> verified;
+
+    public CachingJwtDecoder(JwtDecoder delegate, Cache<Object, Object> verified) {
+        this.delegate = delegate;
+        this.verified = verified;
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        String key = sha256(token);
+
+        Jwt jwt = (Jwt) verified.getIfPresent(key);
+        if(jwt != null) {
+            return jwt;
+        }
+
+        // Decoded outside the cache's compute lock: the first call may fetch the signing keys,
+        // and two concurrent first requests verifying the same token is harmless
+        jwt = delegate.decode(token);
+        verified.put(key, jwt);
+        return jwt;
+    }
+
+    /**
+     * Expires each verified token at its own exp, capped at maxTtl.
+     */
+    public static Expiry<Object, Object> expireAtTokenExpiry(Clock clock, Duration maxTtl) {
+        return new Expiry<>() {
+            @Override
+            public long expireAfterCreate(Object key, Object value, long currentTime) {
+                Instant expiresAt = ((Jwt) value).getExpiresAt();
+                Duration ttl = expiresAt == null ? maxTtl : Duration.between(clock.instant(), expiresAt);
+
+                if(ttl.isNegative()) {
+                    return 0;
+                }
+                return Math.min(ttl.toNanos(), maxTtl.toNanos());
+            }
+
+            @Override
+            public long expireAfterUpdate(Object key, Object value, long currentTime, long currentDuration) {
+                return expireAfterCreate(key, value, currentTime);
+            }
+
+            @Override
+            public long expireAfterRead(Object key, Object value, long currentTime, long currentDuration) {
+                return currentDuration;
+            }
+        };
+    }
+
+    private static String sha256(String token) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
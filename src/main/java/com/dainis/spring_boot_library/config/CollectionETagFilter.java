@@ -0,0 +1,84 @@
+package com.dainis.spring_boot_library.config;
+
+import com.dainis.spring_boot_library.entity.Book;
+import com.dainis.spring_boot_library.entity.Message;
+import com.dainis.spring_boot_library.entity.Review;
+import com.dainis.spring_boot_library.service.ResourceVersions;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Strong ETags for the book, review and message collection resources, built from the change counters in
+ * {@link ResourceVersions}. A matching If-None-Match is answered with 304 after that one primary key lookup,
+ * before the request reaches the repository, so no page is read or serialized.
+ * Item resources get their ETag from the entity {@code @Version}.
+ */
+@Component
+public class CollectionETagFilter extends OncePerRequestFilter {
+
+    private final Map<String, Class<?>> collections = new LinkedHashMap<>();
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    private ResourceVersions resourceVersions;
+
+    @Autowired
+    public CollectionETagFilter(ResourceVersions resourceVersions) {
+        this.resourceVersions = resourceVersions;
+
+        registerCollection("/api/books", Book.class);
+        collections.put("/api/books/catalog/**", Book.class);
+        registerCollection("/api/reviews", Review.class);
+        collections.put("/api/reviews/rating", Review.class);
+        registerCollection("/api/messages", Message.class);
+    }
+
+    private void registerCollection(String path, Class<?> entityType) {
+        collections.put(path, entityType);
+        collections.put(path + "/search/**", entityType);
+        collections.put(path + "/cursor/**", entityType);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"GET".equals(request.getMethod()) || collectionType(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String etag = resourceVersions.etag(collectionType(request), request.getHeader(HttpHeaders.ACCEPT));
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if(ifNoneMatch != null && ifNoneMatch.contains(etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    private Class<?> collectionType(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+
+        for(Map.Entry<String, Class<?>> collection : collections.entrySet()) {
+            if(pathMatcher.match(collection.getKey(), path)) {
+                return collection.getValue();
+            }
+        }
+        return null;
+    }
+}
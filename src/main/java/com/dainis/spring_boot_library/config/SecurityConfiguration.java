@@ -1,10 +1,13 @@
 package com.dainis.spring_boot_library.config;
 
 import com.okta.spring.boot.oauth.Okta;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.web.accept.ContentNegotiationStrategy;
 import org.springframework.web.accept.HeaderContentNegotiationStrategy;
@@ -15,19 +18,25 @@ import static org.springframework.security.config.Customizer.withDefaults;
 public class SecurityConfiguration {
 
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, JwtDecoder jwtDecoder,
+                                           CacheManager cacheManager) throws Exception {
 
         // Protect endpoints at /api/<type>/secure
         http.authorizeHttpRequests(auth -> auth
                 .requestMatchers("/api/books/secure/**",
                                 "/api/reviews/secure/**",
                                 "/api/messages/secure/**",
-                                "/api/admin/secure/**")
+                                "/api/admin/secure/**",
+                                "/api/payment/secure/**")
                 .authenticated()
                 .anyRequest().permitAll()
         );
 
-        http.oauth2ResourceServer(oauth2 -> oauth2.jwt(withDefaults()));
+        // Repeat requests with the same bearer token skip signature verification
+        JwtDecoder cachingJwtDecoder = new CachingJwtDecoder(jwtDecoder,
+                ((CaffeineCache) cacheManager.getCache(CacheConfiguration.JWTS)).getNativeCache());
+
+        http.oauth2ResourceServer(oauth2 -> oauth2.jwt(jwt -> jwt.decoder(cachingJwtDecoder)));
 
         http.cors(withDefaults());
 
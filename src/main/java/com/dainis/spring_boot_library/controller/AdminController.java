@@ -1,12 +1,21 @@
 package com.dainis.spring_boot_library.controller;
 
 import com.dainis.spring_boot_library.requestmodels.AddBookRequest;
+import com.dainis.spring_boot_library.responsemodels.CacheStatsResponse;
 import com.dainis.spring_boot_library.service.AdminService;
+import com.dainis.spring_boot_library.service.BookImportService;
+import com.dainis.spring_boot_library.service.DataFormat;
+import com.dainis.spring_boot_library.service.ExportService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @CrossOrigin("https://localhost:3000")
 @RestController
 @RequestMapping("/api/admin")
@@ -14,8 +23,15 @@ public class AdminController {
 
     private AdminService adminService;
 
-    public AdminController(AdminService adminService) {
+    private ExportService exportService;
+
+    private BookImportService bookImportService;
+
+    public AdminController(AdminService adminService, ExportService exportService,
+                           BookImportService bookImportService) {
         this.adminService = adminService;
+        this.exportService = exportService;
+        this.bookImportService = bookImportService;
     }
 
     @PutMapping("/secure/increase/book/quantity")
@@ -65,4 +81,56 @@ public class AdminController {
 
         adminService.deleteBook(bookId);
     }
+
+    @GetMapping("/secure/cache/stats")
+    public List<CacheStatsResponse> cacheStats(@AuthenticationPrincipal Jwt jwt) throws Exception {
+        String userType = jwt.getClaim("userType");
+
+        if(userType == null || !userType.equals("admin")) {
+            throw new Exception("Administration page only");
+        }
+
+        return adminService.cacheStats();
+    }
+
+    @PostMapping("/secure/import/books")
+    public void importBooks(@AuthenticationPrincipal Jwt jwt,
+                            @RequestParam(defaultValue = "ndjson") String format,
+                            HttpServletRequest request,
+                            HttpServletResponse response) throws Exception {
+        String userType = jwt.getClaim("userType");
+
+        if(userType == null || !userType.equals("admin")) {
+            throw new Exception("Administration page only");
+        }
+
+        DataFormat importFormat = DataFormat.of(format);
+
+        response.setContentType(DataFormat.NDJSON.contentType());
+        response.setCharacterEncoding("UTF-8");
+
+        bookImportService.importBooks(request.getInputStream(), importFormat, response.getOutputStream());
+    }
+
+    @GetMapping("/secure/export/{dataset}")
+    public void export(@AuthenticationPrincipal Jwt jwt,
+                       @PathVariable String dataset,
+                       @RequestParam(defaultValue = "ndjson") String format,
+                       HttpServletResponse response) throws Exception {
+        String userType = jwt.getClaim("userType");
+
+        if(userType == null || !userType.equals("admin")) {
+            throw new Exception("Administration page only");
+        }
+
+        ExportService.Dataset exportDataset = ExportService.Dataset.of(dataset);
+        DataFormat exportFormat = DataFormat.of(format);
+
+        response.setContentType(exportFormat.contentType());
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"" + exportDataset.fileName(exportFormat) + "\"");
+
+        exportService.export(exportDataset, exportFormat, response.getOutputStream());
+    }
 }
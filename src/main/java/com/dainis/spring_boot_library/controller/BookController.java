@@ -1,8 +1,16 @@
 package com.dainis.spring_boot_library.controller;
 
 import com.dainis.spring_boot_library.entity.Book;
+import com.dainis.spring_boot_library.requestmodels.BulkBooksRequest;
+import com.dainis.spring_boot_library.responsemodels.BookSearchResponse;
+import com.dainis.spring_boot_library.responsemodels.BookSummary;
+import com.dainis.spring_boot_library.responsemodels.BulkBookResult;
+import com.dainis.spring_boot_library.responsemodels.CursorPageResponse;
+import com.dainis.spring_boot_library.responsemodels.LeaderboardResponse;
 import com.dainis.spring_boot_library.responsemodels.ShelfCurrentLoansResponse;
+import com.dainis.spring_boot_library.service.BookSearchService;
 import com.dainis.spring_boot_library.service.BookService;
+import com.dainis.spring_boot_library.service.LeaderboardService;
 import com.dainis.spring_boot_library.utils.ExtractJWT;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -18,9 +26,35 @@ public class BookController {
 
     private BookService bookService;
 
+    private BookSearchService bookSearchService;
+
+    private LeaderboardService leaderboardService;
+
     @Autowired
-    public BookController(BookService bookService) {
+    public BookController(BookService bookService, BookSearchService bookSearchService,
+                          LeaderboardService leaderboardService) {
         this.bookService = bookService;
+        this.bookSearchService = bookSearchService;
+        this.leaderboardService = leaderboardService;
+    }
+
+    @GetMapping("/catalog/search")
+    public BookSearchResponse searchBooks(@RequestParam String query,
+                                          @RequestParam(defaultValue = "0") int page,
+                                          @RequestParam(defaultValue = "10") int size) throws Exception {
+        return bookSearchService.search(query, page, size);
+    }
+
+    @GetMapping("/cursor/category")
+    public CursorPageResponse<BookSummary> booksByCategory(@RequestParam String category,
+                                                    @RequestParam(required = false) String cursor,
+                                                    @RequestParam(defaultValue = "20") int size) throws Exception {
+        return bookService.booksByCategory(category, cursor, size);
+    }
+
+    @GetMapping("/leaderboard")
+    public LeaderboardResponse leaderboard() {
+        return leaderboardService.leaderboard();
     }
 
     @GetMapping("/secure/currentloans")
@@ -51,6 +85,13 @@ public class BookController {
         return bookService.checkoutBook(userEmail, bookId);
     }
 
+    @PutMapping("/secure/checkout/bulk")
+    public List<BulkBookResult> checkoutBooks(@AuthenticationPrincipal Jwt jwt,
+                                              @RequestBody BulkBooksRequest bulkBooksRequest) throws Exception {
+        String userEmail = jwt.getClaim("email");
+        return bookService.checkoutBooks(userEmail, bulkBooksRequest.getBookIds());
+    }
+
     @PutMapping("/secure/return")
     public void returnBook(@AuthenticationPrincipal Jwt jwt,
                            @RequestParam Long bookId) throws Exception {
@@ -58,6 +99,13 @@ public class BookController {
         bookService.returnBook(userEmail, bookId);
     }
 
+    @PutMapping("/secure/return/bulk")
+    public List<BulkBookResult> returnBooks(@AuthenticationPrincipal Jwt jwt,
+                                            @RequestBody BulkBooksRequest bulkBooksRequest) throws Exception {
+        String userEmail = jwt.getClaim("email");
+        return bookService.returnBooks(userEmail, bulkBooksRequest.getBookIds());
+    }
+
     @PutMapping("/secure/renew/loan")
     public void renewLoan(@AuthenticationPrincipal Jwt jwt,
                           @RequestParam Long bookId) throws Exception {
@@ -0,0 +1,53 @@
+package com.dainis.spring_boot_library.controller;
+
+import com.dainis.spring_boot_library.entity.Book;
+import com.dainis.spring_boot_library.responsemodels.BookDetails;
+import com.dainis.spring_boot_library.service.BookCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.rest.webmvc.RepositoryRestController;
+import org.springframework.data.rest.webmvc.support.RepositoryEntityLinks;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.Link;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.Optional;
+
+/**
+ * Serves the Spring Data REST book item resource from {@link BookCache}, with the same links
+ * and the same version ETag Spring Data REST would send.
+ */
+@RepositoryRestController
+public class BookResourceController {
+
+    private BookCache bookCache;
+
+    private RepositoryEntityLinks entityLinks;
+
+    @Autowired
+    public BookResourceController(BookCache bookCache, RepositoryEntityLinks entityLinks) {
+        this.bookCache = bookCache;
+        this.entityLinks = entityLinks;
+    }
+
+    @GetMapping("/books/{id}")
+    public ResponseEntity<EntityModel<BookDetails>> book(@PathVariable Long id, WebRequest request) {
+        Optional<BookDetails> book = bookCache.get(id);
+
+        if(book.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        String etag = "\"" + book.get().getVersion() + "\"";
+        if(request.checkNotModified(etag)) {
+            return null;
+        }
+
+        Link self = entityLinks.linkToItemResource(Book.class, id);
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .body(EntityModel.of(book.get(), self.withSelfRel(), self.withRel("book")));
+    }
+}
@@ -0,0 +1,27 @@
+package com.dainis.spring_boot_library.controller;
+
+import com.dainis.spring_boot_library.entity.History;
+import com.dainis.spring_boot_library.responsemodels.CursorPageResponse;
+import com.dainis.spring_boot_library.service.HistoryService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+@CrossOrigin("https://localhost:3000")
+@RestController
+@RequestMapping("/api/histories")
+public class HistoryController {
+
+    private HistoryService historyService;
+
+    @Autowired
+    public HistoryController(HistoryService historyService) {
+        this.historyService = historyService;
+    }
+
+    @GetMapping("/cursor/user")
+    public CursorPageResponse<History> historyByUser(@RequestParam("email") String userEmail,
+                                                     @RequestParam(required = false) String cursor,
+                                                     @RequestParam(defaultValue = "20") int size) throws Exception {
+        return historyService.historyByUser(userEmail, cursor, size);
+    }
+}
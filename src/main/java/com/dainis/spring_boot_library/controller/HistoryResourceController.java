@@ -0,0 +1,43 @@
+package com.dainis.spring_boot_library.controller;
+
+import com.dainis.spring_boot_library.entity.History;
+import com.dainis.spring_boot_library.service.HistoryService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.rest.webmvc.RepositoryRestController;
+import org.springframework.data.rest.webmvc.support.RepositoryEntityLinks;
+import org.springframework.data.web.PagedResourcesAssembler;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.PagedModel;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+/**
+ * Serves the Spring Data REST findBooksByUserEmail search with the user's archived history included, in the same
+ * paged shape. Rows are always ordered by id, as in the archive; a sort parameter is ignored.
+ */
+@RepositoryRestController
+public class HistoryResourceController {
+
+    private HistoryService historyService;
+
+    private RepositoryEntityLinks entityLinks;
+
+    @Autowired
+    public HistoryResourceController(HistoryService historyService, RepositoryEntityLinks entityLinks) {
+        this.historyService = historyService;
+        this.entityLinks = entityLinks;
+    }
+
+    @GetMapping("/histories/search/findBooksByUserEmail")
+    public ResponseEntity<PagedModel<EntityModel<History>>> findBooksByUserEmail(
+            @RequestParam("email") String userEmail, Pageable pageable,
+            PagedResourcesAssembler<History> assembler) throws Exception {
+        Page<History> page = historyService.historyPageByUser(userEmail, pageable);
+
+        return ResponseEntity.ok(assembler.toModel(page, history -> EntityModel.of(history,
+                entityLinks.linkToItemResource(History.class, history.getId()).withSelfRel())));
+    }
+}
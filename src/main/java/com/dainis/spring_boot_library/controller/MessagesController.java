@@ -2,6 +2,7 @@ package com.dainis.spring_boot_library.controller;
 
 import com.dainis.spring_boot_library.entity.Message;
 import com.dainis.spring_boot_library.requestmodels.AdminQuestionRequest;
+import com.dainis.spring_boot_library.responsemodels.CursorPageResponse;
 import com.dainis.spring_boot_library.service.MessagesService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -39,4 +40,18 @@ public class MessagesController {
 
         messagesService.putMessage(adminQuestionRequest, userEmail);
     }
+
+    @GetMapping("/cursor/user")
+    public CursorPageResponse<Message> messagesByUser(@RequestParam("user_email") String userEmail,
+                                                      @RequestParam(required = false) String cursor,
+                                                      @RequestParam(defaultValue = "20") int size) throws Exception {
+        return messagesService.messagesByUser(userEmail, cursor, size);
+    }
+
+    @GetMapping("/cursor/closed")
+    public CursorPageResponse<Message> messagesByClosed(@RequestParam boolean closed,
+                                                        @RequestParam(required = false) String cursor,
+                                                        @RequestParam(defaultValue = "20") int size) throws Exception {
+        return messagesService.messagesByClosed(closed, cursor, size);
+    }
 }
@@ -1,9 +1,8 @@
 package com.dainis.spring_boot_library.controller;
 
 import com.dainis.spring_boot_library.requestmodels.PaymentInfoRequest;
+import com.dainis.spring_boot_library.service.IdempotencyService;
 import com.dainis.spring_boot_library.service.PaymentService;
-import com.stripe.exception.StripeException;
-import com.stripe.model.PaymentIntent;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -11,36 +10,59 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+
 @CrossOrigin("https://localhost:3000")
 @RestController
 @RequestMapping("/api/payment/secure")
 public class PaymentController {
 
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
     private PaymentService paymentService;
 
+    private IdempotencyService idempotencyService;
+
     @Autowired
-    public PaymentController(PaymentService paymentService) {
+    public PaymentController(PaymentService paymentService, IdempotencyService idempotencyService) {
         this.paymentService = paymentService;
+        this.idempotencyService = idempotencyService;
     }
 
     @PostMapping("/payment-intent")
-    public ResponseEntity<String> createPaymentIntent(@RequestBody PaymentInfoRequest paymentInfoRequest)
-            throws StripeException {
+    public CompletableFuture<ResponseEntity<String>> createPaymentIntent(
+            @AuthenticationPrincipal Jwt jwt, @RequestBody PaymentInfoRequest paymentInfoRequest,
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) throws Exception {
+        String userEmail = jwt.getClaim("email");
+
+        if(userEmail == null) {
+            throw new Exception("User email is missing");
+        }
 
-        PaymentIntent paymentIntent = paymentService.createPaymentIntent(paymentInfoRequest);
-        String paymentString = paymentIntent.toJson();
+        String requestHash = IdempotencyService.hash(String.valueOf(paymentInfoRequest.getAmount()),
+                paymentInfoRequest.getCurrency(), paymentInfoRequest.getReceiptEmail());
+        // Stripe keys are account-wide, so the client's key is scoped to the user
+        String stripeKey = idempotencyKey == null ? null
+                : IdempotencyService.hash("payment-intent", userEmail, idempotencyKey);
 
-        return new ResponseEntity<>(paymentString, HttpStatus.OK);
+        return idempotencyService.execute("payment-intent", userEmail, idempotencyKey, requestHash,
+                        () -> paymentService.createPaymentIntent(paymentInfoRequest, stripeKey))
+                .thenApply(paymentString -> new ResponseEntity<>(paymentString, HttpStatus.OK));
     }
 
     @PutMapping("/payment-complete")
-    public ResponseEntity<String> stripePaymentComplete(@AuthenticationPrincipal Jwt jwt) throws Exception {
+    public CompletableFuture<ResponseEntity<String>> stripePaymentComplete(
+            @AuthenticationPrincipal Jwt jwt,
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) throws Exception {
         String userEmail = jwt.getClaim("email");
 
         if(userEmail == null) {
             throw new Exception("User email is missing");
         }
 
-        return paymentService.stripePayment(userEmail);
+        // The settlement and the stored response commit together
+        return idempotencyService.executeInTransaction("payment-complete", userEmail, idempotencyKey,
+                        IdempotencyService.hash(), () -> paymentService.stripePayment(userEmail).getBody())
+                .thenApply(body -> new ResponseEntity<>(body, HttpStatus.OK));
     }
 }
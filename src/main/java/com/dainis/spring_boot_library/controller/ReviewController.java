@@ -1,6 +1,9 @@
 package com.dainis.spring_boot_library.controller;
 
+import com.dainis.spring_boot_library.entity.Review;
 import com.dainis.spring_boot_library.requestmodels.ReviewRequest;
+import com.dainis.spring_boot_library.responsemodels.BookRatingResponse;
+import com.dainis.spring_boot_library.responsemodels.CursorPageResponse;
 import com.dainis.spring_boot_library.service.ReviewService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -41,4 +44,16 @@ public class ReviewController {
 
         reviewService.postReview(userEmail, reviewRequest);
     }
+
+    @GetMapping("/rating")
+    public BookRatingResponse bookRating(@RequestParam Long bookId) {
+        return reviewService.bookRating(bookId);
+    }
+
+    @GetMapping("/cursor/book")
+    public CursorPageResponse<Review> reviewsByBook(@RequestParam Long bookId,
+                                                    @RequestParam(required = false) String cursor,
+                                                    @RequestParam(defaultValue = "20") int size) throws Exception {
+        return reviewService.reviewsByBook(bookId, cursor, size);
+    }
 }
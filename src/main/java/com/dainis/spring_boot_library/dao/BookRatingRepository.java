@@ -0,0 +1,34 @@
+package com.dainis.spring_boot_library.dao;
+
+import com.dainis.spring_boot_library.entity.BookRating;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+
+@RepositoryRestResource(exported = false)
+public interface BookRatingRepository extends JpaRepository<BookRating, Long> {
+
+    // One statement, so two first reviews of a book cannot both try to insert its row
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "insert into book_rating (book_id, review_count, rating_sum, stars_1, stars_2, stars_3, stars_4, stars_5) " +
+            "values (:book_id, 1, :rating, " +
+            "case when :stars = 1 then 1 else 0 end, " +
+            "case when :stars = 2 then 1 else 0 end, " +
+            "case when :stars = 3 then 1 else 0 end, " +
+            "case when :stars = 4 then 1 else 0 end, " +
+            "case when :stars = 5 then 1 else 0 end) " +
+            "on duplicate key update review_count = review_count + 1, rating_sum = rating_sum + :rating, " +
+            "stars_1 = stars_1 + case when :stars = 1 then 1 else 0 end, " +
+            "stars_2 = stars_2 + case when :stars = 2 then 1 else 0 end, " +
+            "stars_3 = stars_3 + case when :stars = 3 then 1 else 0 end, " +
+            "stars_4 = stars_4 + case when :stars = 4 then 1 else 0 end, " +
+            "stars_5 = stars_5 + case when :stars = 5 then 1 else 0 end",
+            nativeQuery = true)
+    void addRating(@Param("book_id") Long bookId, @Param("rating") double rating, @Param("stars") int stars);
+
+    @Modifying
+    @Query("delete from BookRating r where r.bookId = :book_id")
+    void deleteByBookId(@Param("book_id") Long bookId);
+}
@@ -1,11 +1,15 @@
 package com.dainis.spring_boot_library.dao;
 
 import com.dainis.spring_boot_library.entity.Book;
+import com.dainis.spring_boot_library.responsemodels.BookSummary;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.data.rest.core.annotation.RestResource;
 import org.springframework.web.bind.annotation.RequestParam;
 
 import java.util.List;
@@ -16,6 +20,53 @@ public interface BookRepository extends JpaRepository<Book, Long> {
 
     Page<Book> findByCategory(@RequestParam("category") String category, Pageable pageable);
 
+    @RestResource(exported = false)
+    @Query("select new com.dainis.spring_boot_library.responsemodels.BookSummary(" +
+            "b.id, b.title, b.author, b.category, b.copies, b.copiesAvailable, b.thumbnail, " +
+            "r.reviewCount, r.ratingSum) " +
+            "from Book b left join BookRating r on r.bookId = b.id " +
+            "where b.category = :category and b.id > :after_id")
+    Slice<BookSummary> findSummariesByCategory(@Param("category") String category,
+                                               @Param("after_id") Long afterId,
+                                               Pageable pageable);
+
+    @RestResource(exported = false)
+    @Query("select new com.dainis.spring_boot_library.responsemodels.BookSummary(" +
+            "b.id, b.title, b.author, b.category, b.copies, b.copiesAvailable, b.thumbnail, " +
+            "r.reviewCount, r.ratingSum) " +
+            "from Book b join BookRating r on r.bookId = b.id " +
+            "where r.reviewCount >= :min_reviews " +
+            "order by r.ratingSum / r.reviewCount desc, r.reviewCount desc, b.id")
+    List<BookSummary> findTopRated(@Param("min_reviews") long minReviews, Pageable pageable);
+
     @Query("select o from Book o where id in :book_ids")
     List<Book> findBooksByBookIds(@Param("book_ids") List<Long> bookIds);
+
+    @RestResource(exported = false)
+    @Query("select new com.dainis.spring_boot_library.responsemodels.BookSummary(" +
+            "b.id, b.title, b.author, b.category, b.copies, b.copiesAvailable, b.thumbnail, " +
+            "r.reviewCount, r.ratingSum) " +
+            "from Book b left join BookRating r on r.bookId = b.id " +
+            "where b.id in :book_ids")
+    List<BookSummary> findSummariesByBookIds(@Param("book_ids") List<Long> bookIds);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Book b set b.copiesAvailable = b.copiesAvailable - 1, b.version = b.version + 1 " +
+            "where b.id = :book_id and b.copiesAvailable > 0")
+    int checkoutCopy(@Param("book_id") Long bookId);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Book b set b.copiesAvailable = b.copiesAvailable + 1, b.version = b.version + 1 " +
+            "where b.id = :book_id")
+    int returnCopy(@Param("book_id") Long bookId);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Book b set b.copies = b.copies + 1, b.copiesAvailable = b.copiesAvailable + 1, " +
+            "b.version = b.version + 1 where b.id = :book_id")
+    int increaseQuantity(@Param("book_id") Long bookId);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Book b set b.copies = b.copies - 1, b.copiesAvailable = b.copiesAvailable - 1, " +
+            "b.version = b.version + 1 where b.id = :book_id and b.copiesAvailable > 0 and b.copies > 0")
+    int decreaseQuantity(@Param("book_id") Long bookId);
 }
@@ -0,0 +1,15 @@
+package com.dainis.spring_boot_library.dao;
+
+/**
+ * Everything checkoutBook and checkoutBooks need to know about a user, read in one round trip.
+ * Same-book loans count the user's loans of any of the requested books.
+ * Fees owed are the current balance in dollars; null means the user has no payment record yet.
+ */
+public interface CheckoutEligibility {
+
+    long getSameBookLoans();
+
+    long getOverdueLoans();
+
+    Double getFeesOwed();
+}
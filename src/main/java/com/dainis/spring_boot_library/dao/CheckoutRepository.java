@@ -1,12 +1,18 @@
 package com.dainis.spring_boot_library.dao;
 
 import com.dainis.spring_boot_library.entity.Checkout;
+import com.dainis.spring_boot_library.responsemodels.ShelfCurrentLoansResponse;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.data.rest.core.annotation.RestResource;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -14,8 +20,51 @@ public interface CheckoutRepository extends JpaRepository<Checkout, Long> {
 
     Checkout findByUserEmailAndBookId(String userEmail, Long bookId);
 
+    // Locks the loan against a concurrent fee accrual chunk while it is returned
+    @RestResource(exported = false)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Checkout findLockedByUserEmailAndBookId(String userEmail, Long bookId);
+
+    @RestResource(exported = false)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<Checkout> findLockedByUserEmailAndBookIdIn(String userEmail, Collection<Long> bookIds);
+
     List<Checkout> findBooksByUserEmail(String userEmail);
 
+    @RestResource(exported = false)
+    @Query(value = "select " +
+            "(select count(*) from checkout c where c.user_email = :userEmail and c.book_id in (:bookIds)) as sameBookLoans, " +
+            "(select count(*) from checkout c where c.user_email = :userEmail and c.return_date < :today) as overdueLoans, " +
+            "(select (p.balance_cents + (select coalesce(sum(l.amount_cents), 0) from fee_ledger l " +
+            "where l.user_email = :userEmail and l.id > p.compacted_through_id)) / 100.0 " +
+            "from payment p where p.user_email = :userEmail) as feesOwed",
+            nativeQuery = true)
+    CheckoutEligibility findCheckoutEligibility(@Param("userEmail") String userEmail,
+                                                @Param("bookIds") Collection<Long> bookIds,
+                                                @Param("today") LocalDate today);
+
+    @RestResource(exported = false)
+    @Query("select c.bookId from Checkout c where c.userEmail = :userEmail and c.bookId in :bookIds")
+    List<Long> findBookIdsByUserEmailAndBookIdIn(@Param("userEmail") String userEmail,
+                                                 @Param("bookIds") Collection<Long> bookIds);
+
+    @RestResource(exported = false)
+    @Query("select new com.dainis.spring_boot_library.responsemodels.ShelfCurrentLoansResponse(" +
+            "b.id, b.title, b.author, b.category, b.copies, b.copiesAvailable, b.thumbnail, c.returnDate) " +
+            "from Checkout c join Book b on b.id = c.bookId " +
+            "where c.userEmail = :userEmail order by c.id")
+    List<ShelfCurrentLoansResponse> findShelfLoansByUserEmail(@Param("userEmail") String userEmail);
+
+    // Returned loans count too: their checkout rows are gone, but history and the outbox keep the checkout date
+    @RestResource(exported = false)
+    @Query(value = "select l.book_id as bookId, l.checkout_date as checkoutDate, count(*) as borrows from (" +
+            "select book_id, checkout_date from checkout where checkout_date >= :since " +
+            "union all select book_id, checkout_date from history_outbox where checkout_date >= :since " +
+            "union all select book_id, checkout_date from history where checkout_date >= :since and book_id is not null" +
+            ") l group by l.book_id, l.checkout_date",
+            nativeQuery = true)
+    List<DailyBorrowCount> countBorrowsSince(@Param("since") LocalDate since);
+
     @Modifying
     @Query("delete from Checkout c where c.bookId in :book_id")
     void deleteAllByBookId(@Param("book_id") Long bookId);
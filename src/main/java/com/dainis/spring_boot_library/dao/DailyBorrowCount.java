@@ -0,0 +1,12 @@
+package com.dainis.spring_boot_library.dao;
+
+import java.time.LocalDate;
+
+public interface DailyBorrowCount {
+
+    Long getBookId();
+
+    LocalDate getCheckoutDate();
+
+    long getBorrows();
+}
@@ -0,0 +1,21 @@
+package com.dainis.spring_boot_library.dao;
+
+import com.dainis.spring_boot_library.entity.FeeLedgerEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+
+@RepositoryRestResource(exported = false)
+public interface FeeLedgerRepository extends JpaRepository<FeeLedgerEntry, Long> {
+
+    /**
+     * Snapshot plus the entries above its watermark, in cents; null when the user has no payment record.
+     */
+    @Query(value = "select p.balance_cents + " +
+            "(select coalesce(sum(l.amount_cents), 0) from fee_ledger l " +
+            "where l.user_email = :userEmail and l.id > p.compacted_through_id) " +
+            "from payment p where p.user_email = :userEmail",
+            nativeQuery = true)
+    Long findBalanceCents(@Param("userEmail") String userEmail);
+}
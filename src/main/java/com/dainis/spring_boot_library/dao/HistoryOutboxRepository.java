@@ -0,0 +1,9 @@
+package com.dainis.spring_boot_library.dao;
+
+import com.dainis.spring_boot_library.entity.HistoryOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+
+@RepositoryRestResource(exported = false)
+public interface HistoryOutboxRepository extends JpaRepository<HistoryOutbox, Long> {
+}
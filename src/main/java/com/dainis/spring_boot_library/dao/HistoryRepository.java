@@ -3,9 +3,32 @@ package com.dainis.spring_boot_library.dao;
 import com.dainis.spring_boot_library.entity.History;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.rest.core.annotation.RestResource;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import java.util.List;
+
 public interface HistoryRepository extends JpaRepository<History, Long> {
+    // Served over REST by HistoryResourceController, which adds the user's archived rows
     Page<History> findBooksByUserEmail(@RequestParam("email") String userEmail, Pageable pageable);
+
+    @RestResource(exported = false)
+    Slice<History> findByUserEmailAndIdGreaterThan(String userEmail, Long afterId, Pageable pageable);
+
+    @RestResource(exported = false)
+    long countByUserEmail(String userEmail);
+
+    @RestResource(exported = false)
+    long countByUserEmailAndIdLessThan(String userEmail, Long id);
+
+    @RestResource(exported = false)
+    @Query(value = "select * from history where user_email = :user_email order by id limit :limit offset :offset",
+            nativeQuery = true)
+    List<History> findWindowByUserEmail(@Param("user_email") String userEmail,
+                                        @Param("offset") long offset,
+                                        @Param("limit") int limit);
 }
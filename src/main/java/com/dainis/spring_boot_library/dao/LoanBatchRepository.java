@@ -0,0 +1,66 @@
+package com.dainis.spring_boot_library.dao;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * JDBC batch statements for the bulk loan endpoints, where each guarded copy update needs its own row count.
+ * Inserts go through Hibernate, which batches them now that ids come from a pooled generator.
+ */
+@Repository
+public class LoanBatchRepository {
+
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public LoanBatchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Takes one copy of each book; an entry in the result is 0 when the book is missing or has no copy left.
+     */
+    public int[] checkoutCopies(List<Long> bookIds) {
+        return batchUpdateInIdOrder(
+                "update book set copies_available = copies_available - 1, version = version + 1 " +
+                        "where id = ? and copies_available > 0",
+                bookIds);
+    }
+
+    public int[] returnCopies(List<Long> bookIds) {
+        return batchUpdateInIdOrder(
+                "update book set copies_available = copies_available + 1, version = version + 1 where id = ?",
+                bookIds);
+    }
+
+    /**
+     * Updates the rows in ascending id order, so concurrent batches over the same books take their row locks
+     * in the same order and cannot deadlock. Row counts come back in the order the ids were given.
+     */
+    private int[] batchUpdateInIdOrder(String sql, List<Long> bookIds) {
+        Integer[] order = new Integer[bookIds.size()];
+        for(int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing(bookIds::get));
+
+        List<Object[]> args = new ArrayList<>(bookIds.size());
+        for(int i : order) {
+            args.add(new Object[] { bookIds.get(i) });
+        }
+
+        int[] sorted = jdbcTemplate.batchUpdate(sql, args);
+
+        int[] updated = new int[sorted.length];
+        for(int i = 0; i < order.length; i++) {
+            updated[order[i]] = sorted[i];
+        }
+        return updated;
+    }
+}
@@ -3,7 +3,9 @@ package com.dainis.spring_boot_library.dao;
 import com.dainis.spring_boot_library.entity.Message;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.rest.core.annotation.RestResource;
 import org.springframework.web.bind.annotation.RequestParam;
 
 public interface MessageRepository extends JpaRepository<Message, Long> {
@@ -11,4 +13,10 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
     Page<Message> findByUserEmail(@RequestParam("user_email") String userEmail, Pageable pageable);
 
     Page<Message> findByClosed(@RequestParam("closed") boolean closed, Pageable pageable);
+
+    @RestResource(exported = false)
+    Slice<Message> findByUserEmailAndIdGreaterThan(String userEmail, Long afterId, Pageable pageable);
+
+    @RestResource(exported = false)
+    Slice<Message> findByClosedAndIdGreaterThan(boolean closed, Long afterId, Pageable pageable);
 }
@@ -1,11 +1,19 @@
 package com.dainis.spring_boot_library.dao;
 
 import com.dainis.spring_boot_library.entity.Payment;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.rest.core.annotation.RestResource;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface PaymentRepository extends JpaRepository<Payment, Long> {
 
     Payment findByUserEmail(String userEmail);
+
+    // Serializes settling a user's balance, so two payments cannot both read the same balance
+    @RestResource(exported = false)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Payment findLockedByUserEmail(String userEmail);
 }
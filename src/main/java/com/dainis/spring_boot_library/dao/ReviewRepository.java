@@ -3,16 +3,21 @@ package com.dainis.spring_boot_library.dao;
 import com.dainis.spring_boot_library.entity.Review;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.data.rest.core.annotation.RestResource;
 import org.springframework.web.bind.annotation.RequestParam;
 
 public interface ReviewRepository extends JpaRepository<Review, Long> {
 
     Page<Review> findByBookId(@RequestParam("bookId") Long bookId, Pageable pageable);
 
+    @RestResource(exported = false)
+    Slice<Review> findByBookIdAndIdGreaterThan(Long bookId, Long afterId, Pageable pageable);
+
     Review findByUserEmailAndBookId(String userEmail, Long bookId);
 
     @Modifying
@@ -0,0 +1,27 @@
+package com.dainis.spring_boot_library.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * A history segment file and the range of ids it holds. Registered in the transaction that deletes its rows
+ * from history, so every instance sees the rows in exactly one of the two places.
+ * Written by HistoryArchive through JDBC; mapped so the schema is generated with the rest.
+ */
+@Entity
+@Table(name = "history_segment", indexes = {
+        @Index(name = "idx_history_segment_max_id", columnList = "max_id")
+})
+@Data
+public class ArchivedSegment {
+
+    @Id
+    @Column(name = "file_name")
+    private String fileName;
+
+    @Column(name = "min_id")
+    private Long minId;
+
+    @Column(name = "max_id")
+    private Long maxId;
+}
@@ -0,0 +1,43 @@
+package com.dainis.spring_boot_library.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * A user with rows in an archived history segment, so a lookup opens only the segments that hold the user.
+ * The count and id range of the user's rows let a page find the segments it reaches without opening the others.
+ * Written by HistoryArchive through JDBC; mapped so the schema is generated with the rest.
+ */
+@Entity
+@Table(name = "history_segment_user")
+@IdClass(ArchivedSegmentUser.Key.class)
+@Data
+public class ArchivedSegmentUser {
+
+    @Id
+    @Column(name = "user_email")
+    private String userEmail;
+
+    @Id
+    @Column(name = "file_name", length = 64)
+    private String fileName;
+
+    @Column(name = "row_count")
+    private Integer rowCount;
+
+    @Column(name = "min_id")
+    private Long minId;
+
+    @Column(name = "max_id")
+    private Long maxId;
+
+    @Data
+    public static class Key implements Serializable {
+
+        private String userEmail;
+
+        private String fileName;
+    }
+}
@@ -1,18 +1,28 @@
 package com.dainis.spring_boot_library.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Data;
 
 @Entity
-@Table(name = "book")
+@EntityListeners(ResourceVersionListener.class)
+@Table(name = "book", indexes = {
+        @Index(name = "idx_book_category_id", columnList = "category, id")
+})
 @Data
 public class Book {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "book_id")
+    @TableGenerator(name = "book_id", table = "id_generator", pkColumnName = "name", valueColumnName = "next_val",
+            pkColumnValue = "book", allocationSize = 50)
     @Column(name = "id")
     private Long id;
 
+    @Version
+    @Column(name = "version")
+    private Long version;
+
     @Column(name = "title")
     private String title;
 
@@ -33,4 +43,13 @@ public class Book {
 
     @Column(name = "img")
     private String img;
+
+    // Small copy of img for listing rows, see Thumbnails
+    @Column(name = "thumbnail", length = 65535)
+    private String thumbnail;
+
+    // The searchable text as loaded or last written, so ResourceVersionListener can tell an edit of it from a loan
+    @Transient
+    @JsonIgnore
+    private transient String indexedText;
 }
@@ -0,0 +1,51 @@
+package com.dainis.spring_boot_library.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * Running review totals for one book, kept up to date as reviews are posted so a rating never needs the reviews.
+ */
+@Entity
+@Table(name = "book_rating")
+@Data
+public class BookRating {
+
+    public BookRating() {}
+
+    public BookRating(Long bookId) {
+        this.bookId = bookId;
+    }
+
+    @Id
+    @Column(name = "book_id")
+    private Long bookId;
+
+    @Column(name = "review_count")
+    private long reviewCount;
+
+    @Column(name = "rating_sum")
+    private double ratingSum;
+
+    @Column(name = "stars_1")
+    private long stars1;
+
+    @Column(name = "stars_2")
+    private long stars2;
+
+    @Column(name = "stars_3")
+    private long stars3;
+
+    @Column(name = "stars_4")
+    private long stars4;
+
+    @Column(name = "stars_5")
+    private long stars5;
+
+    /**
+     * Histogram bucket for a rating: half stars round up, anything outside 1-5 is clamped.
+     */
+    public static int stars(double rating) {
+        return (int) Math.max(1, Math.min(5, Math.round(rating)));
+    }
+}
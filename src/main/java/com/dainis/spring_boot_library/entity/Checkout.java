@@ -3,14 +3,20 @@ package com.dainis.spring_boot_library.entity;
 import jakarta.persistence.*;
 import lombok.Data;
 
+import java.time.LocalDate;
+
 @Entity
-@Table(name = "checkout")
+@Table(name = "checkout", indexes = {
+        @Index(name = "idx_checkout_user_email_book_id", columnList = "user_email, book_id"),
+        @Index(name = "idx_checkout_user_email_return_date", columnList = "user_email, return_date"),
+        @Index(name = "idx_checkout_return_date", columnList = "return_date")
+})
 @Data
 public class Checkout {
 
     public Checkout() {}
 
-    public Checkout(String userEmail, String checkoutDate, String returnDate, Long bookId) {
+    public Checkout(String userEmail, LocalDate checkoutDate, LocalDate returnDate, Long bookId) {
         this.userEmail = userEmail;
         this.checkoutDate = checkoutDate;
         this.returnDate = returnDate;
@@ -18,7 +24,9 @@ public class Checkout {
     }
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "checkout_id")
+    @TableGenerator(name = "checkout_id", table = "id_generator", pkColumnName = "name", valueColumnName = "next_val",
+            pkColumnValue = "checkout", allocationSize = 50)
     @Column(name = "id")
     private Long id;
 
@@ -26,11 +34,15 @@ public class Checkout {
     private String userEmail;
 
     @Column(name = "checkout_date")
-    private String checkoutDate;
+    private LocalDate checkoutDate;
 
     @Column(name = "return_date")
-    private String returnDate;
+    private LocalDate returnDate;
 
     @Column(name = "book_id")
     private Long bookId;
+
+    // Overdue days up to this date are already charged to the fee ledger by FeeAccrualService
+    @Column(name = "fees_accrued_through")
+    private LocalDate feesAccruedThrough;
 }
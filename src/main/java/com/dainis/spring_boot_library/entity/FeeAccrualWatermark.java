@@ -0,0 +1,26 @@
+package com.dainis.spring_boot_library.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/**
+ * How far a fee accrual run has got, so a crashed run resumes after the last committed chunk.
+ * Written by FeeAccrualService through JDBC; mapped so the schema is generated with the rest.
+ */
+@Entity
+@Table(name = "fee_accrual_watermark")
+@Data
+public class FeeAccrualWatermark {
+
+    @Id
+    @Column(name = "job_name")
+    private String jobName;
+
+    @Column(name = "accrued_through")
+    private LocalDate accruedThrough;
+
+    @Column(name = "last_checkout_id")
+    private Long lastCheckoutId;
+}
@@ -0,0 +1,59 @@
+package com.dainis.spring_boot_library.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * One movement of a user's fee balance, in cents: positive for fees accrued, negative for payments received.
+ * Entries are only ever inserted, so concurrent returns and payments never update the same row.
+ * FeeLedgerCompactor folds old entries into the user's {@link Payment} snapshot and moves its watermark past them.
+ */
+@Entity
+@Table(name = "fee_ledger", indexes = {
+        @Index(name = "idx_fee_ledger_user_email_id", columnList = "user_email, id")
+})
+@Data
+public class FeeLedgerEntry {
+
+    public static final long FEE_PER_DAY_CENTS = 100;
+
+    public enum Type { FEE_ACCRUED, PAYMENT_RECEIVED }
+
+    public FeeLedgerEntry() {}
+
+    public FeeLedgerEntry(String userEmail, Type type, long amountCents, LocalDateTime createdAt) {
+        this.userEmail = userEmail;
+        this.type = type;
+        this.amountCents = amountCents;
+        this.createdAt = createdAt;
+    }
+
+    public static FeeLedgerEntry overdueFee(String userEmail, long daysOverdue) {
+        return new FeeLedgerEntry(userEmail, Type.FEE_ACCRUED, daysOverdue * FEE_PER_DAY_CENTS, LocalDateTime.now());
+    }
+
+    public static FeeLedgerEntry payment(String userEmail, long amountCents) {
+        return new FeeLedgerEntry(userEmail, Type.PAYMENT_RECEIVED, -amountCents, LocalDateTime.now());
+    }
+
+    // Identity, like History: FeeAccrualService inserts entries through JDBC
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "user_email")
+    private String userEmail;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "entry_type", length = 32)
+    private Type type;
+
+    @Column(name = "amount_cents")
+    private long amountCents;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+}
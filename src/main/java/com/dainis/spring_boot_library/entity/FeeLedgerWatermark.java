@@ -0,0 +1,21 @@
+package com.dainis.spring_boot_library.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * The last fee ledger entry a compaction run has got past, so the next run reads only the entries above it.
+ * Written by FeeLedgerCompactor through JDBC; mapped so the schema is generated with the rest.
+ */
+@Entity
+@Table(name = "fee_ledger_watermark")
+@Data
+public class FeeLedgerWatermark {
+
+    @Id
+    @Column(name = "job_name")
+    private String jobName;
+
+    @Column(name = "compacted_through_id")
+    private Long compactedThroughId;
+}
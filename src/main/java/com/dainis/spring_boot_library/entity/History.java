@@ -3,14 +3,19 @@ package com.dainis.spring_boot_library.entity;
 import jakarta.persistence.*;
 import lombok.Data;
 
+import java.time.LocalDate;
+
 @Entity
-@Table(name = "history")
+@Table(name = "history", indexes = {
+        @Index(name = "idx_history_user_email_id", columnList = "user_email, id"),
+        @Index(name = "idx_history_checkout_date", columnList = "checkout_date")
+})
 @Data
 public class History {
 
     public History() {}
 
-    public History(String userEmail, String checkoutDate, String returnedDate, String title,
+    public History(String userEmail, LocalDate checkoutDate, LocalDate returnedDate, String title,
                    String author, String description, String img) {
         this.userEmail = userEmail;
         this.checkoutDate = checkoutDate;
@@ -29,11 +34,15 @@ public class History {
     @Column(name = "user_email")
     private String userEmail;
 
+    // Set by HistoryOutboxDrainer for the leaderboard; null for rows from archived segments and older rows
+    @Column(name = "book_id")
+    private Long bookId;
+
     @Column(name = "checkout_date")
-    private String checkoutDate;
+    private LocalDate checkoutDate;
 
     @Column(name = "returned_date")
-    private String returnedDate;
+    private LocalDate returnedDate;
 
     @Column(name = "title")
     private String title;
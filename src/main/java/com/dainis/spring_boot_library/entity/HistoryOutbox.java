@@ -0,0 +1,46 @@
+package com.dainis.spring_boot_library.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/**
+ * A returned loan waiting to be written to history. Only the book id is recorded here; HistoryOutboxDrainer
+ * copies the book's title, author, description and image when it moves the row into history.
+ */
+@Entity
+@Table(name = "history_outbox", indexes = {
+        @Index(name = "idx_history_outbox_book_id", columnList = "book_id")
+})
+@Data
+public class HistoryOutbox {
+
+    public HistoryOutbox() {}
+
+    public HistoryOutbox(String userEmail, Long bookId, LocalDate checkoutDate, LocalDate returnedDate) {
+        this.userEmail = userEmail;
+        this.bookId = bookId;
+        this.checkoutDate = checkoutDate;
+        this.returnedDate = returnedDate;
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "history_outbox_id")
+    @TableGenerator(name = "history_outbox_id", table = "id_generator", pkColumnName = "name", valueColumnName = "next_val",
+            pkColumnValue = "history_outbox", allocationSize = 50)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "user_email")
+    private String userEmail;
+
+    @Column(name = "book_id")
+    private Long bookId;
+
+    @Column(name = "checkout_date")
+    private LocalDate checkoutDate;
+
+    @Column(name = "returned_date")
+    private LocalDate returnedDate;
+}
@@ -0,0 +1,18 @@
+package com.dainis.spring_boot_library.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * One row per scheduled job that must run on a single instance at a time. The job locks its row
+ * for update in each transaction, so the lock is released on commit, rollback or a lost connection.
+ */
+@Entity
+@Table(name = "job_lock")
+@Data
+public class JobLock {
+
+    @Id
+    @Column(name = "job_name")
+    private String jobName;
+}
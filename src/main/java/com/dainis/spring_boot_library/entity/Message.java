@@ -4,7 +4,11 @@ import jakarta.persistence.*;
 import lombok.Data;
 
 @Entity
-@Table(name = "messages")
+@EntityListeners(ResourceVersionListener.class)
+@Table(name = "messages", indexes = {
+        @Index(name = "idx_messages_user_email_id", columnList = "user_email, id"),
+        @Index(name = "idx_messages_closed_id", columnList = "closed, id")
+})
 @Data
 public class Message {
 
@@ -16,10 +20,16 @@ public class Message {
     }
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "message_id")
+    @TableGenerator(name = "message_id", table = "id_generator", pkColumnName = "name", valueColumnName = "next_val",
+            pkColumnValue = "message", allocationSize = 50)
     @Column(name = "id")
     private Long id;
 
+    @Version
+    @Column(name = "version")
+    private Long version;
+
     @Column(name = "user_email")
     private String userEmail;
 
@@ -2,20 +2,39 @@ package com.dainis.spring_boot_library.entity;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.Formula;
 
+/**
+ * A user's fee balance. The row holds the compacted snapshot of the fee_ledger entries up to
+ * compactedThroughId; the entries above it are added on read, so amount is always current while the row
+ * itself is only written by FeeLedgerCompactor.
+ */
 @Entity
-@Table(name = "payment")
+@Table(name = "payment", indexes = {
+        @Index(name = "idx_payment_user_email", columnList = "user_email")
+})
 @Data
 public class Payment {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "payment_id")
+    @TableGenerator(name = "payment_id", table = "id_generator", pkColumnName = "name", valueColumnName = "next_val",
+            pkColumnValue = "payment", allocationSize = 50)
     @Column(name = "id")
     private Long id;
 
     @Column(name = "user_email")
     private String userEmail;
 
-    @Column(name = "amount")
+    @Column(name = "balance_cents")
+    private long balanceCents;
+
+    @ColumnDefault("0")
+    @Column(name = "compacted_through_id")
+    private long compactedThroughId;
+
+    @Formula("(balance_cents + (select coalesce(sum(l.amount_cents), 0) from fee_ledger l " +
+            "where l.user_email = user_email and l.id > compacted_through_id)) / 100.0")
     private double amount;
 }
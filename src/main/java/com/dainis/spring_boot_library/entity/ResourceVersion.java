@@ -0,0 +1,21 @@
+package com.dainis.spring_boot_library.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * Change counter of one table, behind the collection ETags. Written by ResourceVersions through JDBC;
+ * mapped so the schema is generated with the rest.
+ */
+@Entity
+@Table(name = "resource_version")
+@Data
+public class ResourceVersion {
+
+    @Id
+    @Column(name = "resource")
+    private String resource;
+
+    @Column(name = "version")
+    private long version;
+}
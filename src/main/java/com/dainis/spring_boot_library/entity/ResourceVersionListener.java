@@ -0,0 +1,56 @@
+package com.dainis.spring_boot_library.entity;
+
+import com.dainis.spring_boot_library.service.ResourceVersions;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+
+@Component
+public class ResourceVersionListener {
+
+    private ResourceVersions resourceVersions;
+
+    @Autowired
+    public ResourceVersionListener(ResourceVersions resourceVersions) {
+        this.resourceVersions = resourceVersions;
+    }
+
+    @PostLoad
+    public void loaded(Object entity) {
+        if(entity instanceof Book book) {
+            book.setIndexedText(indexedText(book));
+        }
+    }
+
+    @PostPersist
+    @PostRemove
+    public void addedOrRemoved(Object entity) {
+        resourceVersions.changed(Hibernate.getClass(entity));
+        if(entity instanceof Book book) {
+            book.setIndexedText(indexedText(book));
+            resourceVersions.catalogChanged();
+        }
+    }
+
+    @PostUpdate
+    public void changed(Object entity) {
+        resourceVersions.changed(Hibernate.getClass(entity));
+
+        // Loans only change the copies; an edit of the text the search index holds moves the catalog counter too
+        if(entity instanceof Book book && !Objects.equals(book.getIndexedText(), indexedText(book))) {
+            book.setIndexedText(indexedText(book));
+            resourceVersions.catalogChanged();
+        }
+    }
+
+    private static String indexedText(Book book) {
+        return String.join("\0", String.valueOf(book.getTitle()), String.valueOf(book.getAuthor()),
+                String.valueOf(book.getCategory()), String.valueOf(book.getDescription()));
+    }
+}
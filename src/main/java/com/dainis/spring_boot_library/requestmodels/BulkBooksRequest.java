@@ -0,0 +1,11 @@
+package com.dainis.spring_boot_library.requestmodels;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BulkBooksRequest {
+
+    private List<Long> bookIds;
+}
@@ -0,0 +1,36 @@
+package com.dainis.spring_boot_library.responsemodels;
+
+import com.dainis.spring_boot_library.entity.Book;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Value;
+
+/**
+ * Immutable copy of a {@link Book} row, so one cached instance can be shared by every reader.
+ */
+@Value
+public class BookDetails {
+
+    Long id;
+
+    @JsonIgnore
+    Long version;
+
+    String title;
+
+    String author;
+
+    String description;
+
+    int copies;
+
+    int copiesAvailable;
+
+    String category;
+
+    String img;
+
+    public static BookDetails of(Book book) {
+        return new BookDetails(book.getId(), book.getVersion(), book.getTitle(), book.getAuthor(),
+                book.getDescription(), book.getCopies(), book.getCopiesAvailable(), book.getCategory(), book.getImg());
+    }
+}
@@ -0,0 +1,16 @@
+package com.dainis.spring_boot_library.responsemodels;
+
+import lombok.Data;
+
+@Data
+public class BookImportError {
+
+    public BookImportError(long line, String error) {
+        this.line = line;
+        this.error = error;
+    }
+
+    private long line;
+
+    private String error;
+}
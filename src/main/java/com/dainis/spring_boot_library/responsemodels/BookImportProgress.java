@@ -0,0 +1,27 @@
+package com.dainis.spring_boot_library.responsemodels;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+@Data
+public class BookImportProgress {
+
+    public BookImportProgress(long processed, long imported, long failed, boolean done) {
+        this.processed = processed;
+        this.imported = imported;
+        this.failed = failed;
+        this.done = done;
+    }
+
+    private long processed;
+
+    private long imported;
+
+    private long failed;
+
+    private boolean done;
+
+    // Why the import stopped early; rows in batches already committed stay imported
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String failure;
+}
@@ -0,0 +1,27 @@
+package com.dainis.spring_boot_library.responsemodels;
+
+import com.dainis.spring_boot_library.entity.BookRating;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BookRatingResponse {
+
+    public BookRatingResponse(BookRating rating) {
+        this.bookId = rating.getBookId();
+        this.reviewCount = rating.getReviewCount();
+        this.averageRating = rating.getReviewCount() == 0 ? 0 : rating.getRatingSum() / rating.getReviewCount();
+        this.histogram = List.of(rating.getStars1(), rating.getStars2(), rating.getStars3(),
+                rating.getStars4(), rating.getStars5());
+    }
+
+    private Long bookId;
+
+    private long reviewCount;
+
+    private double averageRating;
+
+    // Review counts for 1 to 5 stars
+    private List<Long> histogram;
+}
@@ -0,0 +1,24 @@
+package com.dainis.spring_boot_library.responsemodels;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BookSearchResponse {
+
+    public BookSearchResponse(List<BookSummary> books, int totalResults, int page, int size) {
+        this.books = books;
+        this.totalResults = totalResults;
+        this.page = page;
+        this.size = size;
+    }
+
+    private List<BookSummary> books;
+
+    private int totalResults;
+
+    private int page;
+
+    private int size;
+}
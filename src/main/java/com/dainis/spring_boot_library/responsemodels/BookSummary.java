@@ -0,0 +1,44 @@
+package com.dainis.spring_boot_library.responsemodels;
+
+import lombok.Data;
+
+@Data
+public class BookSummary {
+
+    public BookSummary(Long id, String title, String author, String category, int copies, int copiesAvailable,
+                       String thumbnail) {
+        this.id = id;
+        this.title = title;
+        this.author = author;
+        this.category = category;
+        this.copies = copies;
+        this.copiesAvailable = copiesAvailable;
+        this.thumbnail = thumbnail;
+    }
+
+    // Listing rows, with the rating totals left-joined from book_rating
+    public BookSummary(Long id, String title, String author, String category, int copies, int copiesAvailable,
+                       String thumbnail, Long reviewCount, Double ratingSum) {
+        this(id, title, author, category, copies, copiesAvailable, thumbnail);
+        this.reviewCount = reviewCount == null ? 0 : reviewCount;
+        this.averageRating = reviewCount == null || reviewCount == 0 ? 0 : ratingSum / reviewCount;
+    }
+
+    private Long id;
+
+    private String title;
+
+    private String author;
+
+    private String category;
+
+    private int copies;
+
+    private int copiesAvailable;
+
+    private String thumbnail;
+
+    private long reviewCount;
+
+    private double averageRating;
+}
@@ -0,0 +1,19 @@
+package com.dainis.spring_boot_library.responsemodels;
+
+import lombok.Data;
+
+@Data
+public class BulkBookResult {
+
+    public BulkBookResult(Long bookId, boolean success, String message) {
+        this.bookId = bookId;
+        this.success = success;
+        this.message = message;
+    }
+
+    private Long bookId;
+
+    private boolean success;
+
+    private String message;
+}
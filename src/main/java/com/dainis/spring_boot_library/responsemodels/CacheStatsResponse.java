@@ -0,0 +1,25 @@
+package com.dainis.spring_boot_library.responsemodels;
+
+import lombok.Data;
+
+@Data
+public class CacheStatsResponse {
+
+    public CacheStatsResponse(String name, long size, long hits, long misses, long evictions) {
+        this.name = name;
+        this.size = size;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+    }
+
+    private String name;
+
+    private long size;
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+}
@@ -0,0 +1,35 @@
+package com.dainis.spring_boot_library.responsemodels;
+
+import com.dainis.spring_boot_library.utils.KeysetCursor;
+import lombok.Data;
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+import java.util.function.Function;
+
+@Data
+public class CursorPageResponse<T> {
+
+    public CursorPageResponse(List<T> content, String nextCursor) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+        this.hasNext = nextCursor != null;
+    }
+
+    public static <T> CursorPageResponse<T> of(Slice<T> slice, Function<T, Long> idOf) {
+        List<T> content = slice.getContent();
+
+        String nextCursor = null;
+        if(slice.hasNext() && !content.isEmpty()) {
+            nextCursor = KeysetCursor.encode(idOf.apply(content.getLast()));
+        }
+
+        return new CursorPageResponse<>(content, nextCursor);
+    }
+
+    private List<T> content;
+
+    private String nextCursor;
+
+    private boolean hasNext;
+}
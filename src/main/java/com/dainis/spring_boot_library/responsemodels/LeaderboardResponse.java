@@ -0,0 +1,25 @@
+package com.dainis.spring_boot_library.responsemodels;
+
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Published leaderboard snapshot. Never modified after construction, so it is handed to every request as is.
+ */
+@Getter
+public class LeaderboardResponse {
+
+    public LeaderboardResponse(List<BookSummary> mostBorrowed, List<BookSummary> topRated, Instant generatedAt) {
+        this.mostBorrowed = List.copyOf(mostBorrowed);
+        this.topRated = List.copyOf(topRated);
+        this.generatedAt = generatedAt;
+    }
+
+    private final List<BookSummary> mostBorrowed;
+
+    private final List<BookSummary> topRated;
+
+    private final Instant generatedAt;
+}
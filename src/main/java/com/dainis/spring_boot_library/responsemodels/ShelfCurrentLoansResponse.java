@@ -1,17 +1,25 @@
 package com.dainis.spring_boot_library.responsemodels;
 
-import com.dainis.spring_boot_library.entity.Book;
 import lombok.Data;
 
+import java.time.LocalDate;
+
 @Data
 public class ShelfCurrentLoansResponse {
 
-    public ShelfCurrentLoansResponse(Book book, int daysLeft) {
+    public ShelfCurrentLoansResponse(BookSummary book, int daysLeft) {
         this.book = book;
         this.daysLeft = daysLeft;
     }
 
-    private Book book;
+    // Row constructor for the shelf query in CheckoutRepository
+    public ShelfCurrentLoansResponse(Long bookId, String title, String author, String category,
+                                     int copies, int copiesAvailable, String thumbnail, LocalDate returnDate) {
+        this(new BookSummary(bookId, title, author, category, copies, copiesAvailable, thumbnail),
+                (int) (returnDate.toEpochDay() - LocalDate.now().toEpochDay()));
+    }
+
+    private BookSummary book;
 
     private int daysLeft;
 }
@@ -1,14 +1,24 @@
 package com.dainis.spring_boot_library.service;
 
+import com.dainis.spring_boot_library.dao.BookRatingRepository;
 import com.dainis.spring_boot_library.dao.BookRepository;
 import com.dainis.spring_boot_library.dao.CheckoutRepository;
 import com.dainis.spring_boot_library.dao.ReviewRepository;
 import com.dainis.spring_boot_library.entity.Book;
+import com.dainis.spring_boot_library.entity.Review;
 import com.dainis.spring_boot_library.requestmodels.AddBookRequest;
+import com.dainis.spring_boot_library.responsemodels.CacheStatsResponse;
+import com.dainis.spring_boot_library.utils.AfterCommit;
+import com.dainis.spring_boot_library.utils.Thumbnails;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 @Service
@@ -18,41 +28,55 @@ public class AdminService {
     private BookRepository bookRepository;
     private ReviewRepository reviewRepository;
     private CheckoutRepository checkoutRepository;
+    private BookSearchIndex bookSearchIndex;
+    private BookCache bookCache;
+    private CacheManager cacheManager;
+    private ShelfSummaryCache shelfSummaryCache;
+    private BookRatingRepository bookRatingRepository;
+    private HistoryOutboxDrainer historyOutboxDrainer;
+    private ResourceVersions resourceVersions;
 
     @Autowired
     public AdminService(BookRepository bookRepository,
                         ReviewRepository reviewRepository,
-                        CheckoutRepository checkoutRepository) {
+                        CheckoutRepository checkoutRepository,
+                        BookSearchIndex bookSearchIndex,
+                        BookCache bookCache,
+                        CacheManager cacheManager,
+                        ShelfSummaryCache shelfSummaryCache,
+                        BookRatingRepository bookRatingRepository,
+                        HistoryOutboxDrainer historyOutboxDrainer,
+                        ResourceVersions resourceVersions) {
         this.bookRepository = bookRepository;
         this.reviewRepository = reviewRepository;
         this.checkoutRepository = checkoutRepository;
+        this.bookSearchIndex = bookSearchIndex;
+        this.bookCache = bookCache;
+        this.cacheManager = cacheManager;
+        this.shelfSummaryCache = shelfSummaryCache;
+        this.bookRatingRepository = bookRatingRepository;
+        this.historyOutboxDrainer = historyOutboxDrainer;
+        this.resourceVersions = resourceVersions;
     }
 
     public void increaseBookQuantity(Long bookId) throws Exception {
 
-        Optional<Book> book = bookRepository.findById(bookId);
-
-        if(book.isEmpty()) {
+        if(bookRepository.increaseQuantity(bookId) == 0) {
             throw new Exception("Book not found");
         }
 
-        book.get().setCopiesAvailable(book.get().getCopiesAvailable() + 1);
-        book.get().setCopies(book.get().getCopies() + 1);
-
-        bookRepository.save(book.get());
+        bookCache.evict(bookId);
+        resourceVersions.changed(Book.class);
     }
 
     public void decreaseBookQuantity(Long bookId) throws Exception {
-        Optional<Book> book = bookRepository.findById(bookId);
 
-        if(book.isEmpty() || book.get().getCopiesAvailable() <= 0 || book.get().getCopies() <= 0) {
+        if(bookRepository.decreaseQuantity(bookId) == 0) {
             throw new Exception("Book not found or quantity locked");
         }
 
-        book.get().setCopiesAvailable(book.get().getCopiesAvailable() - 1);
-        book.get().setCopies(book.get().getCopies() - 1);
-
-        bookRepository.save(book.get());
+        bookCache.evict(bookId);
+        resourceVersions.changed(Book.class);
     }
 
     public void postBook(AddBookRequest addBookRequest) {
@@ -64,8 +88,10 @@ public class AdminService {
         book.setCopiesAvailable(addBookRequest.getCopies());
         book.setCategory(addBookRequest.getCategory());
         book.setImg(addBookRequest.getImg());
+        book.setThumbnail(Thumbnails.of(addBookRequest.getImg()));
 
-        bookRepository.save(book);
+        Book savedBook = bookRepository.save(book);
+        AfterCommit.run(() -> bookSearchIndex.index(savedBook));
     }
 
     public void deleteBook(Long bookId) throws Exception {
@@ -75,9 +101,29 @@ public class AdminService {
             throw new Exception("Book not found");
         }
 
+        historyOutboxDrainer.drainBook(bookId);
         checkoutRepository.deleteAllByBookId(bookId);
+        shelfSummaryCache.invalidateAll();
         reviewRepository.deleteAllByBookId(bookId);
+        resourceVersions.changed(Review.class);
+        bookRatingRepository.deleteByBookId(bookId);
 
         bookRepository.delete(book.get());
+        bookCache.evict(bookId);
+        AfterCommit.run(() -> bookSearchIndex.remove(bookId));
+    }
+
+    public List<CacheStatsResponse> cacheStats() {
+        List<CacheStatsResponse> cacheStats = new ArrayList<>();
+
+        for(String cacheName : cacheManager.getCacheNames()) {
+            CaffeineCache cache = (CaffeineCache) cacheManager.getCache(cacheName);
+            CacheStats stats = cache.getNativeCache().stats();
+
+            cacheStats.add(new CacheStatsResponse(cacheName, cache.getNativeCache().estimatedSize(),
+                    stats.hitCount(), stats.missCount(), stats.evictionCount()));
+        }
+
+        return cacheStats;
     }
 }
@@ -0,0 +1,87 @@
+package com.dainis.spring_boot_library.service;
+
+import com.dainis.spring_boot_library.config.CacheConfiguration;
+import com.dainis.spring_boot_library.dao.BookRepository;
+import com.dainis.spring_boot_library.responsemodels.BookDetails;
+import com.github.benmanes.caffeine.cache.Cache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Read-through "books" cache of immutable {@link BookDetails}. Writers keep using managed entities from
+ * {@link BookRepository} and evict here. Every eviction bumps a generation for the book, and a reader only
+ * keeps what it loaded when no eviction happened in between.
+ * Evictions only reach this instance; a book changed on another instance is picked up when its entry expires,
+ * after library.cache.books.expire-after-write, as ShelfSummaryCache picks up other instances' loans.
+ */
+@Component
+public class BookCache {
+
+    private static final int GENERATION_STRIPES = 1024;
+
+    private BookRepository bookRepository;
+
+    private Cache<Object, Object> books;
+
+    // Striped by book id, so memory stays fixed; a collision only costs a skipped put
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    @Autowired
+    public BookCache(BookRepository bookRepository, CacheManager cacheManager) {
+        this.bookRepository = bookRepository;
+        this.books = ((CaffeineCache) cacheManager.getCache(CacheConfiguration.BOOKS)).getNativeCache();
+    }
+
+    public Optional<BookDetails> get(Long bookId) {
+        BookDetails cached = (BookDetails) books.getIfPresent(bookId);
+        if(cached != null) {
+            return Optional.of(cached);
+        }
+
+        // Loaded outside the cache's compute lock, as in ShelfSummaryCache
+        long generation = generations.get(stripe(bookId));
+        Optional<BookDetails> book = bookRepository.findById(bookId).map(BookDetails::of);
+
+        if(book.isPresent()) {
+            books.put(bookId, book.get());
+            // An eviction between the read and the put may have missed it, so drop the possibly stale row
+            if(generations.get(stripe(bookId)) != generation) {
+                books.invalidate(bookId);
+            }
+        }
+        return book;
+    }
+
+    /**
+     * Evicts the book now and again once the surrounding transaction completes. A reader that loaded the
+     * pre-commit row sees the generation change and does not keep it.
+     */
+    public void evict(Long bookId) {
+        invalidate(bookId);
+
+        if(TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidate(bookId);
+                }
+            });
+        }
+    }
+
+    private void invalidate(Long bookId) {
+        generations.incrementAndGet(stripe(bookId));
+        books.invalidate(bookId);
+    }
+
+    private static int stripe(Long bookId) {
+        return Math.floorMod(Long.hashCode(bookId), GENERATION_STRIPES);
+    }
+}
@@ -0,0 +1,432 @@
+package com.dainis.spring_boot_library.service;
+
+import com.dainis.spring_boot_library.dao.BookRepository;
+import com.dainis.spring_boot_library.entity.Book;
+import com.dainis.spring_boot_library.requestmodels.AddBookRequest;
+import com.dainis.spring_boot_library.responsemodels.BookImportError;
+import com.dainis.spring_boot_library.responsemodels.BookImportProgress;
+import com.dainis.spring_boot_library.utils.Thumbnails;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Imports a catalog from a CSV or NDJSON stream. A parser thread reads and validates rows into batches
+ * on a small bounded queue while the calling thread saves each batch in its own transaction, which Hibernate
+ * sends as JDBC batches. Memory is bounded by the queue, not the file. Progress and per-row errors are
+ * written back as NDJSON as each batch commits.
+ */
+@Service
+public class BookImportService {
+
+    static final int MAX_TEXT_LENGTH = 255;
+
+    static final int MAX_ROW_LENGTH = 4 * 1024 * 1024;
+
+    private static final int QUEUED_BATCHES = 4;
+
+    private static final List<String> REQUIRED_CSV_COLUMNS = List.of("title", "author", "copies", "category");
+
+    private BookRepository bookRepository;
+
+    private EntityManager entityManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private BookSearchIndex bookSearchIndex;
+
+    private ObjectMapper objectMapper;
+
+    private int batchSize;
+
+    @Autowired
+    public BookImportService(BookRepository bookRepository, EntityManager entityManager,
+                             PlatformTransactionManager transactionManager,
+                             BookSearchIndex bookSearchIndex,
+                             ObjectMapper objectMapper, @Value("${library.import.batch-size}") int batchSize) {
+        this.bookRepository = bookRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.bookSearchIndex = bookSearchIndex;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+    }
+
+    public BookImportProgress importBooks(InputStream in, DataFormat format, OutputStream out) throws Exception {
+        BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(QUEUED_BATCHES);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        RowParser parser = format == DataFormat.CSV ? new CsvRowParser(reader) : new NdjsonRowParser(reader);
+
+        Thread parserThread = Thread.ofPlatform().name("book-import-parser").daemon().start(() -> parse(parser, queue));
+
+        long processed = 0;
+        long imported = 0;
+        long failed = 0;
+
+        try(JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            generator.setRootValueSeparator(null);
+
+            while(true) {
+                Batch batch = queue.take();
+
+                // The 200 and earlier progress are already sent, so the failure goes out as the last line
+                if(batch.failure() != null) {
+                    return stop(generator, processed, imported, failed,
+                            "Import stopped at line " + batch.lastLine() + ": " + batch.failure());
+                }
+
+                if(!batch.books().isEmpty()) {
+                    try {
+                        insert(batch.books());
+                    } catch (RuntimeException e) {
+                        // Only this batch rolled back; the counts so far are what stays committed
+                        Throwable cause = NestedExceptionUtils.getMostSpecificCause(e);
+                        return stop(generator, processed, imported, failed, "Import stopped saving rows up to line "
+                                + batch.lastLine() + ": " + (cause.getMessage() != null ? cause.getMessage() : cause));
+                    }
+                    imported += batch.books().size();
+                }
+
+                for(BookImportError error : batch.errors()) {
+                    write(generator, error);
+                }
+                failed += batch.errors().size();
+                processed += batch.books().size() + batch.errors().size();
+
+                BookImportProgress progress = new BookImportProgress(processed, imported, failed, batch.last());
+                write(generator, progress);
+                generator.flush();
+
+                if(batch.last()) {
+                    return progress;
+                }
+            }
+        } finally {
+            parserThread.interrupt();
+        }
+    }
+
+    private BookImportProgress stop(JsonGenerator generator, long processed, long imported, long failed,
+                                    String failure) throws IOException {
+        BookImportProgress stopped = new BookImportProgress(processed, imported, failed, true);
+        stopped.setFailure(failure);
+        write(generator, stopped);
+        generator.flush();
+        return stopped;
+    }
+
+    private void parse(RowParser parser, BlockingQueue<Batch> queue) {
+        List<Book> books = new ArrayList<>(batchSize);
+        List<BookImportError> errors = new ArrayList<>();
+        Batch failed;
+
+        try {
+            Row row;
+            while((row = parser.next()) != null) {
+                String error = validate(row.book());
+
+                if(row.error() != null || error != null) {
+                    errors.add(new BookImportError(row.line(), row.error() != null ? row.error() : error));
+                } else {
+                    books.add(row.book());
+                }
+
+                if(books.size() + errors.size() >= batchSize) {
+                    queue.put(new Batch(books, errors, row.line(), false, null));
+                    books = new ArrayList<>(batchSize);
+                    errors = new ArrayList<>();
+                }
+            }
+
+            queue.put(new Batch(books, errors, parser.line(), true, null));
+            return;
+        } catch (InterruptedException e) {
+            // The consumer gave up
+            return;
+        } catch (Throwable e) {
+            // Errors too, or the request thread would wait on the queue forever
+            failed = new Batch(List.of(), List.of(), parser.line(), true,
+                    e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+
+        try {
+            queue.put(failed);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void insert(List<Book> books) {
+        transactionTemplate.executeWithoutResult(status -> {
+            bookRepository.saveAll(books);
+            // Send the batch now and drop it from the request's persistence context, which lives as long as the import
+            entityManager.flush();
+            entityManager.clear();
+        });
+
+        for(Book book : books) {
+            bookSearchIndex.index(book);
+        }
+    }
+
+    static String validate(Book book) {
+        if(book == null) {
+            return null;
+        }
+        if(isBlank(book.getTitle()) || isBlank(book.getAuthor()) || isBlank(book.getCategory())) {
+            return "Title, author and category are required";
+        }
+        if(book.getTitle().length() > MAX_TEXT_LENGTH || book.getAuthor().length() > MAX_TEXT_LENGTH
+                || book.getCategory().length() > MAX_TEXT_LENGTH) {
+            return "Title, author and category must be at most " + MAX_TEXT_LENGTH + " characters";
+        }
+        if(book.getCopies() < 0) {
+            return "Copies must not be negative";
+        }
+        return null;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private static Book toBook(AddBookRequest request) {
+        Book book = new Book();
+        book.setTitle(request.getTitle());
+        book.setAuthor(request.getAuthor());
+        book.setDescription(request.getDescription());
+        book.setCopies(request.getCopies());
+        book.setCopiesAvailable(request.getCopies());
+        book.setCategory(request.getCategory());
+        book.setImg(request.getImg());
+        book.setThumbnail(Thumbnails.of(request.getImg()));
+        return book;
+    }
+
+    private void write(JsonGenerator generator, Object value) throws IOException {
+        objectMapper.writeValue(generator, value);
+        generator.writeRaw('\n');
+    }
+
+    private record Row(long line, Book book, String error) {}
+
+    private record Batch(List<Book> books, List<BookImportError> errors, long lastLine, boolean last,
+                         String failure) {}
+
+    private interface RowParser {
+
+        /**
+         * The next row, or null at the end of the input. A row that cannot be parsed carries an error instead of a book.
+         */
+        Row next() throws IOException;
+
+        long line();
+    }
+
+    /**
+     * Reads the input a line at a time, refusing lines longer than {@link #MAX_ROW_LENGTH}.
+     */
+    private abstract static class LineReader implements RowParser {
+
+        protected final BufferedReader reader;
+
+        protected long line;
+
+        private final StringBuilder buffer = new StringBuilder();
+
+        LineReader(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public long line() {
+            return line;
+        }
+
+        protected String readLine() throws IOException {
+            buffer.setLength(0);
+
+            int c = reader.read();
+            if(c == -1) {
+                return null;
+            }
+
+            line++;
+            while(c != -1 && c != '\n') {
+                if(buffer.length() >= MAX_ROW_LENGTH) {
+                    throw new IOException("Row longer than " + MAX_ROW_LENGTH + " characters");
+                }
+                if(c != '\r') {
+                    buffer.append((char) c);
+                }
+                c = reader.read();
+            }
+            return buffer.toString();
+        }
+    }
+
+    private class NdjsonRowParser extends LineReader {
+
+        private final ObjectReader objectReader = objectMapper.readerFor(AddBookRequest.class);
+
+        NdjsonRowParser(BufferedReader reader) {
+            super(reader);
+        }
+
+        @Override
+        public Row next() throws IOException {
+            String text;
+            do {
+                text = readLine();
+                if(text == null) {
+                    return null;
+                }
+            } while(text.isBlank());
+
+            try {
+                return new Row(line, toBook(objectReader.readValue(text)), null);
+            } catch (IOException e) {
+                return new Row(line, null, "Invalid JSON row");
+            }
+        }
+    }
+
+    /**
+     * RFC 4180 style CSV with a header row naming the columns. Quoted fields may contain commas,
+     * doubled quotes and line breaks.
+     */
+    private static class CsvRowParser extends LineReader {
+
+        private Map<String, Integer> columns;
+
+        CsvRowParser(BufferedReader reader) {
+            super(reader);
+        }
+
+        @Override
+        public Row next() throws IOException {
+            if(columns == null) {
+                List<String> header = readRecord();
+                if(header == null) {
+                    return null;
+                }
+
+                columns = new HashMap<>();
+                for(int i = 0; i < header.size(); i++) {
+                    columns.put(header.get(i).trim().toLowerCase(), i);
+                }
+                for(String column : REQUIRED_CSV_COLUMNS) {
+                    if(!columns.containsKey(column)) {
+                        throw new IOException("Missing CSV column " + column);
+                    }
+                }
+            }
+
+            List<String> fields;
+            long start;
+            do {
+                start = line + 1;
+                fields = readRecord();
+                if(fields == null) {
+                    return null;
+                }
+            } while(fields.size() == 1 && fields.getFirst().isBlank());
+
+            if(fields.size() != columns.size()) {
+                return new Row(start, null, "Expected " + columns.size() + " fields but found " + fields.size());
+            }
+
+            AddBookRequest request = new AddBookRequest();
+            request.setTitle(field(fields, "title"));
+            request.setAuthor(field(fields, "author"));
+            request.setDescription(field(fields, "description"));
+            request.setCategory(field(fields, "category"));
+            request.setImg(field(fields, "img"));
+
+            try {
+                request.setCopies(Integer.parseInt(field(fields, "copies").trim()));
+            } catch (NumberFormatException e) {
+                return new Row(start, null, "Copies must be a whole number");
+            }
+
+            return new Row(start, toBook(request), null);
+        }
+
+        private String field(List<String> fields, String column) {
+            Integer index = columns.get(column);
+            return index != null ? fields.get(index) : null;
+        }
+
+        private List<String> readRecord() throws IOException {
+            int c = reader.read();
+            if(c == -1) {
+                return null;
+            }
+
+            line++;
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            int length = 0;
+
+            while(true) {
+                if(++length > MAX_ROW_LENGTH) {
+                    throw new IOException("Row longer than " + MAX_ROW_LENGTH + " characters");
+                }
+
+                if(quoted) {
+                    if(c == -1) {
+                        throw new IOException("Unterminated quoted field");
+                    }
+                    if(c == '"') {
+                        reader.mark(1);
+                        if(reader.read() == '"') {
+                            field.append('"');
+                        } else {
+                            reader.reset();
+                            quoted = false;
+                        }
+                    } else {
+                        if(c == '\n') {
+                            line++;
+                        }
+                        field.append((char) c);
+                    }
+                } else if(c == '"' && field.isEmpty()) {
+                    quoted = true;
+                } else if(c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if(c == '\n' || c == -1) {
+                    fields.add(field.toString());
+                    return fields;
+                } else if(c != '\r') {
+                    field.append((char) c);
+                }
+
+                c = reader.read();
+            }
+        }
+    }
+}
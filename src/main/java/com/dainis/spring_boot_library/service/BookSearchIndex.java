@@ -0,0 +1,199 @@
+package com.dainis.spring_boot_library.service;
+
+import com.dainis.spring_boot_library.entity.Book;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Tokenized inverted index over book title, author, category and description.
+ * Every query term is matched as a prefix; exact term matches rank above prefix-only matches.
+ */
+@Component
+public class BookSearchIndex {
+
+    private static final float TITLE_WEIGHT = 3.0f;
+    private static final float AUTHOR_WEIGHT = 2.0f;
+    private static final float CATEGORY_WEIGHT = 1.5f;
+    private static final float DESCRIPTION_WEIGHT = 1.0f;
+
+    private static final float PREFIX_MATCH_FACTOR = 0.5f;
+
+    // term -> (book id -> weighted term frequency)
+    private final NavigableMap<String, Map<Long, Float>> postings = new TreeMap<>();
+
+    // book id -> its indexed terms, so re-indexing or removing a book only touches its own postings
+    private final Map<Long, Set<String>> documentTerms = new HashMap<>();
+
+    // book id -> the version of the book row that was indexed
+    private final Map<Long, Long> documentVersions = new HashMap<>();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public void index(Book book) {
+        Map<String, Float> terms = new HashMap<>();
+        addTerms(terms, book.getTitle(), TITLE_WEIGHT);
+        addTerms(terms, book.getAuthor(), AUTHOR_WEIGHT);
+        addTerms(terms, book.getCategory(), CATEGORY_WEIGHT);
+        addTerms(terms, book.getDescription(), DESCRIPTION_WEIGHT);
+
+        lock.writeLock().lock();
+        try {
+            removePostings(book.getId());
+
+            for(Map.Entry<String, Float> term : terms.entrySet()) {
+                postings.computeIfAbsent(term.getKey(), k -> new HashMap<>())
+                        .put(book.getId(), term.getValue());
+            }
+            documentTerms.put(book.getId(), terms.keySet());
+            documentVersions.put(book.getId(), book.getVersion());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long bookId) {
+        lock.writeLock().lock();
+        try {
+            removePostings(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isIndexed(Long bookId, Long version) {
+        lock.readLock().lock();
+        try {
+            return documentTerms.containsKey(bookId) && Objects.equals(documentVersions.get(bookId), version);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Set<Long> indexedIds() {
+        lock.readLock().lock();
+        try {
+            return new HashSet<>(documentTerms.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documentTerms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of all books matching every term of the query, best match first.
+     */
+    public List<Long> search(String query) {
+        List<String> queryTerms = tokenize(query);
+
+        if(queryTerms.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Map<Long, Float> scores = null;
+
+        lock.readLock().lock();
+        try {
+            int documentCount = documentTerms.size();
+
+            for(String queryTerm : queryTerms) {
+                Map<Long, Float> termScores = scoreTerm(queryTerm, documentCount);
+
+                if(scores == null) {
+                    scores = termScores;
+                } else {
+                    scores.keySet().retainAll(termScores.keySet());
+                    for(Map.Entry<Long, Float> score : scores.entrySet()) {
+                        score.setValue(score.getValue() + termScores.get(score.getKey()));
+                    }
+                }
+
+                if(scores.isEmpty()) {
+                    return Collections.emptyList();
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Map.Entry<Long, Float>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort(Map.Entry.<Long, Float>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey()));
+
+        List<Long> bookIds = new ArrayList<>(ranked.size());
+        for(Map.Entry<Long, Float> entry : ranked) {
+            bookIds.add(entry.getKey());
+        }
+        return bookIds;
+    }
+
+    private Map<Long, Float> scoreTerm(String queryTerm, int documentCount) {
+        Map<Long, Float> termScores = new HashMap<>();
+
+        SortedMap<String, Map<Long, Float>> matches = postings.subMap(queryTerm, queryTerm + Character.MAX_VALUE);
+
+        for(Map.Entry<String, Map<Long, Float>> match : matches.entrySet()) {
+            Map<Long, Float> documents = match.getValue();
+            float idf = (float) Math.log(1.0 + (double) documentCount / documents.size());
+            float factor = match.getKey().equals(queryTerm) ? 1.0f : PREFIX_MATCH_FACTOR;
+
+            for(Map.Entry<Long, Float> document : documents.entrySet()) {
+                float score = document.getValue() * idf * factor;
+                termScores.merge(document.getKey(), score, Math::max);
+            }
+        }
+
+        return termScores;
+    }
+
+    private void removePostings(Long bookId) {
+        Set<String> terms = documentTerms.remove(bookId);
+        documentVersions.remove(bookId);
+
+        if(terms == null) {
+            return;
+        }
+
+        for(String term : terms) {
+            Map<Long, Float> documents = postings.get(term);
+            documents.remove(bookId);
+            if(documents.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    private static void addTerms(Map<String, Float> terms, String text, float weight) {
+        for(String term : tokenize(text)) {
+            terms.merge(term, weight, Float::sum);
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        if(text == null || text.isBlank()) {
+            return Collections.emptyList();
+        }
+
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT);
+
+        List<String> tokens = new ArrayList<>();
+        for(String token : normalized.split("[^\\p{L}\\p{Nd}]+")) {
+            if(!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,125 @@
+package com.dainis.spring_boot_library.service;
+
+import com.dainis.spring_boot_library.dao.BookRepository;
+import com.dainis.spring_boot_library.entity.Book;
+import com.dainis.spring_boot_library.responsemodels.BookSearchResponse;
+import com.dainis.spring_boot_library.responsemodels.BookSummary;
+import com.dainis.spring_boot_library.utils.KeysetCursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+
+@Service
+@Transactional(readOnly = true)
+public class BookSearchService {
+
+    private BookRepository bookRepository;
+
+    private BookSearchIndex bookSearchIndex;
+
+    private ResourceVersions resourceVersions;
+
+    private JdbcTemplate jdbcTemplate;
+
+    // book_catalog counter in resource_version as of the last sync; -1 until the index has been loaded
+    private long syncedVersion = -1;
+
+    @Autowired
+    public BookSearchService(BookRepository bookRepository, BookSearchIndex bookSearchIndex,
+                             ResourceVersions resourceVersions, JdbcTemplate jdbcTemplate) {
+        this.bookRepository = bookRepository;
+        this.bookSearchIndex = bookSearchIndex;
+        this.resourceVersions = resourceVersions;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadIndex() {
+        sync();
+    }
+
+    /**
+     * AdminService and BookImportService keep the index current for books changed on this instance. Books added,
+     * removed or with their title, author, category or description edited on another instance are picked up here:
+     * ResourceVersionListener moves the book_catalog counter in resource_version for those entity writes, and when it
+     * has moved, the book ids and versions are compared with the index one keyset page at a time, changed books are
+     * re-indexed and books that are gone are removed. Checkouts and returns don't move that counter, so circulation
+     * alone never sets off a scan of the catalog.
+     */
+    @Scheduled(fixedDelayString = "${library.search.sync-interval}")
+    public synchronized void sync() {
+        long version = resourceVersions.catalogVersion();
+        if(version == syncedVersion) {
+            return;
+        }
+
+        // Only books indexed before the scan can be judged gone; one indexed here meanwhile may be past it
+        Set<Long> removedIds = bookSearchIndex.indexedIds();
+        long afterId = 0;
+        int read;
+
+        do {
+            List<Long> changedIds = new ArrayList<>();
+            List<long[]> rows = jdbcTemplate.query("select id, version from book where id > ? order by id limit ?",
+                    (rs, rowNum) -> new long[] { rs.getLong("id"), rs.getLong("version") },
+                    afterId, KeysetCursor.MAX_PAGE_SIZE);
+            read = rows.size();
+
+            for(long[] row : rows) {
+                afterId = row[0];
+                removedIds.remove(row[0]);
+                if(!bookSearchIndex.isIndexed(row[0], row[1])) {
+                    changedIds.add(row[0]);
+                }
+            }
+
+            if(!changedIds.isEmpty()) {
+                for(Book book : bookRepository.findAllById(changedIds)) {
+                    bookSearchIndex.index(book);
+                }
+            }
+        } while(read == KeysetCursor.MAX_PAGE_SIZE);
+
+        for(Long bookId : removedIds) {
+            bookSearchIndex.remove(bookId);
+        }
+
+        syncedVersion = version;
+    }
+
+    public BookSearchResponse search(String query, int page, int size) throws Exception {
+        if(page < 0 || size <= 0) {
+            throw new Exception("Invalid page or size");
+        }
+
+        List<Long> rankedIds = bookSearchIndex.search(query);
+
+        int from = (int) Math.min((long) page * size, rankedIds.size());
+        int to = Math.min(from + size, rankedIds.size());
+        List<Long> pageIds = rankedIds.subList(from, to);
+
+        List<BookSummary> books = new ArrayList<>();
+
+        if(!pageIds.isEmpty()) {
+            Map<Long, BookSummary> summariesById = new HashMap<>();
+            for(BookSummary summary : bookRepository.findSummariesByBookIds(pageIds)) {
+                summariesById.put(summary.getId(), summary);
+            }
+
+            for(Long bookId : pageIds) {
+                BookSummary summary = summariesById.get(bookId);
+                if(summary != null) {
+                    books.add(summary);
+                }
+            }
+        }
+
+        return new BookSearchResponse(books, rankedIds.size(), page, size);
+    }
+}
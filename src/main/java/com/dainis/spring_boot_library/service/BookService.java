@@ -1,198 +1,283 @@
 package com.dainis.spring_boot_library.service;
 
 import com.dainis.spring_boot_library.dao.BookRepository;
+import com.dainis.spring_boot_library.dao.CheckoutEligibility;
 import com.dainis.spring_boot_library.dao.CheckoutRepository;
-import com.dainis.spring_boot_library.dao.HistoryRepository;
+import com.dainis.spring_boot_library.dao.FeeLedgerRepository;
+import com.dainis.spring_boot_library.dao.HistoryOutboxRepository;
+import com.dainis.spring_boot_library.dao.LoanBatchRepository;
 import com.dainis.spring_boot_library.dao.PaymentRepository;
 import com.dainis.spring_boot_library.entity.Book;
 import com.dainis.spring_boot_library.entity.Checkout;
-import com.dainis.spring_boot_library.entity.History;
+import com.dainis.spring_boot_library.entity.FeeLedgerEntry;
+import com.dainis.spring_boot_library.entity.HistoryOutbox;
 import com.dainis.spring_boot_library.entity.Payment;
+import com.dainis.spring_boot_library.responsemodels.BookSummary;
+import com.dainis.spring_boot_library.responsemodels.BulkBookResult;
+import com.dainis.spring_boot_library.responsemodels.CursorPageResponse;
 import com.dainis.spring_boot_library.responsemodels.ShelfCurrentLoansResponse;
+import com.dainis.spring_boot_library.utils.KeysetCursor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.sql.Time;
-import java.text.SimpleDateFormat;
 import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Optional;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
+import java.util.Set;
 
+// Checked exceptions roll back too, so a rejected loan never leaves part of its writes behind
 @Service
-@Transactional
+@Transactional(rollbackFor = Exception.class)
 public class BookService {
 
+    static final int MAX_BULK_BOOKS = 50;
+
     private BookRepository bookRepository;
 
     private CheckoutRepository checkoutRepository;
 
-    private HistoryRepository historyRepository;
+    private HistoryOutboxRepository historyOutboxRepository;
 
     private PaymentRepository paymentRepository;
 
+    private FeeLedgerRepository feeLedgerRepository;
+
+    private BookCache bookCache;
+
+    private ShelfSummaryCache shelfSummaryCache;
+
+    private LoanBatchRepository loanBatchRepository;
+
+    private ResourceVersions resourceVersions;
+
     @Autowired
     public BookService(BookRepository bookRepository, CheckoutRepository checkoutRepository,
-                       HistoryRepository historyRepository, PaymentRepository paymentRepository) {
+                       HistoryOutboxRepository historyOutboxRepository, PaymentRepository paymentRepository,
+                       FeeLedgerRepository feeLedgerRepository, BookCache bookCache,
+                       ShelfSummaryCache shelfSummaryCache, LoanBatchRepository loanBatchRepository,
+                       ResourceVersions resourceVersions) {
         this.bookRepository = bookRepository;
         this.checkoutRepository = checkoutRepository;
-        this.historyRepository = historyRepository;
+        this.historyOutboxRepository = historyOutboxRepository;
         this.paymentRepository = paymentRepository;
+        this.feeLedgerRepository = feeLedgerRepository;
+        this.bookCache = bookCache;
+        this.shelfSummaryCache = shelfSummaryCache;
+        this.loanBatchRepository = loanBatchRepository;
+        this.resourceVersions = resourceVersions;
+    }
+
+    public CursorPageResponse<BookSummary> booksByCategory(String category, String cursor, int size) throws Exception {
+        Slice<BookSummary> books = bookRepository.findSummariesByCategory(
+                category, KeysetCursor.decode(cursor), KeysetCursor.pageRequest(size));
+
+        return CursorPageResponse.of(books, BookSummary::getId);
     }
 
     public Book checkoutBook(String userEmail, Long bookId) throws Exception {
 
-        Optional<Book> book = bookRepository.findById(bookId);
+        CheckoutEligibility eligibility = checkoutRepository.findCheckoutEligibility(
+                userEmail, List.of(bookId), LocalDate.now());
 
-        Checkout validateCheckout = checkoutRepository.findByUserEmailAndBookId(userEmail, bookId);
+        if(eligibility.getSameBookLoans() > 0) {
+            throw new Exception("Book doesn't exist or already checked out by user");
+        }
+
+        requireNoOutstandingFees(eligibility);
 
-        if(!book.isPresent() || validateCheckout != null || book.get().getCopiesAvailable() <= 0) {
+        // Guarded decrement before any other write; it flushes the persistence context first
+        if(bookRepository.checkoutCopy(bookId) == 0) {
             throw new Exception("Book doesn't exist or already checked out by user");
         }
 
-        List<Checkout> currentBooksCheckout = checkoutRepository.findBooksByUserEmail(userEmail);
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
-        boolean bookNeedsReturned = false;
+        createPaymentIfMissing(userEmail, eligibility);
+
+        Checkout checkout = new Checkout(
+                userEmail,
+                LocalDate.now(),
+                LocalDate.now().plusDays(7),
+                bookId
+        );
+
+        checkoutRepository.save(checkout);
+
+        bookChanged(bookId);
+        shelfSummaryCache.loanAdded(userEmail, bookId, checkout.getReturnDate());
+
+        // Not through BookCache: it would be filled with this transaction's uncommitted row
+        return bookRepository.findById(bookId).get();
+    }
+
+    /**
+     * Checks out a stack of books in one transaction. Fees and overdue loans reject the whole request;
+     * books that are already on loan to the user or have no copy left are reported per item.
+     */
+    public List<BulkBookResult> checkoutBooks(String userEmail, List<Long> bookIds) throws Exception {
+        List<Long> requestedIds = bulkBookIds(bookIds);
+
+        LocalDate today = LocalDate.now();
 
-        for(Checkout checkout: currentBooksCheckout) {
-            Date d1 = sdf.parse(checkout.getReturnDate());
-            Date d2 = sdf.parse(LocalDate.now().toString());
+        CheckoutEligibility eligibility = checkoutRepository.findCheckoutEligibility(userEmail, requestedIds, today);
 
-            TimeUnit time = TimeUnit.DAYS;
+        requireNoOutstandingFees(eligibility);
 
-            double differenceInTime = time.convert(d1.getTime() - d2.getTime(), TimeUnit.MILLISECONDS);
+        Set<Long> checkedOutIds = eligibility.getSameBookLoans() > 0
+                ? new HashSet<>(checkoutRepository.findBookIdsByUserEmailAndBookIdIn(userEmail, requestedIds))
+                : Set.of();
 
-            if (differenceInTime < 0) {
-                bookNeedsReturned = true;
-                break;
+        Map<Long, BulkBookResult> results = new LinkedHashMap<>();
+        List<Long> candidateIds = new ArrayList<>();
+        for(Long bookId : requestedIds) {
+            if(checkedOutIds.contains(bookId)) {
+                results.put(bookId, new BulkBookResult(bookId, false, "Book already checked out by user"));
+            } else {
+                results.put(bookId, null);
+                candidateIds.add(bookId);
             }
         }
 
-        Payment userPayment = paymentRepository.findByUserEmail(userEmail);
+        int[] updated = candidateIds.isEmpty() ? new int[0] : loanBatchRepository.checkoutCopies(candidateIds);
 
-        if(userPayment == null) {
-            Payment payment = new Payment();
-            payment.setAmount(00.00);
-            payment.setUserEmail(userEmail);
+        List<Checkout> checkouts = new ArrayList<>();
+        for(int i = 0; i < candidateIds.size(); i++) {
+            Long bookId = candidateIds.get(i);
 
-            paymentRepository.save(payment);
+            if(updated[i] == 0) {
+                results.put(bookId, new BulkBookResult(bookId, false, "Book doesn't exist or no copies available"));
+                continue;
+            }
 
-            userPayment = payment;
+            checkouts.add(new Checkout(userEmail, today, today.plusDays(7), bookId));
+            results.put(bookId, new BulkBookResult(bookId, true, null));
         }
 
-        if(userPayment.getAmount() > 0 || bookNeedsReturned) {
-            throw new Exception("Outstanding fees");
+        if(!checkouts.isEmpty()) {
+            createPaymentIfMissing(userEmail, eligibility);
         }
 
-        book.get().setCopiesAvailable(book.get().getCopiesAvailable() - 1);
-        bookRepository.save(book.get());
+        // Pooled ids let Hibernate send these as one JDBC batch at flush
+        checkoutRepository.saveAll(checkouts);
 
-        Checkout checkout = new Checkout(
-                userEmail,
-                LocalDate.now().toString(),
-                LocalDate.now().plusDays(7).toString(),
-                book.get().getId()
-        );
-
-        checkoutRepository.save(checkout);
+        for(Checkout checkout : checkouts) {
+            bookChanged(checkout.getBookId());
+            shelfSummaryCache.loanAdded(userEmail, checkout.getBookId(), checkout.getReturnDate());
+        }
 
-        return book.get();
+        return new ArrayList<>(results.values());
     }
 
     public Boolean checkoutBookByUser(String userEmail, Long bookId) {
-        Checkout validateCheckout = checkoutRepository.findByUserEmailAndBookId(userEmail, bookId);
-
-        return validateCheckout != null;
+        return shelfSummaryCache.get(userEmail).isCheckedOut(bookId);
     }
 
     public int currentLoansCount(String userEmail) {
-        return checkoutRepository.findBooksByUserEmail(userEmail).size();
+        return shelfSummaryCache.get(userEmail).loanCount();
     }
 
-    public List<ShelfCurrentLoansResponse> currentLoans(String userEmail) throws Exception {
+    public List<ShelfCurrentLoansResponse> currentLoans(String userEmail) {
+        return checkoutRepository.findShelfLoansByUserEmail(userEmail);
+    }
 
-        List<ShelfCurrentLoansResponse> shelfCurrentLoansResponses = new ArrayList<>();
+    public void returnBook(String userEmail, Long bookId) throws Exception {
 
-        List<Checkout> checkoutList = checkoutRepository.findBooksByUserEmail(userEmail);
-        List<Long> bookIdList = new ArrayList<>();
+        Checkout validateCheckout = checkoutRepository.findLockedByUserEmailAndBookId(userEmail, bookId);
 
-        for(Checkout i : checkoutList) {
-            bookIdList.add(i.getBookId());
+        if(validateCheckout == null) {
+            throw new Exception("Book doesn't exist or not checked out by user");
         }
 
-        List<Book> books = bookRepository.findBooksByBookIds(bookIdList);
-
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
-
-        for(Book book : books) {
-            Optional<Checkout> checkout = checkoutList.stream()
-                    .filter(x -> x.getBookId() == book.getId()).findFirst();
-
-            if(checkout.isPresent()) {
-
-                Date d1 = sdf.parse(checkout.get().getReturnDate());
-                Date d2 = sdf.parse(LocalDate.now().toString());
-
-                TimeUnit time = TimeUnit.DAYS;
+        if(bookRepository.returnCopy(bookId) == 0) {
+            throw new Exception("Book doesn't exist or not checked out by user");
+        }
 
-                long difference_In_Time = time.convert(d1.getTime() - d2.getTime(),
-                        TimeUnit.MILLISECONDS);
+        // Only charge the days the fee accrual job hasn't charged yet
+        LocalDate chargedThrough = validateCheckout.getFeesAccruedThrough() != null
+                ? validateCheckout.getFeesAccruedThrough()
+                : validateCheckout.getReturnDate();
+        long daysOverdue = LocalDate.now().toEpochDay() - chargedThrough.toEpochDay();
 
-                shelfCurrentLoansResponses.add(new ShelfCurrentLoansResponse(book, (int) difference_In_Time));
-            }
+        // Appended, not added to the payment row, so concurrent returns don't queue on it
+        if(daysOverdue > 0) {
+            feeLedgerRepository.save(FeeLedgerEntry.overdueFee(userEmail, daysOverdue));
         }
 
-        return shelfCurrentLoansResponses;
-    }
+        checkoutRepository.deleteById(validateCheckout.getId());
 
-    public void returnBook(String userEmail, Long bookId) throws Exception {
+        // HistoryOutboxDrainer writes the History row, with the book details, off the request path
+        historyOutboxRepository.save(new HistoryOutbox(
+                userEmail,
+                bookId,
+                validateCheckout.getCheckoutDate(),
+                LocalDate.now()
+        ));
 
-        Optional<Book> book = bookRepository.findById(bookId);
+        bookChanged(bookId);
+        shelfSummaryCache.loanRemoved(userEmail, bookId);
+    }
 
-        Checkout validateCheckout = checkoutRepository.findByUserEmailAndBookId(userEmail, bookId);
+    /**
+     * Returns a stack of books in one transaction, charging late fees for all of them in a single ledger entry.
+     * Books the user doesn't have on loan are reported per item.
+     */
+    public List<BulkBookResult> returnBooks(String userEmail, List<Long> bookIds) throws Exception {
+        List<Long> requestedIds = bulkBookIds(bookIds);
 
-        if(!book.isPresent() || validateCheckout == null) {
-            throw new Exception("Book doesn't exist or not checked out by user");
+        Map<Long, Checkout> checkouts = new HashMap<>();
+        for(Checkout checkout : checkoutRepository.findLockedByUserEmailAndBookIdIn(userEmail, requestedIds)) {
+            checkouts.put(checkout.getBookId(), checkout);
         }
 
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
+        LocalDate today = LocalDate.now();
+        List<BulkBookResult> results = new ArrayList<>();
+        List<Long> returnedIds = new ArrayList<>();
+        List<Long> checkoutIds = new ArrayList<>();
+        List<HistoryOutbox> histories = new ArrayList<>();
+        long daysOverdue = 0;
 
-        Date d1 = sdf.parse(validateCheckout.getReturnDate());
-        Date d2 = sdf.parse(LocalDate.now().toString());
+        for(Long bookId : requestedIds) {
+            Checkout checkout = checkouts.get(bookId);
 
-        TimeUnit time = TimeUnit.DAYS;
-        double differenceInTime = time.convert(d1.getTime() - d2.getTime(), TimeUnit.MILLISECONDS);
+            if(checkout == null) {
+                results.add(new BulkBookResult(bookId, false, "Book doesn't exist or not checked out by user"));
+                continue;
+            }
 
-        if(differenceInTime < 0) {
-            Payment payment = paymentRepository.findByUserEmail(userEmail);
+            LocalDate chargedThrough = checkout.getFeesAccruedThrough() != null
+                    ? checkout.getFeesAccruedThrough()
+                    : checkout.getReturnDate();
+            daysOverdue += Math.max(0, today.toEpochDay() - chargedThrough.toEpochDay());
 
-            if(payment == null) {
-                throw new Exception("Payment doesn't exist");
-            }
+            returnedIds.add(bookId);
+            checkoutIds.add(checkout.getId());
+            histories.add(new HistoryOutbox(userEmail, bookId, checkout.getCheckoutDate(), today));
+            results.add(new BulkBookResult(bookId, true, null));
+        }
 
-            payment.setAmount(payment.getAmount() + (differenceInTime * -1));
-            paymentRepository.save(payment);
+        if(returnedIds.isEmpty()) {
+            return results;
         }
 
-        book.get().setCopiesAvailable(book.get().getCopiesAvailable() + 1);
-        bookRepository.save(book.get());
+        if(daysOverdue > 0) {
+            feeLedgerRepository.save(FeeLedgerEntry.overdueFee(userEmail, daysOverdue));
+        }
 
-        checkoutRepository.deleteById(validateCheckout.getId());
+        checkoutRepository.deleteAllByIdInBatch(checkoutIds);
+        historyOutboxRepository.saveAll(histories);
+        loanBatchRepository.returnCopies(returnedIds);
 
-        History history = new History(
-                userEmail,
-                validateCheckout.getCheckoutDate(),
-                LocalDate.now().toString(),
-                book.get().getTitle(),
-                book.get().getAuthor(),
-                book.get().getDescription(),
-                book.get().getImg()
-        );
+        for(Long bookId : returnedIds) {
+            bookChanged(bookId);
+            shelfSummaryCache.loanRemoved(userEmail, bookId);
+        }
 
-        historyRepository.save(history);
+        return results;
     }
 
     public void renewLoan(String userEmail, Long bookId) throws Exception    {
@@ -203,14 +288,40 @@ public class BookService {
             throw new Exception("Book does not exist or not checked out by user");
         }
 
-        SimpleDateFormat sdFormat = new SimpleDateFormat("yyyy-MM-dd");
+        if(!validateCheckout.getReturnDate().isBefore(LocalDate.now())) {
+            validateCheckout.setReturnDate(LocalDate.now().plusDays(7));
+            checkoutRepository.save(validateCheckout);
+            shelfSummaryCache.loanAdded(userEmail, bookId, validateCheckout.getReturnDate());
+        }
+    }
 
-        Date d1 = sdFormat.parse(validateCheckout.getReturnDate());
-        Date d2 = sdFormat.parse(LocalDate.now().toString());
+    private static void requireNoOutstandingFees(CheckoutEligibility eligibility) throws Exception {
+        if(eligibility.getOverdueLoans() > 0 || (eligibility.getFeesOwed() != null && eligibility.getFeesOwed() > 0)) {
+            throw new Exception("Outstanding fees");
+        }
+    }
 
-        if(d1.compareTo(d2) >= 0) {
-            validateCheckout.setReturnDate(LocalDate.now().plusDays(7).toString());
-            checkoutRepository.save(validateCheckout);
+    private void createPaymentIfMissing(String userEmail, CheckoutEligibility eligibility) {
+        if(eligibility.getFeesOwed() == null) {
+            Payment payment = new Payment();
+            payment.setBalanceCents(0);
+            payment.setUserEmail(userEmail);
+
+            paymentRepository.save(payment);
+        }
+    }
+
+    private static List<Long> bulkBookIds(List<Long> bookIds) throws Exception {
+        if(bookIds == null || bookIds.isEmpty() || bookIds.size() > MAX_BULK_BOOKS) {
+            throw new Exception("Between 1 and " + MAX_BULK_BOOKS + " books per request");
         }
+
+        return new ArrayList<>(new LinkedHashSet<>(bookIds));
+    }
+
+    // Copy counts change through bulk updates, which the entity listener doesn't see
+    private void bookChanged(Long bookId) {
+        bookCache.evict(bookId);
+        resourceVersions.changed(Book.class);
     }
 }
@@ -0,0 +1,59 @@
+package com.dainis.spring_boot_library.service;
+
+import com.dainis.spring_boot_library.entity.Book;
+import com.dainis.spring_boot_library.utils.KeysetCursor;
+import com.dainis.spring_boot_library.utils.Thumbnails;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fills book.thumbnail for books stored before the column existed, one keyset page at a time.
+ * Books whose img gives no thumbnail stay null and are looked at again on the next start.
+ */
+@Service
+public class BookThumbnailBackfill {
+
+    private JdbcTemplate jdbcTemplate;
+
+    private ResourceVersions resourceVersions;
+
+    @Autowired
+    public BookThumbnailBackfill(JdbcTemplate jdbcTemplate, ResourceVersions resourceVersions) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.resourceVersions = resourceVersions;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        long afterId = 0;
+        int read;
+
+        do {
+            List<Object[]> rows = jdbcTemplate.query(
+                    "select id, img from book where id > ? and thumbnail is null and img is not null " +
+                            "order by id limit ?",
+                    (rs, rowNum) -> new Object[] { Thumbnails.of(rs.getString("img")), rs.getLong("id") },
+                    afterId, KeysetCursor.MAX_PAGE_SIZE);
+            read = rows.size();
+
+            List<Object[]> updates = new ArrayList<>();
+            for(Object[] row : rows) {
+                afterId = (Long) row[1];
+                if(row[0] != null) {
+                    updates.add(row);
+                }
+            }
+
+            if(!updates.isEmpty()) {
+                jdbcTemplate.batchUpdate("update book set thumbnail = ? where id = ? and thumbnail is null", updates);
+                resourceVersions.changed(Book.class);
+            }
+        } while(read == KeysetCursor.MAX_PAGE_SIZE);
+    }
+}
@@ -0,0 +1,35 @@
+package com.dainis.spring_boot_library.service;
+
+/**
+ * Line-oriented formats accepted by the admin import and produced by the admin export.
+ */
+public enum DataFormat {
+    NDJSON("application/x-ndjson", "ndjson"),
+    CSV("text/csv", "csv");
+
+    private final String contentType;
+
+    private final String extension;
+
+    DataFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String contentType() {
+        return contentType;
+    }
+
+    public String extension() {
+        return extension;
+    }
+
+    public static DataFormat of(String format) throws Exception {
+        for(DataFormat value : values()) {
+            if(value.extension.equalsIgnoreCase(format)) {
+                return value;
+            }
+        }
+        throw new Exception("Unsupported format");
+    }
+}
@@ -0,0 +1,269 @@
+package com.dainis.spring_boot_library.service;
+
+import com.dainis.spring_boot_library.entity.History;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Streams whole tables to an admin as NDJSON or CSV. Rows go from a forward-only JDBC result set
+ * with a fixed fetch size straight to the response, so nothing is held in memory or in a persistence context.
+ * History is read from the table and the archive segments while holding the archive's job_lock, so a row being
+ * archived meanwhile is exported once, from one or the other; archive runs wait for the export to finish.
+ */
+@Service
+public class ExportService {
+
+    public enum Dataset {
+        HISTORY("history", "history",
+                "id", "user_email", "checkout_date", "returned_date", "title", "author", "description"),
+        CHECKOUTS("checkouts", "checkout",
+                "id", "user_email", "book_id", "checkout_date", "return_date", "fees_accrued_through"),
+        // The balance as Payment.amount computes it, in cents: the snapshot plus the ledger tail above its watermark
+        PAYMENTS("payments", new String[] { "id", "user_email", "balance_cents" },
+                "select p.id, p.user_email, p.balance_cents + (select coalesce(sum(l.amount_cents), 0) " +
+                        "from fee_ledger l where l.user_email = p.user_email and l.id > p.compacted_through_id) " +
+                        "from payment p"),
+        FEE_LEDGER("fee-ledger", "fee_ledger",
+                "id", "user_email", "entry_type", "amount_cents", "created_at");
+
+        private final String name;
+
+        private final String query;
+
+        private final String[] columns;
+
+        Dataset(String name, String table, String... columns) {
+            this(name, columns, "select " + String.join(", ", columns) + " from " + table);
+        }
+
+        Dataset(String name, String[] columns, String query) {
+            this.name = name;
+            this.columns = columns;
+            this.query = query;
+        }
+
+        public String fileName(DataFormat format) {
+            return name + "." + format.extension();
+        }
+
+        public static Dataset of(String dataset) throws Exception {
+            for(Dataset value : values()) {
+                if(value.name.equals(dataset)) {
+                    return value;
+                }
+            }
+            throw new Exception("Unknown export");
+        }
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate transactionTemplate;
+
+    private HistoryArchive historyArchive;
+
+    private ObjectMapper objectMapper;
+
+    private int fetchSize;
+
+    @Autowired
+    public ExportService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                         HistoryArchive historyArchive, ObjectMapper objectMapper,
+                         @Value("${library.export.fetch-size}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.historyArchive = historyArchive;
+        this.objectMapper = objectMapper;
+        this.fetchSize = fetchSize;
+    }
+
+    public void export(Dataset dataset, DataFormat format, OutputStream out) throws IOException {
+        if(dataset != Dataset.HISTORY) {
+            export(dataset, format, out, List.of());
+            return;
+        }
+
+        // The streaming query below runs on this transaction's connection, so the lock covers the table read
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try {
+                    export(dataset, format, out, historyArchive.lockedSegments());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void export(Dataset dataset, DataFormat format, OutputStream out, List<HistorySegment> segments)
+            throws IOException {
+        JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+        streaming.setFetchSize(fetchSize);
+
+        try(RowWriter writer = format == DataFormat.NDJSON ? new NdjsonWriter(out) : new CsvWriter(out)) {
+            String[] columns = dataset.columns;
+            writer.header(columns);
+
+            streaming.query(dataset.query, (RowCallbackHandler) rs -> {
+                Object[] values = new Object[columns.length];
+                for(int i = 0; i < values.length; i++) {
+                    values[i] = rs.getObject(i + 1);
+                }
+                write(writer, columns, values);
+            });
+
+            for(HistorySegment segment : segments) {
+                segment.forEach(history -> write(writer, columns, archivedValues(history)));
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void write(RowWriter writer, String[] columns, Object[] values) {
+        try {
+            writer.row(columns, values);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Object[] archivedValues(History history) {
+        return new Object[] { history.getId(), history.getUserEmail(), history.getCheckoutDate(),
+                history.getReturnedDate(), history.getTitle(), history.getAuthor(), history.getDescription() };
+    }
+
+    private interface RowWriter extends AutoCloseable {
+
+        void header(String[] columns) throws IOException;
+
+        void row(String[] columns, Object[] values) throws IOException;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    private class NdjsonWriter implements RowWriter {
+
+        private final JsonGenerator generator;
+
+        NdjsonWriter(OutputStream out) throws IOException {
+            this.generator = objectMapper.getFactory()
+                    .createGenerator(new BufferedOutputStream(out, BUFFER_SIZE), JsonEncoding.UTF8);
+            this.generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void header(String[] columns) {
+        }
+
+        @Override
+        public void row(String[] columns, Object[] values) throws IOException {
+            generator.writeStartObject();
+            for(int i = 0; i < columns.length; i++) {
+                generator.writeFieldName(columns[i]);
+
+                Object value = values[i];
+                if(value == null) {
+                    generator.writeNull();
+                } else if(value instanceof Long || value instanceof Integer) {
+                    generator.writeNumber(((Number) value).longValue());
+                } else if(value instanceof Number number) {
+                    generator.writeNumber(number.doubleValue());
+                } else {
+                    generator.writeString(text(value));
+                }
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+
+    private static class CsvWriter implements RowWriter {
+
+        private final Writer writer;
+
+        CsvWriter(OutputStream out) {
+            this.writer = new OutputStreamWriter(new BufferedOutputStream(out, BUFFER_SIZE), StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void header(String[] columns) throws IOException {
+            writeLine(columns);
+        }
+
+        @Override
+        public void row(String[] columns, Object[] values) throws IOException {
+            writeLine(values);
+        }
+
+        private void writeLine(Object[] values) throws IOException {
+            for(int i = 0; i < values.length; i++) {
+                if(i > 0) {
+                    writer.write(',');
+                }
+                if(values[i] != null) {
+                    writeField(text(values[i]));
+                }
+            }
+            writer.write("\r\n");
+        }
+
+        private void writeField(String value) throws IOException {
+            boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                    || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+
+            if(!quote) {
+                writer.write(value);
+                return;
+            }
+
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    private static String text(Object value) {
+        if(value instanceof Date date) {
+            return date.toLocalDate().toString();
+        }
+        if(value instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime().toString();
+        }
+        return value.toString();
+    }
+}
@@ -0,0 +1,56 @@
+package com.dainis.spring_boot_library.service;
+
+import com.dainis.spring_boot_library.requestmodels.PaymentInfoRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for Stripe, for tests and offline load tests. Answers with a Stripe-shaped
+ * payment intent after a fixed latency, so the bulkhead and deadlines behave as they would against the real API.
+ */
+@Service
+@ConditionalOnProperty(name = "library.payment.gateway", havingValue = "fake")
+public class FakePaymentGateway implements PaymentGateway {
+
+    private ObjectMapper objectMapper;
+
+    private Duration latency;
+
+    private AtomicLong sequence = new AtomicLong();
+
+    @Autowired
+    public FakePaymentGateway(ObjectMapper objectMapper,
+                              @Value("${library.payment.fake.latency}") Duration latency) {
+        this.objectMapper = objectMapper;
+        this.latency = latency;
+    }
+
+    @Override
+    public String createPaymentIntent(PaymentInfoRequest paymentInfoRequest, String idempotencyKey) throws Exception {
+        if(!latency.isZero()) {
+            Thread.sleep(latency);
+        }
+
+        String id = "pi_fake_" + sequence.incrementAndGet();
+
+        Map<String, Object> paymentIntent = new LinkedHashMap<>();
+        paymentIntent.put("id", id);
+        paymentIntent.put("object", "payment_intent");
+        paymentIntent.put("amount", paymentInfoRequest.getAmount());
+        paymentIntent.put("currency", paymentInfoRequest.getCurrency());
+        paymentIntent.put("client_secret", id + "_secret_fake");
+        paymentIntent.put("payment_method_types", List.of("card"));
+        paymentIntent.put("status", "requires_payment_method");
+
+        return objectMapper.writeValueAsString(paymentIntent);
+    }
+}
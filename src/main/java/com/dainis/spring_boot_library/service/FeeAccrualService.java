@@ -0,0 +1,141 @@
+package com.dainis.spring_boot_library.service;
+
+import com.dainis.spring_boot_library.entity.FeeLedgerEntry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Charges overdue days into the fee ledger ahead of the return, so balances are current while a book is still out.
+ * Each chunk of overdue loans is locked, charged and watermarked in its own short transaction.
+ */
+@Service
+public class FeeAccrualService {
+
+    static final String JOB_NAME = "overdue-fees";
+
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate transactionTemplate;
+
+    private int chunkSize;
+
+    @Autowired
+    public FeeAccrualService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                             @Value("${library.fees.accrual.chunk-size}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    @Scheduled(cron = "${library.fees.accrual.cron}")
+    public void accrueOverdueFees() {
+        accrueOverdueFees(LocalDate.now());
+    }
+
+    /**
+     * Brings every overdue loan's fees up to date as of today and returns the number of loans charged.
+     */
+    public int accrueOverdueFees(LocalDate today) {
+        long lastCheckoutId = startRun(today);
+        int charged = 0;
+
+        while(true) {
+            long afterId = lastCheckoutId;
+            Chunk chunk = transactionTemplate.execute(status -> accrueChunk(today, afterId));
+
+            if(chunk.charged() == 0) {
+                return charged;
+            }
+
+            charged += chunk.charged();
+            lastCheckoutId = chunk.lastCheckoutId();
+        }
+    }
+
+    private long startRun(LocalDate today) {
+        List<Watermark> watermarks = jdbcTemplate.query(
+                "select accrued_through, last_checkout_id from fee_accrual_watermark where job_name = ?",
+                (rs, rowNum) -> new Watermark(rs.getObject("accrued_through", LocalDate.class),
+                        rs.getLong("last_checkout_id")),
+                JOB_NAME);
+
+        if(watermarks.isEmpty()) {
+            jdbcTemplate.update(
+                    "insert into fee_accrual_watermark (job_name, accrued_through, last_checkout_id) values (?, ?, 0)",
+                    JOB_NAME, today);
+            return 0L;
+        }
+
+        // Same day as the last run: resume after the last committed chunk
+        if(today.equals(watermarks.getFirst().accruedThrough())) {
+            return watermarks.getFirst().lastCheckoutId();
+        }
+
+        jdbcTemplate.update(
+                "update fee_accrual_watermark set accrued_through = ?, last_checkout_id = 0 where job_name = ?",
+                today, JOB_NAME);
+        return 0L;
+    }
+
+    private Chunk accrueChunk(LocalDate today, long afterId) {
+        List<OverdueLoan> loans = jdbcTemplate.query(
+                "select id, user_email, return_date, fees_accrued_through from checkout " +
+                        "where id > ? and return_date < ? " +
+                        "and (fees_accrued_through is null or fees_accrued_through < ?) " +
+                        "order by id limit ? for update",
+                (rs, rowNum) -> new OverdueLoan(
+                        rs.getLong("id"),
+                        rs.getString("user_email"),
+                        rs.getObject("return_date", LocalDate.class),
+                        rs.getObject("fees_accrued_through", LocalDate.class)),
+                afterId, today, today, chunkSize);
+
+        if(loans.isEmpty()) {
+            return new Chunk(afterId, 0);
+        }
+
+        Map<String, Long> feesByUser = new HashMap<>();
+        List<Object[]> accruedThrough = new ArrayList<>(loans.size());
+
+        for(OverdueLoan loan : loans) {
+            LocalDate chargedThrough = loan.feesAccruedThrough() != null ? loan.feesAccruedThrough() : loan.returnDate();
+            feesByUser.merge(loan.userEmail(), today.toEpochDay() - chargedThrough.toEpochDay(), Long::sum);
+            accruedThrough.add(new Object[] { today, loan.id() });
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> fees = new ArrayList<>(feesByUser.size());
+        for(Map.Entry<String, Long> fee : feesByUser.entrySet()) {
+            fees.add(new Object[] { fee.getKey(), FeeLedgerEntry.Type.FEE_ACCRUED.name(),
+                    fee.getValue() * FeeLedgerEntry.FEE_PER_DAY_CENTS, now });
+        }
+
+        long lastCheckoutId = loans.getLast().id();
+
+        jdbcTemplate.batchUpdate("update checkout set fees_accrued_through = ? where id = ?", accruedThrough);
+        jdbcTemplate.batchUpdate("insert into fee_ledger (user_email, entry_type, amount_cents, created_at) " +
+                "values (?, ?, ?, ?)", fees);
+        jdbcTemplate.update("update fee_accrual_watermark set last_checkout_id = ? where job_name = ?",
+                lastCheckoutId, JOB_NAME);
+
+        return new Chunk(lastCheckoutId, loans.size());
+    }
+
+    private record OverdueLoan(long id, String userEmail, LocalDate returnDate, LocalDate feesAccruedThrough) {}
+
+    private record Watermark(LocalDate accruedThrough, long lastCheckoutId) {}
+
+    private record Chunk(long lastCheckoutId, int charged) {}
+}
@@ -0,0 +1,169 @@
+package com.dainis.spring_boot_library.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Folds fee ledger entries into the users' payment snapshots, so a balance read only sums a short tail.
+ * Entries are never deleted: each payment row keeps compacted_through_id, and balances add only the entries
+ * above it. Chunks are read in id order and stop at the first entry younger than the delay, because an entry's
+ * id is taken at insert and a transaction that commits late must not end up below a watermark already moved
+ * past it. A user's snapshot and watermark move together in one conditional update, so concurrent
+ * compactions never fold the same entry twice.
+ * <p>
+ * Each chunk also moves the run's own watermark in fee_ledger_watermark, and the next run starts above it,
+ * so a run reads only the entries written since. Entries of a user who had no payment row when the run
+ * passed them are not folded later; they stay in that user's tail, which balances still add.
+ */
+@Service
+public class FeeLedgerCompactor {
+
+    static final String JOB_NAME = "fee-ledger-compaction";
+
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate transactionTemplate;
+
+    private int chunkSize;
+
+    private Duration delay;
+
+    @Autowired
+    public FeeLedgerCompactor(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                              @Value("${library.fees.ledger.compaction-chunk-size}") int chunkSize,
+                              @Value("${library.fees.ledger.compaction-delay}") Duration delay) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.delay = delay;
+    }
+
+    @Scheduled(fixedDelayString = "${library.fees.ledger.compaction-interval}")
+    public void compactLedger() {
+        compact();
+    }
+
+    /**
+     * Compacts the ledger up to the delay and returns the number of entries folded.
+     */
+    public int compact() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(delay);
+        int compacted = 0;
+        long afterId = startRun();
+
+        while(true) {
+            long after = afterId;
+            Chunk chunk = transactionTemplate.execute(status -> compactChunk(after, cutoff));
+
+            compacted += chunk.compacted();
+
+            if(chunk.done()) {
+                return compacted;
+            }
+            afterId = chunk.lastId();
+        }
+    }
+
+    private long startRun() {
+        List<Long> watermarks = jdbcTemplate.queryForList(
+                "select compacted_through_id from fee_ledger_watermark where job_name = ?", Long.class, JOB_NAME);
+
+        if(!watermarks.isEmpty()) {
+            return watermarks.getFirst();
+        }
+
+        try {
+            jdbcTemplate.update("insert into fee_ledger_watermark (job_name, compacted_through_id) values (?, 0)",
+                    JOB_NAME);
+        } catch (DuplicateKeyException e) {
+            // Another instance's first run created it
+        }
+        return 0L;
+    }
+
+    private Chunk compactChunk(long afterId, LocalDateTime cutoff) {
+        // Users without a payment row have no snapshot to fold into, so their entries stay in the tail
+        List<Entry> entries = jdbcTemplate.query(
+                "select l.id, l.user_email, l.amount_cents, l.created_at, p.compacted_through_id " +
+                        "from fee_ledger l left join payment p on p.user_email = l.user_email " +
+                        "where l.id > ? order by l.id limit ?",
+                (rs, rowNum) -> new Entry(rs.getLong("id"), rs.getString("user_email"), rs.getLong("amount_cents"),
+                        rs.getTimestamp("created_at").toLocalDateTime(),
+                        rs.getObject("compacted_through_id", Long.class)),
+                afterId, chunkSize);
+
+        Map<String, Fold> folds = new HashMap<>();
+        long lastId = afterId;
+        boolean done = entries.size() < chunkSize;
+
+        for(Entry entry : entries) {
+            if(!entry.createdAt().isBefore(cutoff)) {
+                done = true;
+                break;
+            }
+            lastId = entry.id();
+
+            if(entry.compactedThroughId() == null || entry.id() <= entry.compactedThroughId()) {
+                continue;
+            }
+            folds.computeIfAbsent(entry.userEmail(), userEmail -> new Fold(entry.compactedThroughId()))
+                    .add(entry);
+        }
+
+        int compacted = 0;
+        for(Map.Entry<String, Fold> fold : folds.entrySet()) {
+            Fold user = fold.getValue();
+            int updated = jdbcTemplate.update(
+                    "update payment set balance_cents = balance_cents + ?, compacted_through_id = ? " +
+                            "where user_email = ? and compacted_through_id = ?",
+                    user.amountCents, user.throughId, fold.getKey(), user.fromId);
+            if(updated > 0) {
+                compacted += user.entries;
+            }
+        }
+
+        // Never backwards, when a run on another instance has already got further
+        jdbcTemplate.update("update fee_ledger_watermark set compacted_through_id = ? " +
+                "where job_name = ? and compacted_through_id < ?", lastId, JOB_NAME, lastId);
+
+        return new Chunk(lastId, done, compacted);
+    }
+
+    private record Entry(long id, String userEmail, long amountCents, LocalDateTime createdAt,
+                         Long compactedThroughId) {}
+
+    private record Chunk(long lastId, boolean done, int compacted) {}
+
+    private static class Fold {
+
+        private final long fromId;
+
+        private long throughId;
+
+        private long amountCents;
+
+        private int entries;
+
+        Fold(long fromId) {
+            this.fromId = fromId;
+        }
+
+        void add(Entry entry) {
+            throughId = entry.id();
+            amountCents += entry.amountCents();
+            entries++;
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package com.dainis.spring_boot_library.service;
+
+import com.dainis.spring_boot_library.entity.History;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cold storage for History. Rows older than the configured age are moved out of the history table
+ * into immutable {@link HistorySegment} files, which are memory-mapped and read alongside the table.
+ * Segments keep the row ids, so keyset paging runs across both.
+ * <p>
+ * The directory must be shared by every instance. Each segment is registered in history_segment in the
+ * transaction that deletes its rows, and readers find segments through that table, opening files as they appear.
+ * The users a segment holds are recorded in history_segment_user, so a user's lookup skips the other segments.
+ * Archiving takes the history-archive row in job_lock, so one instance archives at a time.
+ */
+@Service
+public class HistoryArchive {
+
+    static final String JOB_NAME = "history-archive";
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate transactionTemplate;
+
+    private Path directory;
+
+    private Period minAge;
+
+    private int segmentSize;
+
+    private final Map<String, HistorySegment> opened = new ConcurrentHashMap<>();
+
+    @Autowired
+    public HistoryArchive(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                          @Value("${library.history.archive.directory}") Path directory,
+                          @Value("${library.history.archive.min-age}") Period minAge,
+                          @Value("${library.history.archive.segment-size}") int segmentSize) throws IOException {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.directory = directory;
+        this.minAge = minAge;
+        this.segmentSize = segmentSize;
+
+        Files.createDirectories(directory);
+    }
+
+    @Scheduled(cron = "${library.history.archive.cron}")
+    public void archiveOldHistory() throws IOException {
+        archive(LocalDate.now());
+    }
+
+    /**
+     * Moves history returned before today minus the minimum age into new segments and returns the number of rows moved.
+     */
+    public int archive(LocalDate today) throws IOException {
+        LocalDate cutoff = today.minus(minAge);
+        int archived = 0;
+
+        try {
+            jdbcTemplate.update("insert into job_lock (job_name) values (?)", JOB_NAME);
+        } catch (DuplicateKeyException e) {
+            // Created by an earlier run or the migration
+        }
+
+        while(true) {
+            int moved = archiveSegment(cutoff);
+            archived += moved;
+
+            if(moved < segmentSize) {
+                return archived;
+            }
+        }
+    }
+
+    /**
+     * The user's archived rows with an id above afterId, ordered by id, at most limit of them.
+     * Only segments holding the user and ids above afterId are opened, and segments starting above the last row
+     * of a full page are not read.
+     */
+    public List<History> findByUserEmailAndIdGreaterThan(String userEmail, long afterId, int limit) throws IOException {
+        TreeMap<Long, History> histories = new TreeMap<>();
+
+        for(SegmentEntry entry : entries(userEmail, afterId)) {
+            if(histories.size() >= limit && entry.minId() > lastOfPage(histories, limit)) {
+                break;
+            }
+
+            for(History history : segment(entry.fileName()).findByUserEmailAndIdGreaterThan(userEmail, afterId)) {
+                histories.putIfAbsent(history.getId(), history);
+            }
+        }
+
+        return histories.values().stream().limit(limit).toList();
+    }
+
+    /**
+     * The id ranges holding the user's archived rows, in id order, with the number of rows in each, read from
+     * history_segment_user without opening any segment. A row archived late can put a segment's range inside
+     * another's, so segments whose ranges overlap are joined into one range and no two ranges share an id.
+     */
+    public List<ArchivedRange> rangesByUserEmail(String userEmail) {
+        List<ArchivedRange> ranges = new ArrayList<>();
+
+        jdbcTemplate.query("select file_name, row_count, min_id, max_id from history_segment_user " +
+                        "where user_email = ? order by min_id",
+                (RowCallbackHandler) rs -> {
+                    ArchivedRange range = new ArchivedRange(List.of(rs.getString("file_name")),
+                            rs.getLong("min_id"), rs.getLong("max_id"), rs.getLong("row_count"));
+
+                    if(!ranges.isEmpty() && range.minId() <= ranges.getLast().maxId()) {
+                        ranges.set(ranges.size() - 1, ranges.getLast().join(range));
+                    } else {
+                        ranges.add(range);
+                    }
+                },
+                userEmail);
+
+        return ranges;
+    }
+
+    /**
+     * The user's archived rows in the range, ordered by id. Only the range's segments are opened.
+     */
+    public List<History> findByUserEmailInRange(String userEmail, ArchivedRange range) throws IOException {
+        TreeMap<Long, History> histories = new TreeMap<>();
+        for(String fileName : range.fileNames()) {
+            for(History history : segment(fileName).findByUserEmailAndIdGreaterThan(userEmail, 0L)) {
+                histories.putIfAbsent(history.getId(), history);
+            }
+        }
+        return new ArrayList<>(histories.values());
+    }
+
+    /**
+     * The segments as of now. Later archive runs do not change the returned list.
+     */
+    public List<HistorySegment> segments() throws IOException {
+        List<HistorySegment> segments = new ArrayList<>();
+        for(String fileName : jdbcTemplate.queryForList(
+                "select file_name from history_segment order by min_id", String.class)) {
+            segments.add(segment(fileName));
+        }
+        return segments;
+    }
+
+    /**
+     * The segments, read with the history-archive row in job_lock held until the caller's transaction ends,
+     * so no archive run moves rows from the table into a new segment until then. Must be called in a transaction.
+     */
+    public List<HistorySegment> lockedSegments() throws IOException {
+        if(jdbcTemplate.queryForList("select job_name from job_lock where job_name = ? for update",
+                String.class, JOB_NAME).isEmpty()) {
+            // No archive run or migration has created it yet; the inserted row is locked the same way
+            jdbcTemplate.update("insert into job_lock (job_name) values (?)", JOB_NAME);
+        }
+        return segments();
+    }
+
+    private List<SegmentEntry> entries(String userEmail, long afterId) {
+        return jdbcTemplate.query("select s.file_name, s.min_id from history_segment s where s.max_id > ? " +
+                        "and exists (select 1 from history_segment_user u " +
+                        "where u.user_email = ? and u.file_name = s.file_name) order by s.min_id",
+                (rs, rowNum) -> new SegmentEntry(rs.getString("file_name"), rs.getLong("min_id")),
+                afterId, userEmail);
+    }
+
+    private void recordUsers(String fileName, List<History> histories) {
+        Map<String, ArchivedRange> ranges = new HashMap<>();
+        for(History history : histories) {
+            ArchivedRange row = new ArchivedRange(List.of(fileName), history.getId(), history.getId(), 1);
+            ranges.merge(history.getUserEmail(), row, ArchivedRange::join);
+        }
+
+        List<Object[]> args = new ArrayList<>(ranges.size());
+        for(Map.Entry<String, ArchivedRange> user : ranges.entrySet()) {
+            ArchivedRange range = user.getValue();
+            args.add(new Object[] { user.getKey(), fileName, range.rows(), range.minId(), range.maxId() });
+        }
+
+        jdbcTemplate.batchUpdate("insert into history_segment_user (user_email, file_name, row_count, min_id, max_id) " +
+                "values (?, ?, ?, ?, ?)", args);
+    }
+
+    private static long lastOfPage(TreeMap<Long, History> histories, int limit) {
+        return histories.keySet().stream().skip(limit - 1).findFirst().orElseThrow();
+    }
+
+    private HistorySegment segment(String fileName) throws IOException {
+        try {
+            return opened.computeIfAbsent(fileName, name -> {
+                Path file = directory.resolve(name);
+                if(!Files.exists(file)) {
+                    throw new UncheckedIOException(new IOException("History segment " + file
+                            + " is missing; library.history.archive.directory must be shared by every instance"));
+                }
+                try {
+                    return HistorySegment.open(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private int archiveSegment(LocalDate cutoff) throws IOException {
+        Path[] written = new Path[1];
+
+        try {
+            Archived archived = transactionTemplate.execute(status -> {
+                jdbcTemplate.queryForList("select job_name from job_lock where job_name = ? for update",
+                        String.class, JOB_NAME);
+
+                List<History> histories = jdbcTemplate.query(
+                        "select id, user_email, checkout_date, returned_date, title, author, description, img " +
+                                "from history where returned_date < ? order by id limit ? for update",
+                        (rs, rowNum) -> {
+                            History history = new History(rs.getString("user_email"),
+                                    rs.getObject("checkout_date", LocalDate.class),
+                                    rs.getObject("returned_date", LocalDate.class),
+                                    rs.getString("title"), rs.getString("author"),
+                                    rs.getString("description"), rs.getString("img"));
+                            history.setId(rs.getLong("id"));
+                            return history;
+                        },
+                        cutoff, segmentSize);
+
+                if(histories.isEmpty()) {
+                    return null;
+                }
+
+                long minId = histories.getFirst().getId();
+                long maxId = histories.getLast().getId();
+                String fileName = String.format("history-%019d%s", maxId, SEGMENT_SUFFIX);
+                written[0] = directory.resolve(fileName);
+
+                HistorySegment created;
+                try {
+                    created = HistorySegment.write(written[0], histories);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+
+                // The locked rows are exactly the ones below the cutoff up to maxId
+                jdbcTemplate.update("delete from history where returned_date < ? and id <= ?", cutoff, maxId);
+                jdbcTemplate.update("insert into history_segment (file_name, min_id, max_id) values (?, ?, ?)",
+                        fileName, minId, maxId);
+                recordUsers(fileName, histories);
+
+                return new Archived(fileName, created, histories.size());
+            });
+
+            if(archived == null) {
+                return 0;
+            }
+
+            opened.put(archived.fileName(), archived.segment());
+            return archived.rows();
+        } catch (RuntimeException e) {
+            if(written[0] != null) {
+                Files.deleteIfExists(written[0]);
+            }
+            if(e instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private record Archived(String fileName, HistorySegment segment, int rows) {}
+
+    private record SegmentEntry(String fileName, long minId) {}
+
+    /**
+     * Ids minId to maxId of one user's archived rows, rows of them, held in the named segments.
+     */
+    public record ArchivedRange(List<String> fileNames, long minId, long maxId, long rows) {
+
+        ArchivedRange join(ArchivedRange other) {
+            List<String> joined = new ArrayList<>(fileNames);
+            for(String fileName : other.fileNames()) {
+                if(!joined.contains(fileName)) {
+                    joined.add(fileName);
+                }
+            }
+            return new ArchivedRange(joined, Math.min(minId, other.minId()), Math.max(maxId, other.maxId()),
+                    rows + other.rows());
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.dainis.spring_boot_library.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Moves returned loans from history_outbox into history in batches, off the return request path.
+ * Each batch locks its outbox rows, copies them with one INSERT ... SELECT joined to the book, then deletes them.
+ */
+@Service
+public class HistoryOutboxDrainer {
+
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate transactionTemplate;
+
+    private int batchSize;
+
+    @Autowired
+    public HistoryOutboxDrainer(NamedParameterJdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                @Value("${library.history.outbox.batch-size}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${library.history.outbox.drain-interval}")
+    public void drainOutbox() {
+        drain();
+    }
+
+    /**
+     * Drains the outbox until it is empty and returns the number of history rows written.
+     */
+    public int drain() {
+        int drained = 0;
+
+        while(true) {
+            Integer moved = transactionTemplate.execute(status -> moveToHistory(jdbcTemplate.queryForList(
+                    "select id from history_outbox order by id limit :limit for update",
+                    new MapSqlParameterSource("limit", batchSize), Long.class)));
+
+            drained += moved;
+
+            if(moved < batchSize) {
+                return drained;
+            }
+        }
+    }
+
+    /**
+     * Writes the book's pending history rows in the caller's transaction, while the book row still exists.
+     */
+    public void drainBook(Long bookId) {
+        moveToHistory(jdbcTemplate.queryForList(
+                "select id from history_outbox where book_id = :book_id for update",
+                new MapSqlParameterSource("book_id", bookId), Long.class));
+    }
+
+    private int moveToHistory(List<Long> outboxIds) {
+        if(outboxIds.isEmpty()) {
+            return 0;
+        }
+
+        MapSqlParameterSource ids = new MapSqlParameterSource("ids", outboxIds);
+
+        jdbcTemplate.update(
+                "insert into history (user_email, book_id, checkout_date, returned_date, title, author, description, img) " +
+                        "select o.user_email, o.book_id, o.checkout_date, o.returned_date, " +
+                        "b.title, b.author, b.description, b.img " +
+                        "from history_outbox o left join book b on b.id = o.book_id " +
+                        "where o.id in (:ids) order by o.id", ids);
+        jdbcTemplate.update("delete from history_outbox where id in (:ids)", ids);
+
+        return outboxIds.size();
+    }
+}
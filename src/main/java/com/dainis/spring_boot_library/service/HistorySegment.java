@@ -0,0 +1,298 @@
+package com.dainis.spring_boot_library.service;
+
+import com.dainis.spring_boot_library.entity.History;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * An immutable file of archived History rows, memory-mapped for reads.
+ * Rows are grouped into one deflated block per user and the user index sits at the end of the file,
+ * so a lookup inflates only that user's block.
+ *
+ * <pre>
+ * header: magic int, version int, user count int, index offset long
+ * blocks: deflated rows of one user, ordered by id
+ * index:  per user - email, block offset long, compressed length int, inflated length int, max id long
+ * </pre>
+ */
+public final class HistorySegment {
+
+    private static final int MAGIC = 0x4C485347;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_LENGTH = Integer.BYTES * 3 + Long.BYTES;
+
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private final Path path;
+
+    private final MappedByteBuffer buffer;
+
+    private final Map<String, Block> blocks;
+
+    private HistorySegment(Path path, MappedByteBuffer buffer, Map<String, Block> blocks) {
+        this.path = path;
+        this.buffer = buffer;
+        this.blocks = blocks;
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public Set<String> userEmails() {
+        return Collections.unmodifiableSet(blocks.keySet());
+    }
+
+    /**
+     * Writes the rows to a new segment at the given path. The file is synced and then moved into place,
+     * so a reader never sees a partial segment.
+     */
+    public static HistorySegment write(Path path, List<History> histories) throws IOException {
+        Map<String, List<History>> byUser = new TreeMap<>();
+        for(History history : histories) {
+            byUser.computeIfAbsent(history.getUserEmail(), userEmail -> new ArrayList<>()).add(history);
+        }
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try(FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(HEADER_LENGTH);
+
+            ByteArrayOutputStream index = new ByteArrayOutputStream();
+            DataOutputStream indexOut = new DataOutputStream(index);
+
+            for(Map.Entry<String, List<History>> user : byUser.entrySet()) {
+                List<History> rows = user.getValue();
+                rows.sort((a, b) -> Long.compare(a.getId(), b.getId()));
+
+                byte[] raw = encode(rows);
+                byte[] compressed = deflate(raw);
+
+                writeString(indexOut, user.getKey());
+                indexOut.writeLong(channel.position());
+                indexOut.writeInt(compressed.length);
+                indexOut.writeInt(raw.length);
+                indexOut.writeLong(rows.getLast().getId());
+
+                writeFully(channel, ByteBuffer.wrap(compressed));
+            }
+
+            long indexOffset = channel.position();
+            writeFully(channel, ByteBuffer.wrap(index.toByteArray()));
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH)
+                    .putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putInt(byUser.size())
+                    .putLong(indexOffset)
+                    .flip();
+            channel.position(0);
+            writeFully(channel, header);
+
+            channel.force(true);
+        }
+
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+
+        return open(path);
+    }
+
+    public static HistorySegment open(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if(channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("History segment too large: " + path);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if(buffer.limit() < HEADER_LENGTH || buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != VERSION) {
+            throw new IOException("Not a history segment: " + path);
+        }
+
+        int userCount = buffer.getInt(Integer.BYTES * 2);
+        int indexOffset = Math.toIntExact(buffer.getLong(Integer.BYTES * 3));
+
+        ByteBuffer index = buffer.slice(indexOffset, buffer.limit() - indexOffset);
+        Map<String, Block> blocks = new HashMap<>(userCount * 2);
+
+        for(int i = 0; i < userCount; i++) {
+            String userEmail = readString(index);
+            blocks.put(userEmail, new Block(Math.toIntExact(index.getLong()), index.getInt(), index.getInt(),
+                    index.getLong()));
+        }
+
+        return new HistorySegment(path, buffer, blocks);
+    }
+
+    /**
+     * The user's archived rows with an id above afterId, ordered by id.
+     */
+    public List<History> findByUserEmailAndIdGreaterThan(String userEmail, long afterId) throws IOException {
+        Block block = blocks.get(userEmail);
+
+        if(block == null || block.maxId() <= afterId) {
+            return Collections.emptyList();
+        }
+
+        ByteBuffer raw = ByteBuffer.wrap(inflate(buffer.slice(block.offset(), block.compressedLength()),
+                block.inflatedLength()));
+
+        List<History> histories = new ArrayList<>();
+        while(raw.hasRemaining()) {
+            History history = decode(raw, userEmail);
+            if(history.getId() > afterId) {
+                histories.add(history);
+            }
+        }
+        return histories;
+    }
+
+    /**
+     * Passes every archived row to the action, one user block in memory at a time.
+     */
+    public void forEach(Consumer<History> action) throws IOException {
+        for(Map.Entry<String, Block> user : blocks.entrySet()) {
+            Block block = user.getValue();
+            ByteBuffer raw = ByteBuffer.wrap(inflate(buffer.slice(block.offset(), block.compressedLength()),
+                    block.inflatedLength()));
+
+            while(raw.hasRemaining()) {
+                action.accept(decode(raw, user.getKey()));
+            }
+        }
+    }
+
+    private static byte[] encode(List<History> rows) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        for(History history : rows) {
+            out.writeLong(history.getId());
+            out.writeLong(history.getCheckoutDate() != null ? history.getCheckoutDate().toEpochDay() : NO_DATE);
+            out.writeLong(history.getReturnedDate() != null ? history.getReturnedDate().toEpochDay() : NO_DATE);
+            writeString(out, history.getTitle());
+            writeString(out, history.getAuthor());
+            writeString(out, history.getDescription());
+            writeString(out, history.getImg());
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static History decode(ByteBuffer raw, String userEmail) {
+        History history = new History();
+        history.setId(raw.getLong());
+        history.setUserEmail(userEmail);
+        history.setCheckoutDate(readDate(raw));
+        history.setReturnedDate(readDate(raw));
+        history.setTitle(readString(raw));
+        history.setAuthor(readString(raw));
+        history.setDescription(readString(raw));
+        history.setImg(readString(raw));
+        return history;
+    }
+
+    private static LocalDate readDate(ByteBuffer raw) {
+        long epochDay = raw.getLong();
+        return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if(value == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer raw) {
+        int length = raw.getInt();
+        if(length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        raw.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 2 + 64);
+            byte[] chunk = new byte[8192];
+            while(!deflater.finished()) {
+                compressed.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return compressed.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(ByteBuffer compressed, int inflatedLength) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+
+            byte[] raw = new byte[inflatedLength];
+            int inflated = 0;
+            while(inflated < inflatedLength && !inflater.finished()) {
+                int read = inflater.inflate(raw, inflated, inflatedLength - inflated);
+                if(read == 0 && inflater.needsInput()) {
+                    break;
+                }
+                inflated += read;
+            }
+
+            if(inflated != inflatedLength) {
+                throw new IOException("Corrupt history segment block");
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt history segment block", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer bytes) throws IOException {
+        while(bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    private record Block(int offset, int compressedLength, int inflatedLength, long maxId) {}
+}
@@ -0,0 +1,125 @@
+package com.dainis.spring_boot_library.service;
+
+import com.dainis.spring_boot_library.dao.HistoryRepository;
+import com.dainis.spring_boot_library.entity.History;
+import com.dainis.spring_boot_library.responsemodels.CursorPageResponse;
+import com.dainis.spring_boot_library.utils.KeysetCursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+
+@Service
+@Transactional(readOnly = true)
+public class HistoryService {
+
+    private HistoryRepository historyRepository;
+
+    private HistoryArchive historyArchive;
+
+    @Autowired
+    public HistoryService(HistoryRepository historyRepository, HistoryArchive historyArchive) {
+        this.historyRepository = historyRepository;
+        this.historyArchive = historyArchive;
+    }
+
+    /**
+     * An offset page of the user's history across the table and the archive, ordered by id as the archive keeps it.
+     * The archived rows come in id ranges with known row counts, and a range together with the recent rows whose ids
+     * fall inside it takes up a stretch of the merged order that counts of recent rows below its ends locate. Only the
+     * ranges whose stretch reaches the page are read; the page's recent rows are a table window starting where the
+     * first of those stretches, or the page, starts.
+     */
+    public Page<History> historyPageByUser(String userEmail, Pageable pageable) throws IOException {
+        List<HistoryArchive.ArchivedRange> ranges = historyArchive.rangesByUserEmail(userEmail);
+
+        // archivedBefore[i] is the number of archived rows in the ranges before range i
+        long[] archivedBefore = new long[ranges.size() + 1];
+        for(int i = 0; i < ranges.size(); i++) {
+            archivedBefore[i + 1] = archivedBefore[i] + ranges.get(i).rows();
+        }
+
+        long recentCount = historyRepository.countByUserEmail(userEmail);
+        long total = recentCount + archivedBefore[ranges.size()];
+        long offset = pageable.isPaged() ? pageable.getOffset() : 0;
+        int size = pageable.isPaged() ? pageable.getPageSize() : Math.toIntExact(total);
+
+        if(ranges.isEmpty()) {
+            return new PageImpl<>(historyRepository.findWindowByUserEmail(userEmail, offset, size), pageable, total);
+        }
+
+        // The first range whose stretch ends after the page starts; the ones before it lie wholly before the page
+        int low = 0;
+        int high = ranges.size();
+        while(low < high) {
+            int middle = (low + high) >>> 1;
+            long end = archivedBefore[middle + 1] + recentBelow(userEmail, ranges.get(middle).maxId() + 1);
+            if(end > offset) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+
+        // Every row at a merged position from start on has an id above every row before it, so the rows read here,
+        // sorted by id, begin at position start and hold every row up to the end of the page
+        long start = offset;
+        List<History> rows = new ArrayList<>();
+
+        for(int i = low; i < ranges.size(); i++) {
+            long rangeStart = archivedBefore[i] + recentBelow(userEmail, ranges.get(i).minId());
+            if(rangeStart >= offset + size) {
+                break;
+            }
+            start = Math.min(start, rangeStart);
+            rows.addAll(historyArchive.findByUserEmailInRange(userEmail, ranges.get(i)));
+        }
+
+        // The rows between the earlier ranges' stretches and the page are all recent
+        long recentStart = start - archivedBefore[low];
+        rows.addAll(historyRepository.findWindowByUserEmail(userEmail, recentStart,
+                Math.toIntExact(offset + size - start)));
+
+        rows.sort(Comparator.comparingLong(History::getId));
+        int from = (int) Math.min(offset - start, rows.size());
+        return new PageImpl<>(new ArrayList<>(rows.subList(from, Math.min(from + size, rows.size()))), pageable, total);
+    }
+
+    public CursorPageResponse<History> historyByUser(String userEmail, String cursor, int size) throws Exception {
+        Long afterId = KeysetCursor.decode(cursor);
+        PageRequest pageRequest = KeysetCursor.pageRequest(size);
+
+        Slice<History> recent = historyRepository.findByUserEmailAndIdGreaterThan(userEmail, afterId, pageRequest);
+        List<History> archived = historyArchive.findByUserEmailAndIdGreaterThan(userEmail, afterId, size + 1);
+
+        if(archived.isEmpty()) {
+            return CursorPageResponse.of(recent, History::getId);
+        }
+
+        // Older pages come from the archive; merge by id so a page can span both
+        TreeMap<Long, History> merged = new TreeMap<>();
+        archived.forEach(history -> merged.put(history.getId(), history));
+        recent.forEach(history -> merged.putIfAbsent(history.getId(), history));
+
+        List<History> page = new ArrayList<>(merged.values());
+        boolean hasNext = page.size() > size || recent.hasNext();
+
+        return CursorPageResponse.of(new SliceImpl<>(page.subList(0, Math.min(size, page.size())), pageRequest, hasNext),
+                History::getId);
+    }
+
+    private long recentBelow(String userEmail, long id) {
+        return historyRepository.countByUserEmailAndIdLessThan(userEmail, id);
+    }
+}
@@ -0,0 +1,256 @@
+package com.dainis.spring_boot_library.service;
+
+import com.dainis.spring_boot_library.config.CacheConfiguration;
+import com.github.benmanes.caffeine.cache.Cache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Runs a request at most once per Idempotency-Key. The first request claims the key in idempotency_record
+ * and stores its response when it succeeds; a retry gets that response back without running again.
+ * Completed responses are also kept in a bounded cache, so a retry storm does not reach the database.
+ * A failed request releases its claim, so the client can retry it.
+ * Actions that only write to the database go through {@link #executeInTransaction}, which stores the response in the
+ * action's own transaction, so a crash can never leave the action committed and the key still open for a rerun.
+ */
+@Service
+public class IdempotencyService {
+
+    public static final int MAX_KEY_LENGTH = 255;
+
+    private Cache<Object, Object> responses;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate transactionTemplate;
+
+    private Clock clock = Clock.systemUTC();
+
+    private Duration retention;
+
+    private Duration claimTimeout;
+
+    @Autowired
+    public IdempotencyService(CacheManager cacheManager, JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${library.idempotency.retention}") Duration retention,
+                              @Value("${library.idempotency.claim-timeout}") Duration claimTimeout) {
+        this.responses = ((CaffeineCache) cacheManager.getCache(CacheConfiguration.IDEMPOTENCY)).getNativeCache();
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.retention = retention;
+        this.claimTimeout = claimTimeout;
+    }
+
+    /**
+     * Runs the action unless this user already made the request with the same key on the same endpoint,
+     * in which case the stored response body is returned. Without a key the action simply runs.
+     *
+     * @param requestHash fingerprint of the request, see {@link #hash(String...)}; reusing a key for a different
+     *                    request fails instead of returning the other request's response
+     */
+    public CompletableFuture<String> execute(String endpoint, String userEmail, String idempotencyKey,
+                                             String requestHash, Supplier<CompletableFuture<String>> action) {
+        if(idempotencyKey == null) {
+            return action.get();
+        }
+
+        String keyHash = hash(endpoint, userEmail, idempotencyKey);
+
+        try {
+            StoredResponse stored = storedOrClaim(idempotencyKey, keyHash, requestHash);
+            if(stored != null) {
+                return CompletableFuture.completedFuture(replay(stored, requestHash));
+            }
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<String> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            release(keyHash);
+            throw e;
+        }
+
+        return response.whenComplete((body, failure) -> {
+            if(failure != null) {
+                release(keyHash);
+                return;
+            }
+
+            jdbcTemplate.update("update idempotency_record set completed = true, response_body = ? where key_hash = ?",
+                    body, keyHash);
+            responses.put(keyHash, new StoredResponse(requestHash, body));
+        });
+    }
+
+    /**
+     * Like {@link #execute}, for an action that runs in a database transaction: the action and the stored response
+     * commit together, in one transaction the action joins. If a request that took over the claim completed first,
+     * the action is rolled back and the request fails as still in progress.
+     */
+    public CompletableFuture<String> executeInTransaction(String endpoint, String userEmail, String idempotencyKey,
+                                                          String requestHash, Callable<String> action) {
+        if(idempotencyKey == null) {
+            try {
+                return CompletableFuture.completedFuture(action.call());
+            } catch (Exception e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        String keyHash = hash(endpoint, userEmail, idempotencyKey);
+
+        try {
+            StoredResponse stored = storedOrClaim(idempotencyKey, keyHash, requestHash);
+            if(stored != null) {
+                return CompletableFuture.completedFuture(replay(stored, requestHash));
+            }
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        Completed completed;
+        try {
+            completed = transactionTemplate.execute(status -> {
+                String body;
+                try {
+                    body = action.call();
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+
+                if(jdbcTemplate.update("update idempotency_record set completed = true, response_body = ? " +
+                        "where key_hash = ? and completed = false", body, keyHash) == 0) {
+                    status.setRollbackOnly();
+                    return new Completed(null, false);
+                }
+                return new Completed(body, true);
+            });
+        } catch (CompletionException e) {
+            release(keyHash);
+            return CompletableFuture.failedFuture(e.getCause());
+        } catch (RuntimeException e) {
+            release(keyHash);
+            return CompletableFuture.failedFuture(e);
+        }
+
+        if(!completed.stored()) {
+            // The key belongs to the request that completed it
+            return CompletableFuture.failedFuture(
+                    new Exception("A request with this Idempotency-Key is still in progress"));
+        }
+
+        responses.put(keyHash, new StoredResponse(requestHash, completed.body()));
+        return CompletableFuture.completedFuture(completed.body());
+    }
+
+    /**
+     * Returns the stored response of a completed request, or claims the key and returns null.
+     */
+    private StoredResponse storedOrClaim(String idempotencyKey, String keyHash, String requestHash) throws Exception {
+        if(idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new Exception("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+
+        StoredResponse stored = (StoredResponse) responses.getIfPresent(keyHash);
+        return stored != null ? stored : claim(keyHash, requestHash);
+    }
+
+    /**
+     * Claims the key and returns null, or returns the stored response when the request has already completed.
+     * A claim older than the claim timeout belongs to a request that never finished and is taken over.
+     */
+    private StoredResponse claim(String keyHash, String requestHash) throws Exception {
+        LocalDateTime now = LocalDateTime.now(clock);
+
+        try {
+            jdbcTemplate.update("insert into idempotency_record (key_hash, request_hash, completed, created_at) " +
+                    "values (?, ?, false, ?)", keyHash, requestHash, now);
+            return null;
+        } catch (DuplicateKeyException e) {
+            // Made before, or in progress elsewhere
+        }
+
+        List<StoredResponse> completed = jdbcTemplate.query(
+                "select request_hash, response_body from idempotency_record where key_hash = ? and completed = true",
+                (rs, rowNum) -> new StoredResponse(rs.getString("request_hash"), rs.getString("response_body")),
+                keyHash);
+
+        if(!completed.isEmpty()) {
+            responses.put(keyHash, completed.getFirst());
+            return completed.getFirst();
+        }
+
+        int takenOver = jdbcTemplate.update("update idempotency_record set request_hash = ?, created_at = ? " +
+                "where key_hash = ? and completed = false and created_at < ?",
+                requestHash, now, keyHash, now.minus(claimTimeout));
+
+        if(takenOver == 0) {
+            throw new Exception("A request with this Idempotency-Key is still in progress");
+        }
+        return null;
+    }
+
+    private void release(String keyHash) {
+        jdbcTemplate.update("delete from idempotency_record where key_hash = ? and completed = false", keyHash);
+    }
+
+    private static String replay(StoredResponse stored, String requestHash) throws Exception {
+        if(!stored.requestHash().equals(requestHash)) {
+            throw new Exception("Idempotency-Key was already used for a different request");
+        }
+        return stored.body();
+    }
+
+    @Scheduled(cron = "${library.idempotency.cleanup-cron}")
+    public void removeExpired() {
+        jdbcTemplate.update("delete from idempotency_record where created_at < ?",
+                LocalDateTime.now(clock).minus(retention));
+    }
+
+    /**
+     * Hex SHA-256 of the parts, separated so that ("ab", "c") and ("a", "bc") differ.
+     */
+    public static String hash(String... parts) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        for(String part : parts) {
+            digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private record StoredResponse(String requestHash, String body) {}
+
+    private record Completed(String body, boolean stored) {}
+}
@@ -0,0 +1,117 @@
+package com.dainis.spring_boot_library.service;
+
+import com.dainis.spring_boot_library.dao.BookRepository;
+import com.dainis.spring_boot_library.dao.CheckoutRepository;
+import com.dainis.spring_boot_library.dao.DailyBorrowCount;
+import com.dainis.spring_boot_library.responsemodels.BookSummary;
+import com.dainis.spring_boot_library.responsemodels.LeaderboardResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * "Most borrowed this week" and "top rated" lists, rebuilt in the background and served from an immutable snapshot.
+ * Each refresh counts the week's borrows from the database, open and returned loans alike, so every instance
+ * publishes the same lists; a refresh keeps the top entries with a bounded min-heap.
+ */
+@Service
+public class LeaderboardService {
+
+    // Today and the six days before it
+    static final int WINDOW_DAYS = 7;
+
+    private volatile LeaderboardResponse snapshot = new LeaderboardResponse(List.of(), List.of(), Instant.EPOCH);
+
+    private BookRepository bookRepository;
+
+    private CheckoutRepository checkoutRepository;
+
+    private int size;
+
+    private long minReviews;
+
+    private Clock clock;
+
+    @Autowired
+    public LeaderboardService(BookRepository bookRepository, CheckoutRepository checkoutRepository,
+                              @Value("${library.leaderboard.size}") int size,
+                              @Value("${library.leaderboard.min-reviews}") long minReviews) {
+        this(bookRepository, checkoutRepository, size, minReviews, Clock.systemUTC());
+    }
+
+    LeaderboardService(BookRepository bookRepository, CheckoutRepository checkoutRepository,
+                       int size, long minReviews, Clock clock) {
+        this.bookRepository = bookRepository;
+        this.checkoutRepository = checkoutRepository;
+        this.size = size;
+        this.minReviews = minReviews;
+        this.clock = clock;
+    }
+
+    public LeaderboardResponse leaderboard() {
+        return snapshot;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${library.leaderboard.refresh-interval}",
+            initialDelayString = "${library.leaderboard.refresh-interval}")
+    public void refresh() {
+        LocalDate since = LocalDate.now(clock).minusDays(WINDOW_DAYS - 1);
+        Map<Long, Long> borrows = new HashMap<>();
+
+        for(DailyBorrowCount count : checkoutRepository.countBorrowsSince(since)) {
+            borrows.merge(count.getBookId(), count.getBorrows(), Long::sum);
+        }
+
+        List<Long> mostBorrowedIds = topK(borrows, size);
+
+        List<BookSummary> mostBorrowed = new ArrayList<>();
+        if(!mostBorrowedIds.isEmpty()) {
+            Map<Long, BookSummary> books = new HashMap<>();
+            for(BookSummary book : bookRepository.findSummariesByBookIds(mostBorrowedIds)) {
+                books.put(book.getId(), book);
+            }
+            for(Long bookId : mostBorrowedIds) {
+                if(books.containsKey(bookId)) {
+                    mostBorrowed.add(books.get(bookId));
+                }
+            }
+        }
+
+        List<BookSummary> topRated = bookRepository.findTopRated(minReviews, PageRequest.of(0, size));
+
+        snapshot = new LeaderboardResponse(mostBorrowed, topRated, clock.instant());
+    }
+
+    /**
+     * Ids of the k largest counts, largest first, using a min-heap that never holds more than k entries.
+     */
+    static List<Long> topK(Map<Long, Long> counts, int k) {
+        Comparator<Map.Entry<Long, Long>> byCount = Map.Entry.<Long, Long>comparingByValue()
+                .thenComparing(Map.Entry.<Long, Long>comparingByKey().reversed());
+        PriorityQueue<Map.Entry<Long, Long>> heap = new PriorityQueue<>(k + 1, byCount);
+
+        for(Map.Entry<Long, Long> count : counts.entrySet()) {
+            heap.offer(count);
+            if(heap.size() > k) {
+                heap.poll();
+            }
+        }
+
+        List<Long> ids = new ArrayList<>(heap.size());
+        while(!heap.isEmpty()) {
+            ids.add(heap.poll().getKey());
+        }
+        Collections.reverse(ids);
+        return ids;
+    }
+}
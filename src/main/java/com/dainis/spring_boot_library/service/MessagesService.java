@@ -3,8 +3,11 @@ package com.dainis.spring_boot_library.service;
 import com.dainis.spring_boot_library.dao.MessageRepository;
 import com.dainis.spring_boot_library.entity.Message;
 import com.dainis.spring_boot_library.requestmodels.AdminQuestionRequest;
+import com.dainis.spring_boot_library.responsemodels.CursorPageResponse;
+import com.dainis.spring_boot_library.utils.KeysetCursor;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 
 import java.util.Optional;
@@ -38,4 +41,18 @@ public class MessagesService {
         messageRepository.save(message.get());
     }
 
+    public CursorPageResponse<Message> messagesByUser(String userEmail, String cursor, int size) throws Exception {
+        Slice<Message> messages = messageRepository.findByUserEmailAndIdGreaterThan(
+                userEmail, KeysetCursor.decode(cursor), KeysetCursor.pageRequest(size));
+
+        return CursorPageResponse.of(messages, Message::getId);
+    }
+
+    public CursorPageResponse<Message> messagesByClosed(boolean closed, String cursor, int size) throws Exception {
+        Slice<Message> messages = messageRepository.findByClosedAndIdGreaterThan(
+                closed, KeysetCursor.decode(cursor), KeysetCursor.pageRequest(size));
+
+        return CursorPageResponse.of(messages, Message::getId);
+    }
+
 }
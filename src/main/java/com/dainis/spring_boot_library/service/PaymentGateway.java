@@ -0,0 +1,16 @@
+package com.dainis.spring_boot_library.service;
+
+import com.dainis.spring_boot_library.requestmodels.PaymentInfoRequest;
+
+/**
+ * Creates card payment intents with a payment provider. Calls block, so PaymentService runs them
+ * on its own bounded executor.
+ */
+public interface PaymentGateway {
+
+    /**
+     * Returns the created payment intent as the provider's JSON, which the client uses to confirm the payment.
+     * A non-null idempotency key is passed on to the provider, so a repeated call creates no second intent.
+     */
+    String createPaymentIntent(PaymentInfoRequest paymentInfoRequest, String idempotencyKey) throws Exception;
+}
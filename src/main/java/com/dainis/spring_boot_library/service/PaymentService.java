@@ -1,57 +1,147 @@
 package com.dainis.spring_boot_library.service;
 
+import com.dainis.spring_boot_library.dao.FeeLedgerRepository;
 import com.dainis.spring_boot_library.dao.PaymentRepository;
-import com.dainis.spring_boot_library.entity.Payment;
+import com.dainis.spring_boot_library.entity.FeeLedgerEntry;
 import com.dainis.spring_boot_library.requestmodels.PaymentInfoRequest;
-import com.stripe.Stripe;
+import com.dainis.spring_boot_library.utils.CircuitBreaker;
 import com.stripe.exception.StripeException;
-import com.stripe.model.PaymentIntent;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 @Transactional
 public class PaymentService {
 
+    private FeeLedgerRepository feeLedgerRepository;
+
     private PaymentRepository paymentRepository;
 
+    private PaymentGateway paymentGateway;
+
+    private ThreadPoolExecutor gatewayExecutor;
+
+    private CircuitBreaker circuitBreaker;
+
+    private Duration deadline;
+
     @Autowired
-    public PaymentService(PaymentRepository paymentRepository, @Value("${stripe.key.secret}") String secretKey) {
+    public PaymentService(FeeLedgerRepository feeLedgerRepository, PaymentRepository paymentRepository,
+                          PaymentGateway paymentGateway,
+                          @Value("${library.payment.bulkhead.threads}") int threads,
+                          @Value("${library.payment.bulkhead.queue-capacity}") int queueCapacity,
+                          @Value("${library.payment.deadline}") Duration deadline,
+                          @Value("${library.payment.circuit-breaker.failure-threshold}") int failureThreshold,
+                          @Value("${library.payment.circuit-breaker.open-duration}") Duration openDuration) {
+        this.feeLedgerRepository = feeLedgerRepository;
         this.paymentRepository = paymentRepository;
+        this.paymentGateway = paymentGateway;
+        // Gateway calls get their own small pool, so a slow provider can hold at most these threads
+        this.gatewayExecutor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("payment-gateway-", 0).daemon().factory());
+        this.circuitBreaker = new CircuitBreaker(failureThreshold, openDuration);
+        this.deadline = deadline;
+    }
+
+    /**
+     * Creates the payment intent on the gateway executor. The future fails straight away when the breaker is open
+     * or the bulkhead is full, and when the gateway has not answered within the deadline.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public CompletableFuture<String> createPaymentIntent(PaymentInfoRequest paymentInfoRequest, String idempotencyKey) {
+        CircuitBreaker.Permit permit = circuitBreaker.tryAcquire();
+        if(permit == null) {
+            return CompletableFuture.failedFuture(new Exception("Payment provider unavailable, try again later"));
+        }
+
+        CompletableFuture<String> paymentIntent;
+        try {
+            paymentIntent = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return paymentGateway.createPaymentIntent(paymentInfoRequest, idempotencyKey);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, gatewayExecutor);
+        } catch (RejectedExecutionException e) {
+            circuitBreaker.release(permit);
+            return CompletableFuture.failedFuture(new Exception("Too many payments in progress, try again later"));
+        }
+
+        return paymentIntent
+                .orTimeout(deadline.toMillis(), TimeUnit.MILLISECONDS)
+                .handle((json, failure) -> {
+                    Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+
+                    if(cause == null || !isProviderFailure(cause)) {
+                        circuitBreaker.onSuccess(permit);
+                    } else {
+                        circuitBreaker.onFailure(permit);
+                    }
 
-        Stripe.apiKey = secretKey;
+                    if(cause instanceof TimeoutException) {
+                        throw new CompletionException(new Exception("Payment provider timed out"));
+                    }
+                    if(cause != null) {
+                        throw new CompletionException(cause);
+                    }
+                    return json;
+                });
     }
 
-    public PaymentIntent createPaymentIntent(PaymentInfoRequest paymentInfoRequest) throws StripeException {
-        List<String> paymentMethodTypes = new ArrayList<>();
-        paymentMethodTypes.add("card");
+    CircuitBreaker.State circuitState() {
+        return circuitBreaker.state();
+    }
 
-        Map<String, Object> params = new HashMap<>();
-        params.put("amount", paymentInfoRequest.getAmount());
-        params.put("currency", paymentInfoRequest.getCurrency());
-        params.put("payment_method_types", paymentMethodTypes);
+    /**
+     * Declines and bad requests are answers from a healthy provider; only timeouts, connection errors
+     * and server errors count against the breaker.
+     */
+    private static boolean isProviderFailure(Throwable cause) {
+        if(cause instanceof StripeException stripeException) {
+            Integer statusCode = stripeException.getStatusCode();
+            // Connection errors carry no status, or 0
+            return statusCode == null || statusCode == 0 || statusCode >= 500;
+        }
+        return true;
+    }
 
-        return PaymentIntent.create(params);
+    @PreDestroy
+    void shutdown() {
+        gatewayExecutor.shutdown();
     }
 
+    /**
+     * Settles the whole balance by appending a payment entry for it. The payment row is locked before the
+     * balance is read, so a concurrent or retried call waits and then finds the balance already settled.
+     * Fees charged after the balance is read stay owed.
+     */
     public ResponseEntity<String> stripePayment(String userEmail) throws Exception {
-        Payment payment = paymentRepository.findByUserEmail(userEmail);
-
-        if(payment == null) {
+        if(paymentRepository.findLockedByUserEmail(userEmail) == null) {
             throw new Exception("Payment information is missing");
         }
 
-        payment.setAmount(00.00);
-        paymentRepository.save(payment);
+        Long balanceCents = feeLedgerRepository.findBalanceCents(userEmail);
+
+        if(balanceCents > 0) {
+            feeLedgerRepository.save(FeeLedgerEntry.payment(userEmail, balanceCents));
+        }
 
         return new ResponseEntity<>(HttpStatus.OK);
     }
@@ -0,0 +1,152 @@
+package com.dainis.spring_boot_library.service;
+
+import com.dainis.spring_boot_library.entity.Book;
+import com.dainis.spring_boot_library.entity.Message;
+import com.dainis.spring_boot_library.entity.Review;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-table change counters in resource_version, used as validators for collection ETags. A writer bumps the
+ * counter of each table it changes once per transaction, right after that transaction commits and in a short
+ * transaction of its own, so the counter row is locked only for that one update and never for the length of a
+ * checkout or return. Entity writes are reported by ResourceVersionListener; bulk JPQL and JDBC writes call
+ * {@link #changed(Class)} themselves.
+ * <p>
+ * The book_catalog counter moves only when books are added, removed or have their searchable text edited, which is
+ * all the search index cares about; checkouts and returns move the book counter but leave it alone. Bulk writes of
+ * that text call {@link #catalogChanged()} themselves.
+ */
+@Component
+public class ResourceVersions {
+
+    private static final Map<Class<?>, String> TABLES = Map.of(
+            Book.class, "book",
+            Review.class, "review",
+            Message.class, "messages");
+
+    // Book listings embed the rating totals, which change with the reviews
+    private static final Map<Class<?>, List<String>> ETAG_TABLES = Map.of(
+            Book.class, List.of("book", "review"),
+            Review.class, List.of("review"),
+            Message.class, List.of("messages"));
+
+    private static final String CATALOG = "book_catalog";
+
+    private JdbcTemplate jdbcTemplate;
+
+    private ObjectProvider<PlatformTransactionManager> transactionManager;
+
+    private volatile TransactionTemplate transactionTemplate;
+
+    // The transaction manager is looked up on first use: Hibernate creates ResourceVersionListener, and so this,
+    // while the entity manager factory the transaction manager needs is still being built
+    @Autowired
+    public ResourceVersions(JdbcTemplate jdbcTemplate, ObjectProvider<PlatformTransactionManager> transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionManager = transactionManager;
+    }
+
+    public void changed(Class<?> entityType) {
+        String table = TABLES.get(entityType);
+        if(table != null) {
+            changed(table);
+        }
+    }
+
+    public void catalogChanged() {
+        changed(CATALOG);
+    }
+
+    public long version(Class<?> entityType) {
+        return version(TABLES.get(entityType));
+    }
+
+    public long catalogVersion() {
+        return version(CATALOG);
+    }
+
+    private void changed(String table) {
+        if(!TransactionSynchronizationManager.isSynchronizationActive()) {
+            bump(table);
+            return;
+        }
+
+        // Once per transaction is enough, and keeps a bulk import from updating the row for every book
+        TableKey key = new TableKey(this, table);
+        if(TransactionSynchronizationManager.hasResource(key)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(key, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                requiresNew().executeWithoutResult(status -> bump(table));
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(key);
+            }
+        });
+    }
+
+    public String etag(Class<?> entityType, String variant) {
+        List<String> tables = ETAG_TABLES.get(entityType);
+        Map<String, Long> versions = new HashMap<>();
+        jdbcTemplate.query("select resource, version from resource_version where resource in (" +
+                        String.join(", ", Collections.nCopies(tables.size(), "?")) + ")",
+                rs -> {
+                    versions.put(rs.getString("resource"), rs.getLong("version"));
+                }, tables.toArray());
+
+        StringBuilder etag = new StringBuilder("\"").append(entityType.getSimpleName().toLowerCase());
+        for(String table : tables) {
+            etag.append('-').append(Long.toHexString(versions.getOrDefault(table, 0L)));
+        }
+        return etag.append('-').append(Integer.toHexString(variant == null ? 0 : variant.hashCode())).append('"')
+                .toString();
+    }
+
+    private TransactionTemplate requiresNew() {
+        if(transactionTemplate == null) {
+            // The writer's transaction is still bound during afterCommit, so the bump needs a new one to commit
+            TransactionTemplate template = new TransactionTemplate(transactionManager.getObject());
+            template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            transactionTemplate = template;
+        }
+        return transactionTemplate;
+    }
+
+    private long version(String table) {
+        List<Long> versions = jdbcTemplate.queryForList("select version from resource_version where resource = ?",
+                Long.class, table);
+        return versions.isEmpty() ? 0L : versions.get(0);
+    }
+
+    private void bump(String table) {
+        if(jdbcTemplate.update("update resource_version set version = version + 1 where resource = ?", table) > 0) {
+            return;
+        }
+        try {
+            jdbcTemplate.update("insert into resource_version (resource, version) values (?, 1)", table);
+        } catch (DuplicateKeyException e) {
+            jdbcTemplate.update("update resource_version set version = version + 1 where resource = ?", table);
+        }
+    }
+
+    private record TableKey(ResourceVersions owner, String table) {}
+}
@@ -1,10 +1,15 @@
 package com.dainis.spring_boot_library.service;
 
-import com.dainis.spring_boot_library.dao.BookRepository;
+import com.dainis.spring_boot_library.dao.BookRatingRepository;
 import com.dainis.spring_boot_library.dao.ReviewRepository;
+import com.dainis.spring_boot_library.entity.BookRating;
 import com.dainis.spring_boot_library.entity.Review;
 import com.dainis.spring_boot_library.requestmodels.ReviewRequest;
+import com.dainis.spring_boot_library.responsemodels.BookRatingResponse;
+import com.dainis.spring_boot_library.responsemodels.CursorPageResponse;
+import com.dainis.spring_boot_library.utils.KeysetCursor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -17,9 +22,12 @@ public class ReviewService {
 
     private ReviewRepository reviewRepository;
 
+    private BookRatingRepository bookRatingRepository;
+
     @Autowired
-    public ReviewService(ReviewRepository reviewRepository) {
+    public ReviewService(ReviewRepository reviewRepository, BookRatingRepository bookRatingRepository) {
         this.reviewRepository = reviewRepository;
+        this.bookRatingRepository = bookRatingRepository;
     }
 
     public void postReview(String userEmail, ReviewRequest reviewRequest) throws Exception {
@@ -40,6 +48,8 @@ public class ReviewService {
         }
         review.setDate(Date.valueOf(LocalDate.now()));
         reviewRepository.save(review);
+
+        addRating(review.getBookId(), review.getRating());
     }
 
     public boolean userReviewListed(String userEmail, Long bookId) {
@@ -47,4 +57,21 @@ public class ReviewService {
 
         return validateReview != null;
     }
+
+    public BookRatingResponse bookRating(Long bookId) {
+        BookRating rating = bookRatingRepository.findById(bookId).orElseGet(() -> new BookRating(bookId));
+
+        return new BookRatingResponse(rating);
+    }
+
+    public CursorPageResponse<Review> reviewsByBook(Long bookId, String cursor, int size) throws Exception {
+        Slice<Review> reviews = reviewRepository.findByBookIdAndIdGreaterThan(
+                bookId, KeysetCursor.decode(cursor), KeysetCursor.pageRequest(size));
+
+        return CursorPageResponse.of(reviews, Review::getId);
+    }
+
+    private void addRating(Long bookId, double rating) {
+        bookRatingRepository.addRating(bookId, rating, BookRating.stars(rating));
+    }
 }
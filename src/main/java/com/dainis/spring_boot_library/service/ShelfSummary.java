@@ -0,0 +1,50 @@
+package com.dainis.spring_boot_library.service;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of a user's current loans: book id to due date.
+ * Updates return a new summary, so cached instances can be shared between request threads.
+ */
+public final class ShelfSummary {
+
+    private final Map<Long, LocalDate> dueDates;
+
+    private final LocalDate nearestDueDate;
+
+    public ShelfSummary(Map<Long, LocalDate> dueDates) {
+        this.dueDates = Map.copyOf(dueDates);
+        this.nearestDueDate = this.dueDates.isEmpty() ? null : Collections.min(this.dueDates.values());
+    }
+
+    public int loanCount() {
+        return dueDates.size();
+    }
+
+    public boolean isCheckedOut(Long bookId) {
+        return dueDates.containsKey(bookId);
+    }
+
+    public LocalDate nearestDueDate() {
+        return nearestDueDate;
+    }
+
+    public ShelfSummary withLoan(Long bookId, LocalDate dueDate) {
+        Map<Long, LocalDate> updated = new HashMap<>(dueDates);
+        updated.put(bookId, dueDate);
+        return new ShelfSummary(updated);
+    }
+
+    public ShelfSummary withoutLoan(Long bookId) {
+        if(!dueDates.containsKey(bookId)) {
+            return this;
+        }
+
+        Map<Long, LocalDate> updated = new HashMap<>(dueDates);
+        updated.remove(bookId);
+        return new ShelfSummary(updated);
+    }
+}
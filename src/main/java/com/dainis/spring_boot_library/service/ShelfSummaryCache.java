@@ -0,0 +1,113 @@
+package com.dainis.spring_boot_library.service;
+
+import com.dainis.spring_boot_library.config.CacheConfiguration;
+import com.dainis.spring_boot_library.dao.CheckoutRepository;
+import com.dainis.spring_boot_library.entity.Checkout;
+import com.dainis.spring_boot_library.utils.AfterCommit;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Per-user {@link ShelfSummary}, loaded from the database on first use and then kept current by the loan
+ * operations. Updates are applied after commit and only to summaries already cached; both kinds of update are
+ * idempotent, so a summary loaded while the transaction commits ends up correct either way.
+ * Updates only reach this instance's cache, so a loan handled by another instance shows up here when the
+ * summary expires, at most expire-after-load after it was loaded.
+ */
+@Component
+public class ShelfSummaryCache {
+
+    private AsyncCache<Object, Object> shelves;
+
+    private CheckoutRepository checkoutRepository;
+
+    @Autowired
+    public ShelfSummaryCache(CacheManager cacheManager, CheckoutRepository checkoutRepository) {
+        this.shelves = ((CaffeineCache) cacheManager.getCache(CacheConfiguration.SHELVES)).getAsyncCache();
+        this.checkoutRepository = checkoutRepository;
+    }
+
+    /**
+     * Only an incomplete future is installed under the map's lock; the caller that installed it runs the query
+     * on its own thread and everyone else waits on the future. A virtual thread waiting here unmounts instead of
+     * pinning its carrier, which it would if the query ran inside the compute's synchronized block.
+     */
+    public ShelfSummary get(String userEmail) {
+        CompletableFuture<Object> loading = new CompletableFuture<>();
+        CompletableFuture<Object> summary = shelves.get(userEmail, (key, executor) -> loading);
+
+        if(summary == loading) {
+            try {
+                loading.complete(load(userEmail));
+            } catch (RuntimeException e) {
+                loading.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        try {
+            return (ShelfSummary) summary.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    // An update that arrives while the summary is still loading is chained onto the load
+    public void loanAdded(String userEmail, Long bookId, LocalDate dueDate) {
+        AfterCommit.run(() -> shelves.asMap().computeIfPresent(userEmail,
+                (key, summary) -> summary.thenApply(loaded -> ((ShelfSummary) loaded).withLoan(bookId, dueDate))));
+    }
+
+    public void loanRemoved(String userEmail, Long bookId) {
+        AfterCommit.run(() -> shelves.asMap().computeIfPresent(userEmail,
+                (key, summary) -> summary.thenApply(loaded -> ((ShelfSummary) loaded).withoutLoan(bookId))));
+    }
+
+    public void invalidateAll() {
+        AfterCommit.run(() -> shelves.synchronous().invalidateAll());
+    }
+
+    /**
+     * Expires a summary a fixed time after it was loaded. Local updates keep the remaining time, so a user
+     * whose loans change here still gets a reload that picks up changes made on other instances.
+     */
+    public static Expiry<Object, Object> expireAfterLoad(Duration ttl) {
+        return new Expiry<>() {
+            @Override
+            public long expireAfterCreate(Object key, Object value, long currentTime) {
+                return ttl.toNanos();
+            }
+
+            @Override
+            public long expireAfterUpdate(Object key, Object value, long currentTime, long currentDuration) {
+                return currentDuration;
+            }
+
+            @Override
+            public long expireAfterRead(Object key, Object value, long currentTime, long currentDuration) {
+                return currentDuration;
+            }
+        };
+    }
+
+    private ShelfSummary load(String userEmail) {
+        Map<Long, LocalDate> dueDates = new HashMap<>();
+
+        for(Checkout checkout : checkoutRepository.findBooksByUserEmail(userEmail)) {
+            dueDates.put(checkout.getBookId(), checkout.getReturnDate());
+        }
+
+        return new ShelfSummary(dueDates);
+    }
+}
@@ -0,0 +1,61 @@
+package com.dainis.spring_boot_library.service;
+
+import com.dainis.spring_boot_library.requestmodels.PaymentInfoRequest;
+import com.stripe.Stripe;
+import com.stripe.exception.StripeException;
+import com.stripe.model.PaymentIntent;
+import com.stripe.net.RequestOptions;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+@ConditionalOnProperty(name = "library.payment.gateway", havingValue = "stripe", matchIfMissing = true)
+public class StripePaymentGateway implements PaymentGateway {
+
+    private RequestOptions requestOptions;
+
+    @Autowired
+    public StripePaymentGateway(@Value("${stripe.key.secret}") String secretKey,
+                                @Value("${library.payment.stripe.connect-timeout}") Duration connectTimeout,
+                                @Value("${library.payment.stripe.read-timeout}") Duration readTimeout,
+                                @Value("${library.payment.deadline}") Duration deadline) {
+        // The deadline only stops waiting for the call, so the call itself has to give up before it
+        if(connectTimeout.plus(readTimeout).compareTo(deadline) >= 0) {
+            throw new IllegalArgumentException("Stripe connect and read timeouts must add up to less than the payment deadline");
+        }
+
+        Stripe.apiKey = secretKey;
+
+        // No client retries: a retry would run past the caller's deadline while holding a bulkhead thread
+        this.requestOptions = RequestOptions.builder()
+                .setConnectTimeout(Math.toIntExact(connectTimeout.toMillis()))
+                .setReadTimeout(Math.toIntExact(readTimeout.toMillis()))
+                .setMaxNetworkRetries(0)
+                .build();
+    }
+
+    @Override
+    public String createPaymentIntent(PaymentInfoRequest paymentInfoRequest, String idempotencyKey)
+            throws StripeException {
+        List<String> paymentMethodTypes = new ArrayList<>();
+        paymentMethodTypes.add("card");
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("amount", paymentInfoRequest.getAmount());
+        params.put("currency", paymentInfoRequest.getCurrency());
+        params.put("payment_method_types", paymentMethodTypes);
+
+        RequestOptions options = idempotencyKey == null ? requestOptions
+                : requestOptions.toBuilderFullCopy().setIdempotencyKey(idempotencyKey).build();
+
+        return PaymentIntent.create(params, options).toJson();
+    }
+}
@@ -0,0 +1,104 @@
+package com.dainis.spring_boot_library.utils;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Counts consecutive failures of a remote call. After failureThreshold of them the breaker opens and
+ * calls are refused for openDuration; then a single trial call is let through, which closes the breaker
+ * when it succeeds and opens it again when it fails. Results of calls started before the breaker last
+ * opened are ignored, so a slow call finishing late cannot close it.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /**
+     * A permitted call: how many times the breaker had opened when it started, and whether it is the trial.
+     */
+    public record Permit(long openings, boolean trial) {}
+
+    private final int failureThreshold;
+
+    private final Duration openDuration;
+
+    private final Clock clock;
+
+    private int consecutiveFailures;
+
+    private Instant openedAt;
+
+    private long openings;
+
+    private boolean trialInFlight;
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this(failureThreshold, openDuration, Clock.systemUTC());
+    }
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration, Clock clock) {
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns a permit when a call may go ahead, or null when it is refused. Every permit must be handed to
+     * {@link #onSuccess(Permit)}, {@link #onFailure(Permit)} or {@link #release(Permit)}.
+     */
+    public synchronized Permit tryAcquire() {
+        State state = state();
+
+        if(state == State.CLOSED) {
+            return new Permit(openings, false);
+        }
+        if(state == State.HALF_OPEN && !trialInFlight) {
+            trialInFlight = true;
+            return new Permit(openings, true);
+        }
+        return null;
+    }
+
+    public synchronized void onSuccess(Permit permit) {
+        if(!permit.trial() && permit.openings() != openings) {
+            return;
+        }
+        consecutiveFailures = 0;
+        openedAt = null;
+        trialInFlight = false;
+    }
+
+    public synchronized void onFailure(Permit permit) {
+        if(!permit.trial() && permit.openings() != openings) {
+            return;
+        }
+        consecutiveFailures++;
+        if(permit.trial()) {
+            trialInFlight = false;
+        }
+
+        if(openedAt != null || consecutiveFailures >= failureThreshold) {
+            if(openedAt == null) {
+                openings++;
+            }
+            openedAt = clock.instant();
+        }
+    }
+
+    /**
+     * Hands back a permitted call that never reached the remote side, without counting it either way.
+     */
+    public synchronized void release(Permit permit) {
+        if(permit.trial()) {
+            trialInFlight = false;
+        }
+    }
+
+    public synchronized State state() {
+        if(openedAt == null) {
+            return State.CLOSED;
+        }
+        return clock.instant().isBefore(openedAt.plus(openDuration)) ? State.OPEN : State.HALF_OPEN;
+    }
+}
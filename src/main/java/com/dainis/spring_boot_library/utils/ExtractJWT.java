@@ -1,44 +1,330 @@
 package com.dainis.spring_boot_library.utils;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Base64;
-import java.util.HashMap;
-import java.util.Map;
 
+/**
+ * Reads top-level claims from a JWT payload without verifying it. The payload is base64url-decoded once
+ * into a byte array and scanned in a single pass, stopping once every requested claim is found;
+ * only the values of the requested claims become Strings.
+ * String values are unescaped; numbers, booleans and nested objects or arrays are returned as their JSON text.
+ */
 public class ExtractJWT {
 
+    private static final String BEARER = "Bearer ";
+
+    /**
+     * The claim's value, or null when the token has no such claim or cannot be read.
+     * The claim name may be given with or without surrounding quotes.
+     */
     public static String payloadJWTExtraction(String token, String extraction) {
+        return extractClaims(token, extraction)[0];
+    }
+
+    /**
+     * The values of several claims from one pass over the payload, in the order requested;
+     * a missing claim, or every claim of an unreadable token, is null.
+     */
+    public static String[] extractClaims(String token, String... claims) {
+        String[] values = new String[claims.length];
+
+        byte[][] names = new byte[claims.length][];
+        for(int i = 0; i < claims.length; i++) {
+            String claim = claims[i];
+            if(claim.length() >= 2 && claim.charAt(0) == '"' && claim.charAt(claim.length() - 1) == '"') {
+                claim = claim.substring(1, claim.length() - 1);
+            }
+            names[i] = claim.getBytes(StandardCharsets.UTF_8);
+        }
+
+        byte[] payload = decodePayload(token);
+        if(payload == null) {
+            return values;
+        }
+
+        try {
+            new Scanner(payload).scan(names, values);
+        } catch (IllegalArgumentException e) {
+            return new String[claims.length];
+        }
+        return values;
+    }
+
+    /**
+     * Base64url-decodes the second segment, or returns null if it is missing or not base64url.
+     */
+    private static byte[] decodePayload(String token) {
+        if(token == null) {
+            return null;
+        }
+
+        int start = token.startsWith(BEARER) ? BEARER.length() : 0;
+        int first = token.indexOf('.', start);
+        int second = first < 0 ? -1 : token.indexOf('.', first + 1);
+        if(second < 0) {
+            return null;
+        }
+
+        try {
+            return Base64.getUrlDecoder().decode(token.substring(first + 1, second));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static class Scanner {
+
+        private final byte[] json;
+
+        private int pos;
+
+        Scanner(byte[] json) {
+            this.json = json;
+        }
+
+        void scan(byte[][] names, String[] values) {
+            int remaining = names.length;
+
+            skipWhitespace();
+            expect('{');
+            skipWhitespace();
+            if(peek() == '}') {
+                return;
+            }
+
+            while(true) {
+                skipWhitespace();
+                expect('"');
+                int keyStart = pos;
+                skipString();
+                int keyEnd = pos - 1;
+
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+
+                int match = -1;
+                for(int i = 0; i < names.length; i++) {
+                    if(values[i] == null && keyEquals(keyStart, keyEnd, names[i])) {
+                        match = i;
+                        break;
+                    }
+                }
+
+                if(match >= 0) {
+                    values[match] = readValue();
+                    // A repeated name in the request gets the same value
+                    for(int i = match + 1; i < names.length; i++) {
+                        if(values[i] == null && Arrays.equals(names[i], names[match])) {
+                            values[i] = values[match];
+                            remaining--;
+                        }
+                    }
+                    if(--remaining == 0) {
+                        return;
+                    }
+                } else {
+                    skipValue();
+                }
+
+                skipWhitespace();
+                byte next = next();
+                if(next == '}') {
+                    return;
+                }
+                if(next != ',') {
+                    throw new IllegalArgumentException("Expected , or }");
+                }
+            }
+        }
+
+        /**
+         * Compares the raw key, between the quotes, with the claim name. Keys with escapes are rare enough
+         * to compare through the decoded string.
+         */
+        private boolean keyEquals(int start, int end, byte[] name) {
+            int length = end - start;
+
+            for(int i = start; i < end; i++) {
+                if(json[i] == '\\') {
+                    int saved = pos;
+                    pos = start;
+                    String key = readString();
+                    pos = saved;
+                    return key.equals(new String(name, StandardCharsets.UTF_8));
+                }
+            }
+
+            if(length != name.length) {
+                return false;
+            }
+            for(int i = 0; i < length; i++) {
+                if(json[start + i] != name[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private String readValue() {
+            if(peek() == '"') {
+                pos++;
+                return readString();
+            }
+
+            int start = pos;
+            skipValue();
+            return new String(json, start, pos - start, StandardCharsets.UTF_8);
+        }
+
+        private void skipValue() {
+            byte c = peek();
+
+            if(c == '"') {
+                pos++;
+                skipString();
+                return;
+            }
+
+            if(c == '{' || c == '[') {
+                int depth = 0;
+                int p = pos;
+                do {
+                    if(p >= json.length) {
+                        throw new IllegalArgumentException("Unexpected end of payload");
+                    }
+                    c = json[p++];
+                    if(c == '"') {
+                        p = endOfString(p);
+                    } else if(c == '{' || c == '[') {
+                        depth++;
+                    } else if(c == '}' || c == ']') {
+                        depth--;
+                    }
+                } while(depth > 0);
+                pos = p;
+                return;
+            }
+
+            int start = pos;
+            int p = pos;
+            while(p < json.length && json[p] != ',' && json[p] != '}' && !isWhitespace(json[p])) {
+                p++;
+            }
+            pos = p;
+            if(pos == start) {
+                throw new IllegalArgumentException("Expected a value");
+            }
+        }
+
+        // Positioned after the opening quote; leaves pos after the closing quote
+        private void skipString() {
+            pos = endOfString(pos);
+        }
+
+        // The hot loop, kept on locals
+        private int endOfString(int from) {
+            byte[] json = this.json;
+            int p = from;
+
+            while(p < json.length) {
+                byte c = json[p++];
+                if(c == '"') {
+                    return p;
+                }
+                if(c == '\\') {
+                    p++;
+                }
+            }
+            throw new IllegalArgumentException("Unterminated string");
+        }
 
-        token = token.replace("Bearer ", "");
+        // Positioned after the opening quote; leaves pos after the closing quote
+        private String readString() {
+            int start = pos;
+            int end = endOfString(start);
 
-        String[] chunks = token.split("\\.");
-        Base64.Decoder decoder = Base64.getUrlDecoder();
+            for(int i = start; i < end - 1; i++) {
+                if(json[i] == '\\') {
+                    return readEscapedString();
+                }
+            }
 
-        String payload = new String(decoder.decode(chunks[1]));
+            pos = end;
+            return new String(json, start, end - 1 - start, StandardCharsets.UTF_8);
+        }
 
-        String[] entries = payload.split(",");
-        Map<String, String> map = new HashMap<String, String>();
+        private String readEscapedString() {
+            StringBuilder value = new StringBuilder();
+            int runStart = pos;
 
-        for(String entry : entries) {
-            String[] keyValue = entry.split(":");
+            while(true) {
+                byte c = next();
+                if(c == '"') {
+                    value.append(new String(json, runStart, pos - 1 - runStart, StandardCharsets.UTF_8));
+                    return value.toString();
+                }
+                if(c != '\\') {
+                    continue;
+                }
 
-            if(keyValue[0].equals(extraction)) {
-                int remove = 1;
+                value.append(new String(json, runStart, pos - 1 - runStart, StandardCharsets.UTF_8));
 
-                if(keyValue[1].equals("}")) {
-                    remove = 2;
+                byte escaped = next();
+                switch(escaped) {
+                    case '"', '\\', '/' -> value.append((char) escaped);
+                    case 'b' -> value.append('\b');
+                    case 'f' -> value.append('\f');
+                    case 'n' -> value.append('\n');
+                    case 'r' -> value.append('\r');
+                    case 't' -> value.append('\t');
+                    case 'u' -> value.append(readHexChar());
+                    default -> throw new IllegalArgumentException("Invalid escape");
                 }
+                runStart = pos;
+            }
+        }
 
-                keyValue[1] = keyValue[1].substring(0, keyValue[1].length() - remove);
-                keyValue[1] = keyValue[1].substring(1);
+        private char readHexChar() {
+            int value = 0;
+            for(int i = 0; i < 4; i++) {
+                int digit = Character.digit(next(), 16);
+                if(digit < 0) {
+                    throw new IllegalArgumentException("Invalid unicode escape");
+                }
+                value = value << 4 | digit;
+            }
+            return (char) value;
+        }
+
+        private void skipWhitespace() {
+            while(pos < json.length && isWhitespace(json[pos])) {
+                pos++;
+            }
+        }
+
+        private static boolean isWhitespace(byte c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+        }
 
-                map.put(keyValue[0], keyValue[1]);
+        private void expect(char expected) {
+            if(next() != expected) {
+                throw new IllegalArgumentException("Malformed payload");
             }
         }
 
-        if(map.containsKey(extraction)) {
-            return map.get(extraction);
+        private byte peek() {
+            if(pos >= json.length) {
+                throw new IllegalArgumentException("Unexpected end of payload");
+            }
+            return json[pos];
         }
 
-        return null;
+        private byte next() {
+            byte c = peek();
+            pos++;
+            return c;
+        }
     }
 }
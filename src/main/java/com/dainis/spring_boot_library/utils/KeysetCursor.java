@@ -0,0 +1,49 @@
+package com.dainis.spring_boot_library.utils;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque "after id" cursors for keyset pagination. A page is always fetched as
+ * {@code where id > :afterId order by id limit size + 1}, so its cost does not depend on how deep the client is.
+ */
+public class KeysetCursor {
+
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private static final String PREFIX = "id:";
+
+    public static String encode(Long afterId) {
+        byte[] raw = (PREFIX + afterId).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+    }
+
+    public static Long decode(String cursor) throws Exception {
+        if(cursor == null || cursor.isEmpty()) {
+            return 0L;
+        }
+
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+
+            if(!raw.startsWith(PREFIX)) {
+                throw new Exception("Invalid cursor");
+            }
+
+            return Long.parseLong(raw.substring(PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            throw new Exception("Invalid cursor");
+        }
+    }
+
+    public static PageRequest pageRequest(int size) throws Exception {
+        if(size <= 0 || size > MAX_PAGE_SIZE) {
+            throw new Exception("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        return PageRequest.of(0, size, Sort.by("id"));
+    }
+}
@@ -0,0 +1,77 @@
+package com.dainis.spring_boot_library.utils;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+
+public class Thumbnails {
+
+    public static final int SIZE = 96;
+
+    // Values that are not a readable image are kept as they are when they are no longer than this
+    static final int MAX_INLINE_LENGTH = 8 * 1024;
+
+    private static final String JPEG_DATA_URL = "data:image/jpeg;base64,";
+
+    /**
+     * A JPEG data URL of the book image scaled to fit SIZE x SIZE, for the listing and shelf rows.
+     * img is a data URL or plain base64; an image already that small is returned unchanged, and anything
+     * that cannot be read as an image is returned unchanged when short or dropped (null) when not.
+     */
+    public static String of(String img) {
+        if(img == null || img.isBlank()) {
+            return null;
+        }
+
+        BufferedImage image = read(img);
+        if(image == null) {
+            return img.length() <= MAX_INLINE_LENGTH ? img : null;
+        }
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if(Math.max(width, height) <= SIZE && img.length() <= MAX_INLINE_LENGTH) {
+            return img;
+        }
+
+        double scale = Math.min(1.0, (double) SIZE / Math.max(width, height));
+        int scaledWidth = Math.max(1, (int) Math.round(width * scale));
+        int scaledHeight = Math.max(1, (int) Math.round(height * scale));
+
+        BufferedImage thumbnail = new BufferedImage(scaledWidth, scaledHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = thumbnail.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, scaledWidth, scaledHeight);
+            graphics.drawImage(image, 0, 0, scaledWidth, scaledHeight, null);
+        } finally {
+            graphics.dispose();
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(thumbnail, "jpg", out);
+        } catch (IOException e) {
+            return null;
+        }
+        return JPEG_DATA_URL + Base64.getEncoder().encodeToString(out.toByteArray());
+    }
+
+    private static BufferedImage read(String img) {
+        int comma = img.startsWith("data:") ? img.indexOf(',') : -1;
+        String encoded = comma < 0 ? img : img.substring(comma + 1);
+
+        try {
+            return ImageIO.read(new ByteArrayInputStream(Base64.getMimeDecoder().decode(encoded)));
+        } catch (IllegalArgumentException | IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+-- Composite indexes that let the cursor endpoints seek straight to "where <filter> = ? and id > ?".
+
+CREATE INDEX idx_book_category_id ON book (category, id);
+
+CREATE INDEX idx_history_user_email_id ON history (user_email, id);
+
+CREATE INDEX idx_messages_user_email_id ON messages (user_email, id);
+CREATE INDEX idx_messages_closed_id ON messages (closed, id);
+
+CREATE INDEX idx_review_book_id_id ON review (book_id, id);
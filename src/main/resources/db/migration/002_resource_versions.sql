@@ -0,0 +1,7 @@
+-- Optimistic-locking versions; Spring Data REST derives item ETags from them.
+
+ALTER TABLE book ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+
+ALTER TABLE review ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+
+ALTER TABLE messages ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
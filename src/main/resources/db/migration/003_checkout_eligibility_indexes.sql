@@ -0,0 +1,7 @@
+-- Indexes behind the single checkout eligibility query: the same-book and overdue lookups
+-- seek on the user's checkouts, and the fees lookup seeks on the user's payment row.
+
+CREATE INDEX idx_checkout_user_email_book_id ON checkout (user_email, book_id);
+CREATE INDEX idx_checkout_user_email_return_date ON checkout (user_email, return_date);
+
+CREATE INDEX idx_payment_user_email ON payment (user_email);
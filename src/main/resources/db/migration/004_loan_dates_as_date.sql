@@ -0,0 +1,9 @@
+-- Loan and history dates were stored as yyyy-MM-dd strings; MySQL converts them in place.
+
+ALTER TABLE checkout MODIFY COLUMN checkout_date DATE;
+ALTER TABLE checkout MODIFY COLUMN return_date DATE;
+
+ALTER TABLE history MODIFY COLUMN checkout_date DATE;
+ALTER TABLE history MODIFY COLUMN returned_date DATE;
+
+CREATE INDEX idx_checkout_return_date ON checkout (return_date);
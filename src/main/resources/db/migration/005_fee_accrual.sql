@@ -0,0 +1,9 @@
+-- Overdue fee accrual job: per-loan high-water mark of charged days, plus the job's resume point.
+
+ALTER TABLE checkout ADD COLUMN fees_accrued_through DATE NULL;
+
+CREATE TABLE fee_accrual_watermark (
+    job_name VARCHAR(64) NOT NULL PRIMARY KEY,
+    accrued_through DATE,
+    last_checkout_id BIGINT
+);
@@ -0,0 +1,25 @@
+-- Per-book review totals, maintained by ReviewService.postReview; backfilled from existing reviews.
+-- FLOOR(rating + 0.5) rounds half stars up, as BookRating.stars does with Math.round.
+
+CREATE TABLE book_rating (
+    book_id BIGINT NOT NULL PRIMARY KEY,
+    review_count BIGINT NOT NULL DEFAULT 0,
+    rating_sum DOUBLE NOT NULL DEFAULT 0,
+    stars_1 BIGINT NOT NULL DEFAULT 0,
+    stars_2 BIGINT NOT NULL DEFAULT 0,
+    stars_3 BIGINT NOT NULL DEFAULT 0,
+    stars_4 BIGINT NOT NULL DEFAULT 0,
+    stars_5 BIGINT NOT NULL DEFAULT 0
+);
+
+INSERT INTO book_rating (book_id, review_count, rating_sum, stars_1, stars_2, stars_3, stars_4, stars_5)
+SELECT book_id,
+       COUNT(*),
+       SUM(rating),
+       SUM(CASE WHEN LEAST(GREATEST(FLOOR(rating + 0.5), 1), 5) = 1 THEN 1 ELSE 0 END),
+       SUM(CASE WHEN LEAST(GREATEST(FLOOR(rating + 0.5), 1), 5) = 2 THEN 1 ELSE 0 END),
+       SUM(CASE WHEN LEAST(GREATEST(FLOOR(rating + 0.5), 1), 5) = 3 THEN 1 ELSE 0 END),
+       SUM(CASE WHEN LEAST(GREATEST(FLOOR(rating + 0.5), 1), 5) = 4 THEN 1 ELSE 0 END),
+       SUM(CASE WHEN LEAST(GREATEST(FLOOR(rating + 0.5), 1), 5) = 5 THEN 1 ELSE 0 END)
+FROM review
+GROUP BY book_id;
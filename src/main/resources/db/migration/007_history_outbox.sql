@@ -0,0 +1,11 @@
+-- Returned loans waiting to be copied into history by HistoryOutboxDrainer.
+
+CREATE TABLE history_outbox (
+    id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    user_email VARCHAR(255),
+    book_id BIGINT,
+    checkout_date DATE,
+    returned_date DATE
+);
+
+CREATE INDEX idx_history_outbox_book_id ON history_outbox (book_id);
@@ -0,0 +1,24 @@
+-- Ids for Hibernate-written tables come from pooled table generators (allocation size 50) instead of
+-- AUTO_INCREMENT, so Hibernate can batch inserts. history keeps AUTO_INCREMENT: it is only written by
+-- HistoryOutboxDrainer's INSERT ... SELECT.
+-- Each generator starts a full allocation above the current maximum id, since the pooled optimizer
+-- hands out the block ending at the stored value.
+
+CREATE TABLE id_generator (
+    name VARCHAR(255) NOT NULL PRIMARY KEY,
+    next_val BIGINT
+);
+
+INSERT INTO id_generator (name, next_val) SELECT 'book', COALESCE(MAX(id), 0) + 50 FROM book;
+INSERT INTO id_generator (name, next_val) SELECT 'checkout', COALESCE(MAX(id), 0) + 50 FROM checkout;
+INSERT INTO id_generator (name, next_val) SELECT 'payment', COALESCE(MAX(id), 0) + 50 FROM payment;
+INSERT INTO id_generator (name, next_val) SELECT 'review', COALESCE(MAX(id), 0) + 50 FROM review;
+INSERT INTO id_generator (name, next_val) SELECT 'message', COALESCE(MAX(id), 0) + 50 FROM messages;
+INSERT INTO id_generator (name, next_val) SELECT 'history_outbox', COALESCE(MAX(id), 0) + 50 FROM history_outbox;
+
+ALTER TABLE book MODIFY id BIGINT NOT NULL;
+ALTER TABLE checkout MODIFY id BIGINT NOT NULL;
+ALTER TABLE payment MODIFY id BIGINT NOT NULL;
+ALTER TABLE review MODIFY id BIGINT NOT NULL;
+ALTER TABLE messages MODIFY id BIGINT NOT NULL;
+ALTER TABLE history_outbox MODIFY id BIGINT NOT NULL;
@@ -0,0 +1,11 @@
+-- Responses of payment requests made with an Idempotency-Key, so a retried request gets the stored response.
+
+CREATE TABLE idempotency_record (
+    key_hash CHAR(64) NOT NULL PRIMARY KEY,
+    request_hash CHAR(64),
+    completed BIT NOT NULL,
+    response_body TEXT,
+    created_at DATETIME(6)
+);
+
+CREATE INDEX idx_idempotency_record_created_at ON idempotency_record (created_at);
@@ -0,0 +1,18 @@
+-- Fees move from the mutable payment.amount to an append-only ledger in cents. The payment row keeps
+-- the compacted balance snapshot; the current balance is the snapshot plus the entries still in the ledger.
+
+CREATE TABLE fee_ledger (
+    id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    user_email VARCHAR(255),
+    entry_type VARCHAR(32),
+    amount_cents BIGINT NOT NULL,
+    created_at DATETIME(6)
+);
+
+CREATE INDEX idx_fee_ledger_user_email ON fee_ledger (user_email);
+
+ALTER TABLE payment ADD COLUMN balance_cents BIGINT NOT NULL DEFAULT 0;
+
+UPDATE payment SET balance_cents = ROUND(amount * 100);
+
+ALTER TABLE payment DROP COLUMN amount;
@@ -0,0 +1,8 @@
+-- Secondary indexes on version also carry the primary key, so the collection ETag aggregates
+-- (count, sum and max of id, sum of version) are read from the index instead of the table rows.
+
+CREATE INDEX idx_book_version ON book (version);
+
+CREATE INDEX idx_review_version ON review (version);
+
+CREATE INDEX idx_messages_version ON messages (version);
@@ -0,0 +1,27 @@
+-- Archived history segments, registered with the delete of their rows so every instance reads the same set
+-- from the shared library.history.archive.directory, plus the lock that keeps archiving on one instance at a time.
+-- history_segment_user records the users each segment holds, with the count and id range of their rows, so a user's
+-- history only opens the segments with their rows and a page only the segments that reach it.
+
+CREATE TABLE history_segment (
+    file_name VARCHAR(64) NOT NULL PRIMARY KEY,
+    min_id BIGINT NOT NULL,
+    max_id BIGINT NOT NULL
+);
+
+CREATE INDEX idx_history_segment_max_id ON history_segment (max_id);
+
+CREATE TABLE history_segment_user (
+    user_email VARCHAR(255) NOT NULL,
+    file_name VARCHAR(64) NOT NULL,
+    row_count INT NOT NULL,
+    min_id BIGINT NOT NULL,
+    max_id BIGINT NOT NULL,
+    PRIMARY KEY (user_email, file_name)
+);
+
+CREATE TABLE job_lock (
+    job_name VARCHAR(64) NOT NULL PRIMARY KEY
+);
+
+INSERT INTO job_lock (job_name) VALUES ('history-archive');
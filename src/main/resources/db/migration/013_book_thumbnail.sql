@@ -0,0 +1,4 @@
+-- Small copy of book.img for catalog listings and shelf rows. New and imported books get it on insert;
+-- BookThumbnailBackfill fills it for existing books at startup.
+
+ALTER TABLE book ADD COLUMN thumbnail TEXT NULL;
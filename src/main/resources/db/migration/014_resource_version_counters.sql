@@ -0,0 +1,15 @@
+-- Collection ETags come from per-table change counters, bumped in the writing transaction,
+-- instead of aggregates over the tables, so the version indexes from 011 are no longer needed.
+
+CREATE TABLE resource_version (
+    resource VARCHAR(32) NOT NULL PRIMARY KEY,
+    version BIGINT NOT NULL
+);
+
+INSERT INTO resource_version (resource, version) VALUES ('book', 0), ('review', 0), ('messages', 0);
+
+DROP INDEX idx_book_version ON book;
+
+DROP INDEX idx_review_version ON review;
+
+DROP INDEX idx_messages_version ON messages;
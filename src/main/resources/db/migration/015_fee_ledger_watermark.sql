@@ -0,0 +1,14 @@
+-- Compaction keeps the ledger entries: the payment row records the last entry folded into its snapshot,
+-- and balances add only the entries above it. Entries left in the ledger so far were never folded.
+-- fee_ledger_watermark records how far compaction has got over the whole ledger, so a run reads only the tail.
+
+ALTER TABLE payment ADD COLUMN compacted_through_id BIGINT NOT NULL DEFAULT 0;
+
+CREATE TABLE fee_ledger_watermark (
+    job_name VARCHAR(64) NOT NULL PRIMARY KEY,
+    compacted_through_id BIGINT NOT NULL
+);
+
+CREATE INDEX idx_fee_ledger_user_email_id ON fee_ledger (user_email, id);
+
+DROP INDEX idx_fee_ledger_user_email ON fee_ledger;
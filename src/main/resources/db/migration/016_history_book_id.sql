@@ -0,0 +1,11 @@
+-- History rows keep the book id, so the most-borrowed leaderboard can be seeded from returned loans as well
+-- as open ones. Rows from before this change are matched to their book by title and author for the last week,
+-- which is all the leaderboard reads.
+
+ALTER TABLE history ADD COLUMN book_id BIGINT NULL;
+
+CREATE INDEX idx_history_checkout_date ON history (checkout_date);
+
+UPDATE history h JOIN book b ON b.title = h.title AND b.author = h.author
+SET h.book_id = b.id
+WHERE h.checkout_date >= CURRENT_DATE - INTERVAL 7 DAY;
@@ -0,0 +1,4 @@
+-- Search index sync keys off a counter that only moves when books are added or removed,
+-- since every checkout and return moves the book counter.
+
+INSERT INTO resource_version (resource, version) VALUES ('book_catalog', 0);
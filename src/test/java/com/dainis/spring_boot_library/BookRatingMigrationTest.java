@@ -0,0 +1,74 @@
+package com.dainis.spring_boot_library;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs the data statements of the book_rating migration against reviews with half-star ratings.
+ * The tables themselves come from the entity mappings.
+ */
+@SpringBootTest
+@Transactional
+class BookRatingMigrationTest {
+
+    private static final long BOOK_ID = 910_001L;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("delete from book_rating");
+
+        long id = 910_001L;
+        for(double rating : new double[] { 0.5, 1.5, 2.5, 3.0, 3.5, 4.5, 5.0 }) {
+            jdbcTemplate.update("insert into review (id, version, user_email, date, rating, book_id, review_description) " +
+                    "values (?, 0, ?, current_timestamp, ?, ?, 'Review')", id, id + "@example.com", rating, BOOK_ID);
+            id++;
+        }
+    }
+
+    @Test
+    @DisplayName("The backfill rounds half stars up, as new reviews are counted")
+    void testBackfillRoundsHalfStarsUp() throws IOException {
+        runDataStatements("db/migration/006_book_rating.sql");
+
+        assertEquals(List.of(1L, 1L, 2L, 1L, 2L), stars());
+        assertEquals(7L, jdbcTemplate.queryForObject(
+                "select review_count from book_rating where book_id = ?", Long.class, BOOK_ID));
+    }
+
+    private List<Long> stars() {
+        Map<String, Object> row = jdbcTemplate.queryForMap(
+                "select stars_1, stars_2, stars_3, stars_4, stars_5 from book_rating where book_id = ?", BOOK_ID);
+        return List.of(((Number) row.get("stars_1")).longValue(), ((Number) row.get("stars_2")).longValue(),
+                ((Number) row.get("stars_3")).longValue(), ((Number) row.get("stars_4")).longValue(),
+                ((Number) row.get("stars_5")).longValue());
+    }
+
+    private void runDataStatements(String migration) throws IOException {
+        String sql = new ClassPathResource(migration).getContentAsString(StandardCharsets.UTF_8).lines()
+                .filter(line -> !line.startsWith("--"))
+                .collect(Collectors.joining("\n"));
+
+        Arrays.stream(sql.split(";"))
+                .map(String::strip)
+                .filter(statement -> statement.startsWith("INSERT") || statement.startsWith("UPDATE"))
+                .forEach(jdbcTemplate::update);
+    }
+}
@@ -0,0 +1,173 @@
+package com.dainis.spring_boot_library;
+
+import com.dainis.spring_boot_library.dao.BookRepository;
+import com.dainis.spring_boot_library.entity.Book;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.servlet.function.RouterFunction;
+import org.springframework.web.servlet.function.RouterFunctions;
+import org.springframework.web.servlet.function.ServerResponse;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Throughput and latency of the same endpoints with Tomcat on its platform thread pool and on virtual threads
+ * (spring.threads.virtual.enabled). The blocking-io endpoint runs a query and then waits the way a Stripe call
+ * or a slow MySQL round trip would, which is where the 200-thread pool becomes the ceiling.
+ * <p>
+ * Skipped in the normal build. Run with
+ * {@code mvn test -Dtest=ThreadModeBenchmarkTest -Dbenchmark=true}, optionally with
+ * {@code -Dbenchmark.concurrency}, {@code -Dbenchmark.requests} and {@code -Dbenchmark.io-millis}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ThreadModeBenchmarkTest {
+
+    private static final int CONCURRENCY = Integer.getInteger("benchmark.concurrency", 400);
+
+    private static final int REQUESTS = Integer.getInteger("benchmark.requests", 8000);
+
+    private static final int WARMUP_REQUESTS = 1000;
+
+    private static final long IO_MILLIS = Long.getLong("benchmark.io-millis", 50L);
+
+    @Test
+    void compareThreadModes() throws Exception {
+        List<Result> results = new ArrayList<>();
+
+        for(boolean virtual : new boolean[] { false, true }) {
+            try(ConfigurableApplicationContext context = start(virtual)) {
+                seedBooks(context.getBean(BookRepository.class));
+
+                int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+                String mode = virtual ? "virtual" : "platform";
+
+                results.add(run(mode, "catalog", URI.create(
+                        "http://localhost:" + port + "/api/books/search/findByCategory?category=BE")));
+                results.add(run(mode, "blocking-io", URI.create(
+                        "http://localhost:" + port + "/benchmark/blocking-io")));
+            }
+        }
+
+        System.out.printf("%nconcurrency=%d requests=%d io-millis=%d%n", CONCURRENCY, REQUESTS, IO_MILLIS);
+        System.out.printf("%-9s %-12s %10s %9s %9s %7s%n", "mode", "endpoint", "req/s", "p50 ms", "p99 ms", "errors");
+        for(Result result : results) {
+            System.out.printf("%-9s %-12s %10.0f %9.1f %9.1f %7d%n", result.mode(), result.endpoint(),
+                    result.throughput(), result.p50Millis(), result.p99Millis(), result.errors());
+        }
+
+        for(Result result : results) {
+            assertEquals(0, result.errors(), result.mode() + " " + result.endpoint());
+        }
+    }
+
+    private ConfigurableApplicationContext start(boolean virtual) {
+        // Command line arguments, so they win over application.properties
+        return new SpringApplicationBuilder(SpringBootLibraryApplication.class)
+                .initializers(context -> ((GenericApplicationContext) context).registerBean("blockingIoRoute",
+                        RouterFunction.class, () -> blockingIoRoute(context)))
+                .run("--spring.threads.virtual.enabled=" + virtual,
+                        "--server.port=0",
+                        "--server.ssl.enabled=false",
+                        "--server.tomcat.threads.max=200",
+                        "--spring.datasource.url=jdbc:h2:mem:benchmark-" + (virtual ? "virtual" : "platform") + ";MODE=MySQL",
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.root=WARN");
+    }
+
+    private static RouterFunction<ServerResponse> blockingIoRoute(ConfigurableApplicationContext context) {
+        return RouterFunctions.route()
+                .GET("/benchmark/blocking-io", request -> {
+                    Integer books = context.getBean(JdbcTemplate.class)
+                            .queryForObject("select count(*) from book", Integer.class);
+                    Thread.sleep(IO_MILLIS);
+                    return ServerResponse.ok().body(String.valueOf(books));
+                })
+                .build();
+    }
+
+    private static void seedBooks(BookRepository bookRepository) {
+        List<Book> books = new ArrayList<>();
+        for(int i = 0; i < 20; i++) {
+            Book book = new Book();
+            book.setTitle("Benchmark Book " + i);
+            book.setAuthor("Author");
+            book.setDescription("Description");
+            book.setCopies(5);
+            book.setCopiesAvailable(5);
+            book.setCategory("BE");
+            book.setImg("img");
+            books.add(book);
+        }
+        bookRepository.saveAll(books);
+    }
+
+    private static Result run(String mode, String endpoint, URI uri) throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(uri).GET().build();
+
+        load(client, request, WARMUP_REQUESTS, new long[WARMUP_REQUESTS]);
+
+        long[] latencies = new long[REQUESTS];
+        long started = System.nanoTime();
+        int errors = load(client, request, REQUESTS, latencies);
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        Arrays.sort(latencies);
+        return new Result(mode, endpoint, REQUESTS / seconds,
+                latencies[REQUESTS / 2] / 1e6, latencies[(int) (REQUESTS * 0.99)] / 1e6, errors);
+    }
+
+    /**
+     * Sends the requests with at most {@link #CONCURRENCY} in flight and returns the number of failures.
+     */
+    private static int load(HttpClient client, HttpRequest request, int requests, long[] latencies) throws Exception {
+        Semaphore inFlight = new Semaphore(CONCURRENCY);
+        AtomicInteger errors = new AtomicInteger();
+
+        try(ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for(int i = 0; i < requests; i++) {
+                int index = i;
+                inFlight.acquire();
+                executor.submit(() -> {
+                    long sent = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        if(response.statusCode() != 200) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    } finally {
+                        latencies[index] = System.nanoTime() - sent;
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+
+        return errors.get();
+    }
+
+    private record Result(String mode, String endpoint, double throughput, double p50Millis, double p99Millis,
+                          int errors) {}
+}
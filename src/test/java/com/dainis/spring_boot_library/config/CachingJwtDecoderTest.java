@@ -0,0 +1,110 @@
+package com.dainis.spring_boot_library.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CachingJwtDecoderTest {
+
+    private static final Instant NOW = Instant.parse("2026-03-01T12:00:00Z");
+
+    private AtomicLong ticker = new AtomicLong();
+
+    private Clock clock = Clock.fixed(NOW, ZoneOffset.UTC);
+
+    private JwtDecoder delegate = mock(JwtDecoder.class);
+
+    private Cache<Object, Object> verified;
+
+    private CachingJwtDecoder decoder;
+
+    @BeforeEach
+    void setUp() {
+        verified = Caffeine.newBuilder()
+                .ticker(ticker::get)
+                .expireAfter(CachingJwtDecoder.expireAtTokenExpiry(clock, Duration.ofMinutes(10)))
+                .recordStats()
+                .build();
+        decoder = new CachingJwtDecoder(delegate, verified);
+    }
+
+    private static Jwt jwt(String token, Instant expiresAt) {
+        return Jwt.withTokenValue(token)
+                .header("alg", "RS256")
+                .claim("email", "test@example.com")
+                .expiresAt(expiresAt)
+                .build();
+    }
+
+    @Test
+    @DisplayName("A repeated token is verified once")
+    void testRepeatedToken() {
+        Jwt jwt = jwt("token-1", NOW.plusSeconds(300));
+        when(delegate.decode("token-1")).thenReturn(jwt);
+
+        assertSame(jwt, decoder.decode("token-1"));
+        assertSame(jwt, decoder.decode("token-1"));
+
+        verify(delegate, times(1)).decode("token-1");
+        assertEquals(1, verified.stats().hitCount());
+        assertEquals(1, verified.stats().missCount());
+    }
+
+    @Test
+    @DisplayName("Entries expire at the token's exp")
+    void testExpiresAtTokenExpiry() {
+        when(delegate.decode("token-1")).thenReturn(jwt("token-1", NOW.plusSeconds(60)));
+
+        decoder.decode("token-1");
+        ticker.addAndGet(TimeUnit.SECONDS.toNanos(59));
+        decoder.decode("token-1");
+        verify(delegate, times(1)).decode("token-1");
+
+        ticker.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        decoder.decode("token-1");
+        verify(delegate, times(2)).decode("token-1");
+    }
+
+    @Test
+    @DisplayName("Long-lived tokens are re-verified after the maximum TTL")
+    void testMaxTtl() {
+        when(delegate.decode("token-1")).thenReturn(jwt("token-1", NOW.plus(Duration.ofHours(1))));
+
+        decoder.decode("token-1");
+        ticker.addAndGet(Duration.ofMinutes(10).plusSeconds(1).toNanos());
+        decoder.decode("token-1");
+
+        verify(delegate, times(2)).decode("token-1");
+    }
+
+    @Test
+    @DisplayName("Rejected and already expired tokens are not cached")
+    void testRejectedTokens() {
+        when(delegate.decode("bad")).thenThrow(new BadJwtException("Invalid signature"));
+        when(delegate.decode("expired")).thenReturn(jwt("expired", NOW.minusSeconds(1)));
+
+        assertThrows(BadJwtException.class, () -> decoder.decode("bad"));
+        assertThrows(BadJwtException.class, () -> decoder.decode("bad"));
+        decoder.decode("expired");
+        decoder.decode("expired");
+
+        verify(delegate, times(2)).decode("bad");
+        verify(delegate, times(2)).decode("expired");
+        assertEquals(0, verified.stats().hitCount());
+    }
+}
@@ -1,8 +1,12 @@
 package com.dainis.spring_boot_library.controller;
 
+import com.dainis.spring_boot_library.config.CacheConfiguration;
 import com.dainis.spring_boot_library.dao.BookRepository;
 import com.dainis.spring_boot_library.entity.Book;
+import com.dainis.spring_boot_library.responsemodels.BookDetails;
 import com.dainis.spring_boot_library.service.BookService;
+import com.dainis.spring_boot_library.service.HistoryOutboxDrainer;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -10,14 +14,25 @@ import org.mockito.Mock;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.MediaType;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.transaction.TestTransaction;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @TestPropertySource("/application.properties")
@@ -35,6 +50,15 @@ public class BookControllerTest {
     @Autowired
     private BookRepository bookRepository;
 
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private HistoryOutboxDrainer historyOutboxDrainer;
+
+    @Autowired
+    private EntityManager entityManager;
+
     @BeforeEach
     public void setupData() {
         Book book = new Book();
@@ -45,8 +69,9 @@ public class BookControllerTest {
         book.setCopiesAvailable(10);
         book.setCategory("BE");
         book.setImg("Test Image");
+        book.setThumbnail("Test Thumbnail");
 
-        bookRepository.save(book);
+        bookRepository.saveAndFlush(book);
     }
 
     @Test
@@ -61,9 +86,230 @@ public class BookControllerTest {
         assertEquals(9, bookRepository.findById(bookId).get().getCopiesAvailable());
     }
 
+    @Test
+    public void checkoutSameBookTwiceHttpRequest() throws Exception {
+        Long bookId = bookRepository.findAll().getFirst().getId();
+
+        mockMvc.perform(put("/api/books/secure/checkout")
+                        .param("bookId", bookId.toString())
+                        .with(jwt().jwt(j -> j.claim("email", "test@example.com"))))
+                .andExpect(status().isOk());
+
+        assertThrows(Exception.class, () -> mockMvc.perform(put("/api/books/secure/checkout")
+                .param("bookId", bookId.toString())
+                .with(jwt().jwt(j -> j.claim("email", "test@example.com")))));
+
+        assertEquals(9, bookRepository.findById(bookId).get().getCopiesAvailable());
+    }
+
+    @Test
+    public void currentLoansHttpRequest() throws Exception {
+        Long bookId = bookRepository.findAll().getFirst().getId();
+
+        mockMvc.perform(put("/api/books/secure/checkout")
+                        .param("bookId", bookId.toString())
+                        .with(jwt().jwt(j -> j.claim("email", "test@example.com"))))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/books/secure/currentloans")
+                        .with(jwt().jwt(j -> j.claim("email", "test@example.com"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].book.title").value("Test Book"))
+                .andExpect(jsonPath("$[0].book.copiesAvailable").value(9))
+                .andExpect(jsonPath("$[0].book.thumbnail").value("Test Thumbnail"))
+                .andExpect(jsonPath("$[0].daysLeft").value(7));
+    }
+
+    @Test
+    public void bulkCheckoutAndReturnHttpRequest() throws Exception {
+        Long bookId = bookRepository.findAll().getFirst().getId();
+        String body = "{\"bookIds\": [" + bookId + ", 999]}";
+
+        mockMvc.perform(put("/api/books/secure/checkout/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body)
+                        .with(jwt().jwt(j -> j.claim("email", "test@example.com"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].success").value(true))
+                .andExpect(jsonPath("$[1].success").value(false));
+
+        assertEquals(9, copiesAvailable(bookId));
+
+        mockMvc.perform(put("/api/books/secure/return/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body)
+                        .with(jwt().jwt(j -> j.claim("email", "test@example.com"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].success").value(true))
+                .andExpect(jsonPath("$[1].success").value(false));
+
+        assertEquals(10, copiesAvailable(bookId));
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from history", Integer.class));
+
+        // The outbox rows are inserted at flush, which the request's commit would normally do
+        entityManager.flush();
+        historyOutboxDrainer.drain();
+
+        assertEquals("Test Book", jdbcTemplate.queryForObject("select title from history", String.class));
+    }
+
+    @Test
+    public void bookResourceIsServedThroughCacheHttpRequest() throws Exception {
+        Long bookId = bookRepository.findAll().getFirst().getId();
+
+        mockMvc.perform(get("/api/books/{id}", bookId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.copiesAvailable").value(10))
+                .andExpect(jsonPath("$.img").value("Test Image"));
+
+        assertNotNull(cacheManager.getCache(CacheConfiguration.BOOKS).get(bookId));
+
+        mockMvc.perform(put("/api/books/secure/checkout")
+                        .param("bookId", bookId.toString())
+                        .with(jwt().jwt(j -> j.claim("email", "test@example.com"))))
+                .andExpect(status().isOk());
+
+        assertNull(cacheManager.getCache(CacheConfiguration.BOOKS).get(bookId), "Stale entry should be evicted");
+
+        mockMvc.perform(get("/api/books/{id}", bookId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.copiesAvailable").value(9))
+                .andExpect(jsonPath("$._links.self.href").exists());
+
+        BookDetails cached = cacheManager.getCache(CacheConfiguration.BOOKS).get(bookId, BookDetails.class);
+        assertEquals(9, cached.getCopiesAvailable());
+    }
+
+    @Test
+    public void bookItemETagHttpRequest() throws Exception {
+        Long bookId = bookRepository.findAll().getFirst().getId();
+
+        String etag = mockMvc.perform(get("/api/books/{id}", bookId))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/books/{id}", bookId).header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    public void missingBookResourceHttpRequest() throws Exception {
+        mockMvc.perform(get("/api/books/{id}", 999))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void bookCollectionETagHttpRequest() throws Exception {
+        String etag = mockMvc.perform(get("/api/books"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/books").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        startNewTransaction();
+        Long bookId = bookRepository.findAll().getFirst().getId();
+        mockMvc.perform(put("/api/books/secure/checkout")
+                        .param("bookId", bookId.toString())
+                        .with(jwt().jwt(j -> j.claim("email", "test@example.com"))))
+                .andExpect(status().isOk());
+        startNewTransaction();
+
+        mockMvc.perform(get("/api/books").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$._embedded.books[0].copiesAvailable").value(9));
+    }
+
+    @Test
+    public void bookCollectionETagSeesBulkWritesHttpRequest() throws Exception {
+        String etag = mockMvc.perform(get("/api/books"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        // The bulk checkout updates copies through JDBC, which the entity listener doesn't see
+        startNewTransaction();
+        Long bookId = bookRepository.findAll().getFirst().getId();
+        mockMvc.perform(put("/api/books/secure/checkout/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"bookIds\": [" + bookId + "]}")
+                        .with(jwt().jwt(j -> j.claim("email", "test@example.com"))))
+                .andExpect(status().isOk());
+        startNewTransaction();
+
+        mockMvc.perform(get("/api/books").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"));
+    }
+
+    @Test
+    public void bookCollectionETagSeesOtherInstancesHttpRequest() throws Exception {
+        String etag = mockMvc.perform(get("/api/books"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        // The counter another instance bumps when it writes a book
+        jdbcTemplate.update("update resource_version set version = version + 1 where resource = 'book'");
+
+        mockMvc.perform(get("/api/books").header("If-None-Match", etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void booksByCategoryCursorHttpRequest() throws Exception {
+        mockMvc.perform(get("/api/books/cursor/category")
+                        .param("category", "BE")
+                        .param("size", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].title").value("Test Book"))
+                .andExpect(jsonPath("$.content[0].img").doesNotExist())
+                .andExpect(jsonPath("$.content[0].thumbnail").value("Test Thumbnail"))
+                .andExpect(jsonPath("$.hasNext").value(false));
+    }
+
+    @Test
+    public void reviewRatingIsEmbeddedInListingsHttpRequest() throws Exception {
+        Long bookId = bookRepository.findAll().getFirst().getId();
+
+        for(String rating : new String[] { "4", "5" }) {
+            mockMvc.perform(post("/api/reviews/secure")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"bookId\": " + bookId + ", \"rating\": " + rating + ", \"reviewDescription\": \"Good\"}")
+                            .with(jwt().jwt(j -> j.claim("email", rating + "@example.com"))))
+                    .andExpect(status().isOk());
+        }
+
+        mockMvc.perform(get("/api/reviews/rating").param("bookId", bookId.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.reviewCount").value(2))
+                .andExpect(jsonPath("$.histogram[3]").value(1))
+                .andExpect(jsonPath("$.histogram[4]").value(1));
+
+        mockMvc.perform(get("/api/books/cursor/category").param("category", "BE"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].reviewCount").value(2))
+                .andExpect(jsonPath("$.content[0].averageRating").value(4.5));
+    }
+
+    // Requests run in their own transactions, and the ETag counters are bumped once each one commits
+    private void startNewTransaction() {
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        TestTransaction.start();
+    }
+
+    // The bulk endpoints update through JDBC, so read past the test's persistence context
+    private int copiesAvailable(Long bookId) {
+        return jdbcTemplate.queryForObject("select copies_available from book where id = ?", Integer.class, bookId);
+    }
+
     @AfterEach
     public void setupAfterTransaction() {
+        jdbcTemplate.update("delete from checkout where user_email = 'test@example.com'");
+        jdbcTemplate.update("delete from payment where user_email = 'test@example.com'");
         jdbcTemplate.execute("delete from book");
         jdbcTemplate.execute("alter table book alter column id restart with 1");
+        cacheManager.getCache(CacheConfiguration.BOOKS).clear();
+        cacheManager.getCache(CacheConfiguration.SHELVES).clear();
     }
 }
@@ -0,0 +1,36 @@
+package com.dainis.spring_boot_library.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@TestPropertySource("/application.properties")
+@AutoConfigureMockMvc
+@SpringBootTest
+public class PaymentControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void anonymousPaymentIntentHttpRequest() throws Exception {
+        mockMvc.perform(post("/api/payment/secure/payment-intent")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"amount\": 100, \"currency\": \"USD\", \"receiptEmail\": \"test@example.com\"}"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    public void anonymousPaymentCompleteHttpRequest() throws Exception {
+        mockMvc.perform(put("/api/payment/secure/payment-complete"))
+                .andExpect(status().isUnauthorized());
+    }
+}
@@ -0,0 +1,143 @@
+package com.dainis.spring_boot_library.service;
+
+import com.dainis.spring_boot_library.config.CacheConfiguration;
+import com.dainis.spring_boot_library.dao.BookRepository;
+import com.dainis.spring_boot_library.entity.Book;
+import com.dainis.spring_boot_library.responsemodels.BookDetails;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class BookCacheTest {
+
+    private Cache books;
+
+    private BookRepository bookRepository;
+
+    private BookCache bookCache;
+
+    @BeforeEach
+    void setUp() {
+        var cacheManager = new CacheConfiguration().cacheManager(100, Duration.ofMinutes(10), 100, Duration.ofMinutes(1), 100, Duration.ofHours(24), 100, Duration.ofMinutes(10));
+        books = cacheManager.getCache(CacheConfiguration.BOOKS);
+        bookRepository = mock(BookRepository.class);
+        bookCache = new BookCache(bookRepository, cacheManager);
+    }
+
+    @Test
+    void testGetCachesAnImmutableCopy() {
+        Book book = new Book();
+        book.setId(1L);
+        book.setVersion(0L);
+        book.setCopiesAvailable(3);
+        when(bookRepository.findById(1L)).thenReturn(Optional.of(book));
+
+        BookDetails first = bookCache.get(1L).get();
+        book.setCopiesAvailable(0);
+        BookDetails second = bookCache.get(1L).get();
+
+        assertSame(first, second);
+        assertEquals(3, second.getCopiesAvailable(), "Changing the entity must not change the cached copy");
+        verify(bookRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    void testGetDoesNotCacheMissingBook() {
+        when(bookRepository.findById(1L)).thenReturn(Optional.empty());
+
+        assertTrue(bookCache.get(1L).isEmpty());
+        assertNull(books.get(1L));
+    }
+
+    @Test
+    void testGetDoesNotKeepRowEvictedWhileLoading() {
+        Book stale = new Book();
+        stale.setId(1L);
+        stale.setCopiesAvailable(3);
+        // the writer commits and evicts after the reader has read the old row, before it is put
+        when(bookRepository.findById(1L)).thenAnswer(invocation -> {
+            bookCache.evict(1L);
+            return Optional.of(stale);
+        });
+
+        assertEquals(3, bookCache.get(1L).get().getCopiesAvailable());
+        assertNull(books.get(1L));
+    }
+
+    @Test
+    void testGetSeesCheckoutOnAnotherInstanceAfterExpiry() throws Exception {
+        Book book = new Book();
+        book.setId(1L);
+        book.setVersion(0L);
+        book.setCopiesAvailable(3);
+        // the table both instances read
+        when(bookRepository.findById(1L)).thenAnswer(invocation -> Optional.of(copy(book)));
+
+        var cacheManager = new CacheConfiguration().cacheManager(100, Duration.ofMillis(200), 100, Duration.ofMinutes(1), 100, Duration.ofHours(24), 100, Duration.ofMinutes(10));
+        BookCache instance = new BookCache(bookRepository, cacheManager);
+        var otherCacheManager = new CacheConfiguration().cacheManager(100, Duration.ofMillis(200), 100, Duration.ofMinutes(1), 100, Duration.ofHours(24), 100, Duration.ofMinutes(10));
+        BookCache otherInstance = new BookCache(bookRepository, otherCacheManager);
+
+        assertEquals(3, instance.get(1L).get().getCopiesAvailable());
+        assertEquals(3, otherInstance.get(1L).get().getCopiesAvailable());
+
+        // checked out on the other instance, which only evicts its own cache
+        book.setCopiesAvailable(2);
+        book.setVersion(1L);
+        otherInstance.evict(1L);
+
+        assertEquals(3, instance.get(1L).get().getCopiesAvailable(), "Served from the cache without a query");
+        verify(bookRepository, times(2)).findById(1L);
+
+        Thread.sleep(300);
+
+        assertEquals(2, instance.get(1L).get().getCopiesAvailable());
+    }
+
+    @Test
+    void testEvictOutsideTransaction() {
+        books.put(1L, BookDetails.of(new Book()));
+
+        bookCache.evict(1L);
+
+        assertNull(books.get(1L));
+    }
+
+    @Test
+    void testEvictAgainWhenTransactionCompletes() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            books.put(1L, BookDetails.of(new Book()));
+
+            bookCache.evict(1L);
+            assertNull(books.get(1L));
+
+            // a concurrent reader re-caches the row before the writer commits
+            books.put(1L, BookDetails.of(new Book()));
+
+            for(TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+            }
+
+            assertNull(books.get(1L));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static Book copy(Book book) {
+        Book copy = new Book();
+        copy.setId(book.getId());
+        copy.setVersion(book.getVersion());
+        copy.setCopiesAvailable(book.getCopiesAvailable());
+        return copy;
+    }
+}
@@ -0,0 +1,163 @@
+package com.dainis.spring_boot_library.service;
+
+import com.dainis.spring_boot_library.responsemodels.BookImportProgress;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestPropertySource(properties = "library.import.batch-size=2")
+@SpringBootTest
+@Transactional
+class BookImportServiceTest {
+
+    @Autowired
+    private BookImportService bookImportService;
+
+    @Autowired
+    private BookSearchIndex bookSearchIndex;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    @DisplayName("CSV rows are imported in batches and bad rows are reported by line")
+    void testImportCsv() throws Exception {
+        String csv = """
+                title,author,copies,category,description
+                Zyxwv Import One,Author One,3,BE,"Plain, with a comma"
+                Zyxwv Import Two,Author Two,lots,FE,Bad copies
+                Zyxwv Import Three,Author Three,1,DevOps,"Two
+                lines with ""quotes\"\"\"
+                ,No Title,1,BE,Missing title
+                Zyxwv Import Four,Author Four,0,BE,Last
+                """;
+
+        List<JsonNode> output = new ArrayList<>();
+        BookImportProgress progress = importBooks(csv, DataFormat.CSV, output);
+
+        assertEquals(5, progress.getProcessed());
+        assertEquals(3, progress.getImported());
+        assertEquals(2, progress.getFailed());
+        assertTrue(progress.isDone());
+
+        List<JsonNode> errors = output.stream().filter(node -> node.has("error")).toList();
+        assertEquals(3, errors.getFirst().get("line").asLong());
+        assertEquals(6, errors.getLast().get("line").asLong());
+        assertTrue(output.getLast().get("done").asBoolean());
+        assertTrue(output.stream().filter(node -> node.has("processed")).count() >= 3);
+
+        assertEquals("Two\nlines with \"quotes\"", jdbcTemplate.queryForObject(
+                "select description from book where title = 'Zyxwv Import Three'", String.class));
+        assertEquals(3, jdbcTemplate.queryForObject(
+                "select copies_available from book where title = 'Zyxwv Import One'", Integer.class));
+        assertEquals(3, bookSearchIndex.search("zyxwv").size());
+    }
+
+    @Test
+    @DisplayName("NDJSON rows are imported and malformed lines are reported")
+    void testImportNdjson() throws Exception {
+        String ndjson = """
+                {"title":"Qwerty Json One","author":"Author","copies":2,"category":"BE"}
+                not json
+
+                {"title":"Qwerty Json Two","author":"Author","copies":1,"category":"FE"}
+                """;
+
+        BookImportProgress progress = importBooks(ndjson, DataFormat.NDJSON, new ArrayList<>());
+
+        assertEquals(2, progress.getImported());
+        assertEquals(1, progress.getFailed());
+        assertEquals(2, jdbcTemplate.queryForObject(
+                "select count(*) from book where title like 'Qwerty Json%'", Integer.class));
+    }
+
+    @Test
+    @DisplayName("A CSV without the required columns stops the import with a failure line")
+    void testImportCsvMissingColumn() throws Exception {
+        List<JsonNode> output = new ArrayList<>();
+        BookImportProgress progress = importBooks("title,author\nOne,Two\n", DataFormat.CSV, output);
+
+        assertTrue(progress.isDone());
+        assertTrue(progress.getFailure().contains("Missing CSV column copies"));
+        assertTrue(output.getLast().get("failure").asText().contains("Missing CSV column copies"));
+    }
+
+    @Test
+    @DisplayName("An Error in the parser thread ends the import instead of hanging it")
+    void testImportParserError() {
+        InputStream failing = new InputStream() {
+            @Override
+            public int read() {
+                throw new AssertionError("Parser died");
+            }
+        };
+
+        BookImportProgress progress = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> bookImportService.importBooks(failing, DataFormat.NDJSON, new ByteArrayOutputStream()));
+
+        assertTrue(progress.getFailure().contains("Parser died"));
+        assertEquals(0, progress.getImported());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("A batch the database refuses ends the import with a failure line and the committed count")
+    void testImportSaveFailure() throws Exception {
+        // Passes validation but is longer than the description column
+        String tooLong = "x".repeat(300);
+        String ndjson = """
+                {"title":"Plokij Save One","author":"Author","copies":1,"category":"BE"}
+                {"title":"Plokij Save Two","author":"Author","copies":1,"category":"BE"}
+                {"title":"Plokij Save Three","author":"Author","copies":1,"category":"BE","description":"%s"}
+                """.formatted(tooLong);
+
+        try {
+            List<JsonNode> output = new ArrayList<>();
+            BookImportProgress progress = importBooks(ndjson, DataFormat.NDJSON, output);
+
+            assertTrue(progress.isDone());
+            assertEquals(2, progress.getImported());
+            assertTrue(progress.getFailure().startsWith("Import stopped saving rows up to line 3"));
+
+            JsonNode last = output.getLast();
+            assertTrue(last.get("done").asBoolean());
+            assertEquals(2, last.get("imported").asLong());
+            assertTrue(last.has("failure"));
+            assertEquals(2, jdbcTemplate.queryForObject(
+                    "select count(*) from book where title like 'Plokij Save%'", Integer.class));
+        } finally {
+            jdbcTemplate.update("delete from book where title like 'Plokij Save%'");
+        }
+    }
+
+    private BookImportProgress importBooks(String body, DataFormat format, List<JsonNode> output) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BookImportProgress progress = bookImportService.importBooks(
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), format, out);
+
+        for(String line : out.toString(StandardCharsets.UTF_8).lines().toList()) {
+            output.add(objectMapper.readTree(line));
+        }
+        return progress;
+    }
+}
@@ -0,0 +1,88 @@
+package com.dainis.spring_boot_library.service;
+
+import com.dainis.spring_boot_library.entity.Book;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookSearchIndexTest {
+
+    private BookSearchIndex bookSearchIndex;
+
+    @BeforeEach
+    void setUp() {
+        bookSearchIndex = new BookSearchIndex();
+        bookSearchIndex.index(book(1L, "Spring Boot in Action", "Craig Walls", "BE", "Build applications quickly"));
+        bookSearchIndex.index(book(2L, "Learning React", "Alex Banks", "FE", "Modern patterns with Spring-like hooks"));
+        bookSearchIndex.index(book(3L, "Crafting Interpreters", "Robert Nystrom", "Data", "A handbook for making languages"));
+    }
+
+    @Test
+    @DisplayName("Title matches rank above description matches")
+    void testSearchRanksTitleAboveDescription() {
+        assertEquals(List.of(1L, 2L), bookSearchIndex.search("spring"));
+    }
+
+    @Test
+    @DisplayName("Every query term is matched as a prefix across all fields")
+    void testSearchMatchesPrefixesAcrossFields() {
+        assertEquals(List.of(3L), bookSearchIndex.search("craft nyst"));
+        assertEquals(List.of(1L), bookSearchIndex.search("walls boot"));
+        assertTrue(bookSearchIndex.search("spring nystrom").isEmpty(), "All terms must match the same book");
+    }
+
+    @Test
+    @DisplayName("Search is case and accent insensitive")
+    void testSearchNormalizesTerms() {
+        assertEquals(List.of(2L), bookSearchIndex.search("RÉACT"));
+    }
+
+    @Test
+    @DisplayName("Exact term matches rank above prefix matches")
+    void testExactMatchRanksAbovePrefixMatch() {
+        bookSearchIndex.index(book(4L, "Reacting to Change", "Someone", "SE", null));
+
+        assertEquals(List.of(2L, 4L), bookSearchIndex.search("react"));
+    }
+
+    @Test
+    @DisplayName("Re-indexing a book replaces its old terms")
+    void testReindexReplacesTerms() {
+        bookSearchIndex.index(book(1L, "Kotlin in Action", "Dmitry Jemerov", "BE", null));
+
+        assertEquals(List.of(2L), bookSearchIndex.search("spring"));
+        assertEquals(List.of(1L), bookSearchIndex.search("kotlin"));
+        assertEquals(3, bookSearchIndex.size());
+    }
+
+    @Test
+    @DisplayName("Removed books are no longer returned")
+    void testRemove() {
+        bookSearchIndex.remove(1L);
+
+        assertEquals(List.of(2L), bookSearchIndex.search("spring"));
+        assertTrue(bookSearchIndex.search("walls").isEmpty());
+        assertEquals(2, bookSearchIndex.size());
+    }
+
+    @Test
+    @DisplayName("Blank queries return nothing")
+    void testBlankQuery() {
+        assertTrue(bookSearchIndex.search("  ").isEmpty());
+        assertTrue(bookSearchIndex.search("!!").isEmpty());
+    }
+
+    private static Book book(Long id, String title, String author, String category, String description) {
+        Book book = new Book();
+        book.setId(id);
+        book.setTitle(title);
+        book.setAuthor(author);
+        book.setCategory(category);
+        book.setDescription(description);
+        return book;
+    }
+}
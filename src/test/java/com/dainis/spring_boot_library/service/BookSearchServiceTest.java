@@ -0,0 +1,137 @@
+package com.dainis.spring_boot_library.service;
+
+import com.dainis.spring_boot_library.dao.BookRepository;
+import com.dainis.spring_boot_library.entity.Book;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class BookSearchServiceTest {
+
+    // Rolled back with each test, so every change moves the counter to a value no earlier sync has seen
+    private static final AtomicLong BOOK_VERSION = new AtomicLong(System.currentTimeMillis());
+
+    private static final Long BOOK_ID = 1000001L;
+
+    @Autowired
+    private BookSearchService bookSearchService;
+
+    @Autowired
+    private BookSearchIndex bookSearchIndex;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ResourceVersions resourceVersions;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    @DisplayName("Books added, edited and removed on another instance are brought into the index by sync")
+    void testSyncPicksUpOtherInstancesChanges() {
+        jdbcTemplate.update("insert into book (id, title, author, description, copies, copies_available, category, img, version) " +
+                "values (?, 'Qwertyuiop Handbook', 'Author', 'Description', 1, 1, 'BE', 'img', 0)", BOOK_ID);
+        assertTrue(bookSearchIndex.search("qwertyuiop").isEmpty());
+
+        otherInstanceChangedBooks();
+        bookSearchService.sync();
+        assertEquals(List.of(BOOK_ID), bookSearchIndex.search("qwertyuiop"));
+
+        jdbcTemplate.update("update book set title = 'Asdfghjkl Handbook', version = version + 1 where id = ?", BOOK_ID);
+        otherInstanceChangedBooks();
+        bookSearchService.sync();
+        assertTrue(bookSearchIndex.search("qwertyuiop").isEmpty());
+        assertEquals(List.of(BOOK_ID), bookSearchIndex.search("asdfghjkl"));
+
+        jdbcTemplate.update("delete from book where id = ?", BOOK_ID);
+        otherInstanceChangedBooks();
+        bookSearchService.sync();
+        assertTrue(bookSearchIndex.search("asdfghjkl").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Sync leaves the index alone while the catalog counter has not moved")
+    void testSyncSkipsWhenBooksUnchanged() {
+        otherInstanceChangedBooks();
+        bookSearchService.sync();
+
+        jdbcTemplate.update("insert into book (id, title, author, description, copies, copies_available, category, img, version) " +
+                "values (?, 'Zxcvbnm Handbook', 'Author', 'Description', 1, 1, 'BE', 'img', 0)", BOOK_ID);
+        bookSearchService.sync();
+
+        assertTrue(bookSearchIndex.search("zxcvbnm").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Checkouts and returns moving the book counter don't set off a sync")
+    void testSyncIgnoresCirculation() {
+        otherInstanceChangedBooks();
+        bookSearchService.sync();
+
+        jdbcTemplate.update("insert into book (id, title, author, description, copies, copies_available, category, img, version) " +
+                "values (?, 'Mnbvcxz Handbook', 'Author', 'Description', 1, 1, 'BE', 'img', 0)", BOOK_ID);
+        bumpCounter("book");
+        bookSearchService.sync();
+
+        assertTrue(bookSearchIndex.search("mnbvcxz").isEmpty());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("Editing a book's text moves the catalog counter and changing its copies does not")
+    void testCatalogCounterFollowsTextEdits() {
+        Book book = new Book();
+        book.setTitle("Lkjhgf Handbook");
+        book.setAuthor("Author");
+        book.setCategory("BE");
+        book.setCopies(1);
+        book.setCopiesAvailable(1);
+        Long bookId = bookRepository.save(book).getId();
+
+        try {
+            long before = resourceVersions.catalogVersion();
+
+            Book loaded = bookRepository.findById(bookId).orElseThrow();
+            loaded.setCopiesAvailable(0);
+            bookRepository.save(loaded);
+            assertEquals(before, resourceVersions.catalogVersion());
+
+            loaded = bookRepository.findById(bookId).orElseThrow();
+            loaded.setTitle("Poiuyt Handbook");
+            bookRepository.save(loaded);
+            assertEquals(before + 1, resourceVersions.catalogVersion());
+        } finally {
+            jdbcTemplate.update("delete from book where id = ?", bookId);
+        }
+    }
+
+    private void otherInstanceChangedBooks() {
+        // The next sync reads the books afresh, as it would in its own transaction
+        entityManager.clear();
+        bumpCounter("book_catalog");
+    }
+
+    private void bumpCounter(String resource) {
+        long version = BOOK_VERSION.incrementAndGet();
+        if(jdbcTemplate.update("update resource_version set version = ? where resource = ?", version, resource) == 0) {
+            jdbcTemplate.update("insert into resource_version (resource, version) values (?, ?)", resource, version);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.dainis.spring_boot_library.service;
+
+import com.dainis.spring_boot_library.dao.BookRepository;
+import com.dainis.spring_boot_library.dao.LoanBatchRepository;
+import com.dainis.spring_boot_library.entity.Book;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Not @Transactional: each loan runs in its own transaction on its own thread, as it does behind a request.
+ */
+@SpringBootTest
+class BookServiceConcurrencyTest {
+
+    private static final String FIRST_USER = "first-concurrent@example.com";
+
+    private static final String SECOND_USER = "second-concurrent@example.com";
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private LoanBatchRepository loanBatchRepository;
+
+    @Autowired
+    private ResourceVersions resourceVersions;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private ExecutorService executor;
+
+    private Long firstBookId;
+
+    private Long secondBookId;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(2);
+        firstBookId = saveBook("Concurrent First");
+        secondBookId = saveBook("Concurrent Second");
+    }
+
+    @Test
+    @DisplayName("Checkouts of two different books don't wait for each other's transactions")
+    void testCheckoutsOfDifferentBooksDoNotBlock() throws Exception {
+        long versionBefore = resourceVersions.version(Book.class);
+        long catalogVersionBefore = resourceVersions.catalogVersion();
+
+        CountDownLatch firstCheckedOut = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        Future<?> first = executor.submit(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            try {
+                bookService.checkoutBook(FIRST_USER, firstBookId);
+                firstCheckedOut.countDown();
+                releaseFirst.await(10, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }));
+
+        assertTrue(firstCheckedOut.await(5, TimeUnit.SECONDS));
+
+        // The first transaction is still open and holds its book row
+        Future<?> second = executor.submit(() -> {
+            bookService.checkoutBook(SECOND_USER, secondBookId);
+            return null;
+        });
+        second.get(5, TimeUnit.SECONDS);
+
+        releaseFirst.countDown();
+        first.get(5, TimeUnit.SECONDS);
+
+        assertEquals(0, copiesAvailable(firstBookId));
+        assertEquals(0, copiesAvailable(secondBookId));
+        assertEquals(versionBefore + 2, resourceVersions.version(Book.class));
+        // Loans leave the search index's counter alone
+        assertEquals(catalogVersionBefore, resourceVersions.catalogVersion());
+    }
+
+    @Test
+    @DisplayName("Bulk updates over the same books in opposite orders don't deadlock")
+    void testBulkUpdatesLockBooksInIdOrder() throws Exception {
+        Long lowId = Math.min(firstBookId, secondBookId);
+        Long highId = Math.max(firstBookId, secondBookId);
+        jdbcTemplate.update("update book set copies = 2, copies_available = 2 where id in (?, ?)", lowId, highId);
+
+        CountDownLatch lowLocked = new CountDownLatch(1);
+        CountDownLatch secondBatchStarted = new CountDownLatch(1);
+        Future<?> first = executor.submit(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            loanBatchRepository.checkoutCopies(List.of(lowId));
+            lowLocked.countDown();
+            try {
+                secondBatchStarted.await(5, TimeUnit.SECONDS);
+                // Let the other batch reach the row lock it waits on
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            loanBatchRepository.checkoutCopies(List.of(highId));
+        }));
+
+        assertTrue(lowLocked.await(5, TimeUnit.SECONDS));
+
+        // Sent high id first; it must still wait on the low id before locking the high one
+        Future<int[]> second = executor.submit(() -> new TransactionTemplate(transactionManager).execute(status -> {
+            secondBatchStarted.countDown();
+            return loanBatchRepository.checkoutCopies(List.of(highId, lowId));
+        }));
+
+        first.get(10, TimeUnit.SECONDS);
+        assertArrayEquals(new int[] { 1, 1 }, second.get(10, TimeUnit.SECONDS));
+
+        assertEquals(0, copiesAvailable(lowId));
+        assertEquals(0, copiesAvailable(highId));
+    }
+
+    private Long saveBook(String title) {
+        Book book = new Book();
+        book.setTitle(title);
+        book.setAuthor("Author");
+        book.setCategory("BE");
+        book.setCopies(1);
+        book.setCopiesAvailable(1);
+        return bookRepository.save(book).getId();
+    }
+
+    private int copiesAvailable(Long bookId) {
+        return jdbcTemplate.queryForObject("select copies_available from book where id = ?", Integer.class, bookId);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        for(String userEmail : new String[] { FIRST_USER, SECOND_USER }) {
+            jdbcTemplate.update("delete from checkout where user_email = ?", userEmail);
+            jdbcTemplate.update("delete from payment where user_email = ?", userEmail);
+        }
+        jdbcTemplate.update("delete from book where title like 'Concurrent %'");
+    }
+}
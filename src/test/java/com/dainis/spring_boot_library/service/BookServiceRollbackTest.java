@@ -0,0 +1,83 @@
+package com.dainis.spring_boot_library.service;
+
+import com.dainis.spring_boot_library.dao.BookRepository;
+import com.dainis.spring_boot_library.dao.CheckoutRepository;
+import com.dainis.spring_boot_library.entity.Book;
+import com.dainis.spring_boot_library.entity.Checkout;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Not @Transactional, so each service call commits or rolls back on its own, as it does behind a request.
+ */
+@SpringBootTest
+class BookServiceRollbackTest {
+
+    private static final String USER_EMAIL = "rollback@example.com";
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private CheckoutRepository checkoutRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    @DisplayName("A checkout that finds no copy left leaves no checkout or payment row behind")
+    void testCheckoutWithoutCopiesRollsBack() {
+        Book book = new Book();
+        book.setTitle("Last Copy");
+        book.setAuthor("Author");
+        book.setCategory("BE");
+        book.setCopies(1);
+        book.setCopiesAvailable(0);
+        Long bookId = bookRepository.save(book).getId();
+
+        assertThrows(Exception.class, () -> bookService.checkoutBook(USER_EMAIL, bookId));
+
+        assertEquals(0, count("select count(*) from checkout where user_email = ?"));
+        assertEquals(0, count("select count(*) from payment where user_email = ?"));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "select copies_available from book where id = ?", Integer.class, bookId));
+    }
+
+    @Test
+    @DisplayName("A return of a book that no longer exists keeps the loan and charges nothing")
+    void testReturnOfMissingBookRollsBack() {
+        LocalDate today = LocalDate.now();
+        checkoutRepository.save(new Checkout(USER_EMAIL, today.minusDays(10), today.minusDays(3), 999L));
+
+        assertThrows(Exception.class, () -> bookService.returnBook(USER_EMAIL, 999L));
+
+        assertEquals(1, count("select count(*) from checkout where user_email = ?"));
+        assertEquals(0, count("select count(*) from fee_ledger where user_email = ?"));
+        assertEquals(0, count("select count(*) from history_outbox where user_email = ?"));
+    }
+
+    private int count(String sql) {
+        return jdbcTemplate.queryForObject(sql, Integer.class, USER_EMAIL);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("delete from checkout where user_email = ?", USER_EMAIL);
+        jdbcTemplate.update("delete from payment where user_email = ?", USER_EMAIL);
+        jdbcTemplate.update("delete from fee_ledger where user_email = ?", USER_EMAIL);
+        jdbcTemplate.update("delete from history_outbox where user_email = ?", USER_EMAIL);
+        jdbcTemplate.update("delete from book where title = 'Last Copy'");
+    }
+}
@@ -1,13 +1,18 @@
 package com.dainis.spring_boot_library.service;
 
 import com.dainis.spring_boot_library.dao.BookRepository;
+import com.dainis.spring_boot_library.dao.CheckoutEligibility;
 import com.dainis.spring_boot_library.dao.CheckoutRepository;
-import com.dainis.spring_boot_library.dao.HistoryRepository;
+import com.dainis.spring_boot_library.dao.FeeLedgerRepository;
+import com.dainis.spring_boot_library.dao.HistoryOutboxRepository;
+import com.dainis.spring_boot_library.dao.LoanBatchRepository;
 import com.dainis.spring_boot_library.dao.PaymentRepository;
 import com.dainis.spring_boot_library.entity.Book;
 import com.dainis.spring_boot_library.entity.Checkout;
-import com.dainis.spring_boot_library.entity.History;
-import com.dainis.spring_boot_library.entity.Payment;
+import com.dainis.spring_boot_library.entity.FeeLedgerEntry;
+import com.dainis.spring_boot_library.entity.HistoryOutbox;
+import com.dainis.spring_boot_library.responsemodels.BookSummary;
+import com.dainis.spring_boot_library.responsemodels.BulkBookResult;
 import com.dainis.spring_boot_library.responsemodels.ShelfCurrentLoansResponse;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -20,6 +25,7 @@ import java.nio.LongBuffer;
 import java.time.LocalDate;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -35,11 +41,26 @@ class BookServiceTest {
     private CheckoutRepository checkoutRepository;
 
     @Mock
-    private HistoryRepository historyRepository;
+    private HistoryOutboxRepository historyOutboxRepository;
 
     @Mock
     private PaymentRepository paymentRepository;
 
+    @Mock
+    private FeeLedgerRepository feeLedgerRepository;
+
+    @Mock
+    private BookCache bookCache;
+
+    @Mock
+    private ShelfSummaryCache shelfSummaryCache;
+
+    @Mock
+    private LoanBatchRepository loanBatchRepository;
+
+    @Mock
+    private ResourceVersions resourceVersions;
+
     @InjectMocks
     private BookService bookService;
 
@@ -52,25 +73,26 @@ class BookServiceTest {
 
         Book book = new Book();
         book.setId(bookId);
-        book.setCopiesAvailable(10);
+        book.setCopiesAvailable(9);
         book.setTitle("Test book");
 
-        Payment payment = new Payment();
-        payment.setUserEmail(userEmail);
-        payment.setAmount(0.00);
-
+        when(checkoutRepository.findCheckoutEligibility(userEmail, List.of(bookId), LocalDate.now()))
+                .thenReturn(eligibility(0, 0, 0.00));
+        when(bookRepository.checkoutCopy(bookId)).thenReturn(1);
         when(bookRepository.findById(bookId)).thenReturn(Optional.of(book));
-        when(checkoutRepository.findByUserEmailAndBookId(userEmail, bookId)).thenReturn(null);
-        when(checkoutRepository.findBooksByUserEmail(userEmail)).thenReturn(Collections.emptyList());
-        when(paymentRepository.findByUserEmail(userEmail)).thenReturn(payment);
 
         Book result = bookService.checkoutBook(userEmail, bookId);
 
         assertNotNull(result);
         assertEquals(9, result.getCopiesAvailable(), "Amount of books available should be decreased by 1, equals 9");
 
-        verify(bookRepository, times(1)).save(any(Book.class));
+        verify(bookRepository, times(1)).checkoutCopy(bookId);
+        verify(bookRepository, never()).save(any());
         verify(checkoutRepository, times(1)).save(any());
+        verify(checkoutRepository, never()).findBooksByUserEmail(any());
+        verifyNoInteractions(paymentRepository);
+        verify(bookCache).evict(bookId);
+        verify(shelfSummaryCache).loanAdded(userEmail, bookId, LocalDate.now().plusDays(7));
     }
 
     @Test
@@ -79,12 +101,15 @@ class BookServiceTest {
         Long bookId = 999L;
         String userEmail = "test@email.com";
 
-        when(bookRepository.findById(bookId)).thenReturn(Optional.empty());
+        when(checkoutRepository.findCheckoutEligibility(eq(userEmail), eq(List.of(bookId)), any()))
+                .thenReturn(eligibility(0, 0, 0.00));
+        when(bookRepository.checkoutCopy(bookId)).thenReturn(0);
 
         Exception exception = assertThrows(Exception.class, () -> bookService.checkoutBook(userEmail, bookId));
 
         assertTrue(exception.getMessage().contains("Book doesn't exist"));
-        verify(checkoutRepository, never()).save(any());
+        verify(bookRepository, never()).findById(any());
+        verifyNoInteractions(bookCache);
     }
 
     @Test
@@ -93,10 +118,9 @@ class BookServiceTest {
         String userEmail = "test@example.com";
         Long bookId = 1L;
 
-        Book book = new Book();
-        book.setCopiesAvailable(0);
-
-        when(bookRepository.findById(bookId)).thenReturn(Optional.of(book));
+        when(checkoutRepository.findCheckoutEligibility(eq(userEmail), eq(List.of(bookId)), any()))
+                .thenReturn(eligibility(0, 0, 0.00));
+        when(bookRepository.checkoutCopy(bookId)).thenReturn(0);
 
         Exception exception = assertThrows(Exception.class, () -> {
             bookService.checkoutBook(userEmail, bookId);
@@ -104,6 +128,8 @@ class BookServiceTest {
 
         assertTrue(exception.getMessage().contains("Book doesn't exist or already checked out"));
         verify(bookRepository, never()).save(any());
+        verify(checkoutRepository, never()).save(any());
+        verifyNoInteractions(bookCache, paymentRepository);
     }
 
     @Test
@@ -112,20 +138,12 @@ class BookServiceTest {
         String userEmail = "test@example.com";
         Long bookId = 1L;
 
-        Book book = new Book();
-        book.setCopiesAvailable(5);
-
-        Payment payment = new Payment();
-        payment.setAmount(10.50);
-
-        when(bookRepository.findById(bookId)).thenReturn(Optional.of(book));
-        when(paymentRepository.findByUserEmail(userEmail)).thenReturn(payment);
-        when(checkoutRepository.findByUserEmailAndBookId(userEmail, bookId)).thenReturn(null);
-        when(checkoutRepository.findBooksByUserEmail(userEmail)).thenReturn(Collections.emptyList());
+        when(checkoutRepository.findCheckoutEligibility(eq(userEmail), eq(List.of(bookId)), any()))
+                .thenReturn(eligibility(0, 0, 10.50));
 
         assertThrows(Exception.class, () -> bookService.checkoutBook(userEmail, bookId));
 
-        verify(bookRepository, never()).save(any());
+        verify(bookRepository, never()).checkoutCopy(any());
         verify(checkoutRepository, never()).save(any());
     }
 
@@ -135,18 +153,12 @@ class BookServiceTest {
         String userEmail = "test@example.com";
         Long bookId = 1L;
 
-        Book book = new Book();
-        book.setId(bookId);
-        book.setCopiesAvailable(5);
-
-        Checkout checkout = new Checkout();
-
-        when(bookRepository.findById(bookId)).thenReturn(Optional.of(book));
-        when(checkoutRepository.findByUserEmailAndBookId(userEmail, bookId)).thenReturn(checkout);
+        when(checkoutRepository.findCheckoutEligibility(eq(userEmail), eq(List.of(bookId)), any()))
+                .thenReturn(eligibility(1, 0, 0.00));
 
         assertThrows(Exception.class, () -> bookService.checkoutBook(userEmail, bookId));
 
-        verify(bookRepository, never()).save(any());
+        verify(bookRepository, never()).checkoutCopy(any());
         verify(checkoutRepository, never()).save(any());
     }
 
@@ -156,32 +168,14 @@ class BookServiceTest {
         String userEmail = "test@example.com";
         Long bookId = 1L;
 
-        Book book = new Book();
-        book.setId(bookId);
-        book.setCopiesAvailable(5);
-
-        Checkout checkoutOne = new Checkout();
-        checkoutOne.setReturnDate(LocalDate.now().plusDays(5).toString());
-
-        Checkout checkoutTwo = new Checkout();
-        checkoutTwo.setReturnDate(LocalDate.now().plusDays(3).toString());
-
-        Checkout overdueCheckout = new Checkout();
-        overdueCheckout.setReturnDate(LocalDate.now().minusDays(2).toString());
-
-        when(bookRepository.findById(bookId)).thenReturn(Optional.of(book));
-        when(checkoutRepository.findBooksByUserEmail(userEmail)).thenReturn(List.of(checkoutOne, checkoutTwo, overdueCheckout));
-
-        Payment payment = new Payment();
-        payment.setAmount(0.00);
-
-        when(paymentRepository.findByUserEmail(userEmail)).thenReturn(payment);
+        when(checkoutRepository.findCheckoutEligibility(eq(userEmail), eq(List.of(bookId)), any()))
+                .thenReturn(eligibility(0, 1, 0.00));
 
         Exception exception = assertThrows(Exception.class, () -> bookService.checkoutBook(userEmail, bookId));
 
         assertEquals("Outstanding fees", exception.getMessage());
 
-        verify(bookRepository, never()).save(any());
+        verify(bookRepository, never()).checkoutCopy(any());
         verify(checkoutRepository, never()).save(any());
     }
 
@@ -193,11 +187,12 @@ class BookServiceTest {
 
         Book book = new Book();
         book.setId(bookId);
-        book.setCopiesAvailable(5);
+        book.setCopiesAvailable(4);
 
+        when(checkoutRepository.findCheckoutEligibility(eq(userEmail), eq(List.of(bookId)), any()))
+                .thenReturn(eligibility(0, 0, null));
+        when(bookRepository.checkoutCopy(bookId)).thenReturn(1);
         when(bookRepository.findById(bookId)).thenReturn(Optional.of(book));
-        when(paymentRepository.findByUserEmail(userEmail)).thenReturn(null);
-        when(checkoutRepository.findBooksByUserEmail(userEmail)).thenReturn(Collections.emptyList());
 
         bookService.checkoutBook(userEmail, bookId);
 
@@ -207,6 +202,117 @@ class BookServiceTest {
 
         verify(checkoutRepository, times(1)).save(any(Checkout.class));
     }
+
+    private static CheckoutEligibility eligibility(long sameBookLoans, long overdueLoans, Double feesOwed) {
+        return new CheckoutEligibility() {
+            @Override
+            public long getSameBookLoans() {
+                return sameBookLoans;
+            }
+
+            @Override
+            public long getOverdueLoans() {
+                return overdueLoans;
+            }
+
+            @Override
+            public Double getFeesOwed() {
+                return feesOwed;
+            }
+        };
+    }
+    //endregion
+
+    //region bulk checkout and return tests
+    @Test
+    @DisplayName("Bulk checkout reports a result for every requested book")
+    void testCheckoutBooks() throws Exception {
+        String userEmail = "test@example.com";
+
+        when(checkoutRepository.findCheckoutEligibility(eq(userEmail), eq(List.of(1L, 2L, 3L)), any()))
+                .thenReturn(eligibility(1, 0, 0.00));
+        when(checkoutRepository.findBookIdsByUserEmailAndBookIdIn(userEmail, List.of(1L, 2L, 3L))).thenReturn(List.of(3L));
+        when(loanBatchRepository.checkoutCopies(List.of(1L, 2L))).thenReturn(new int[] { 1, 0 });
+
+        List<BulkBookResult> results = bookService.checkoutBooks(userEmail, List.of(1L, 2L, 3L, 1L));
+
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess(), "Book without copies should fail");
+        assertFalse(results.get(2).isSuccess(), "Book already on loan should fail");
+
+        verify(checkoutRepository).saveAll(argThat((List<Checkout> checkouts) ->
+                checkouts.size() == 1 && checkouts.getFirst().getBookId().equals(1L)));
+        verify(bookCache).evict(1L);
+        verify(bookCache, never()).evict(2L);
+        verify(shelfSummaryCache).loanAdded(userEmail, 1L, LocalDate.now().plusDays(7));
+        verify(checkoutRepository, never()).findBooksByUserEmail(any());
+        verifyNoInteractions(paymentRepository);
+    }
+
+    @Test
+    @DisplayName("Bulk checkout creates the payment record of a new user")
+    void testCheckoutBooksForNewUser() throws Exception {
+        String userEmail = "test@example.com";
+
+        when(checkoutRepository.findCheckoutEligibility(eq(userEmail), eq(List.of(1L)), any()))
+                .thenReturn(eligibility(0, 0, null));
+        when(loanBatchRepository.checkoutCopies(List.of(1L))).thenReturn(new int[] { 1 });
+
+        bookService.checkoutBooks(userEmail, List.of(1L));
+
+        verify(checkoutRepository, never()).findBookIdsByUserEmailAndBookIdIn(any(), any());
+        verify(paymentRepository).save(argThat(payment -> payment.getUserEmail().equals(userEmail)));
+    }
+
+    @Test
+    @DisplayName("Bulk checkout is rejected as a whole when the user has overdue books")
+    void testCheckoutBooksWithLateBook() {
+        String userEmail = "test@example.com";
+
+        when(checkoutRepository.findCheckoutEligibility(eq(userEmail), eq(List.of(1L, 2L)), any()))
+                .thenReturn(eligibility(0, 1, 0.00));
+
+        Exception exception = assertThrows(Exception.class, () -> bookService.checkoutBooks(userEmail, List.of(1L, 2L)));
+
+        assertEquals("Outstanding fees", exception.getMessage());
+        verifyNoInteractions(loanBatchRepository, paymentRepository);
+    }
+
+    @Test
+    @DisplayName("Bulk checkout rejects empty requests")
+    void testCheckoutBooksWithoutBooks() {
+        assertThrows(Exception.class, () -> bookService.checkoutBooks("test@example.com", List.of()));
+
+        verifyNoInteractions(checkoutRepository, loanBatchRepository);
+    }
+
+    @Test
+    @DisplayName("Bulk return charges late fees once and returns all loaned books")
+    void testReturnBooks() throws Exception {
+        String userEmail = "test@example.com";
+
+        Checkout late = new Checkout(userEmail, LocalDate.now().minusDays(10), LocalDate.now().minusDays(3), 1L);
+        late.setId(11L);
+        Checkout onTime = new Checkout(userEmail, LocalDate.now().minusDays(1), LocalDate.now().plusDays(6), 2L);
+        onTime.setId(12L);
+
+        when(checkoutRepository.findLockedByUserEmailAndBookIdIn(userEmail, List.of(1L, 2L, 5L))).thenReturn(List.of(late, onTime));
+
+        List<BulkBookResult> results = bookService.returnBooks(userEmail, List.of(1L, 2L, 5L));
+
+        assertTrue(results.get(0).isSuccess());
+        assertTrue(results.get(1).isSuccess());
+        assertFalse(results.get(2).isSuccess(), "Book not on loan should fail");
+
+        verify(feeLedgerRepository, times(1)).save(argThat(entry -> entry.getAmountCents() == 300
+                && entry.getType() == FeeLedgerEntry.Type.FEE_ACCRUED));
+        verifyNoInteractions(paymentRepository);
+        verify(checkoutRepository).deleteAllByIdInBatch(List.of(11L, 12L));
+        verify(historyOutboxRepository).saveAll(argThat((List<HistoryOutbox> entries) -> entries.size() == 2));
+        verify(loanBatchRepository).returnCopies(List.of(1L, 2L));
+        verify(shelfSummaryCache).loanRemoved(userEmail, 2L);
+    }
     //endregion
 
     //region checkoutBookByUser tests
@@ -216,9 +322,9 @@ class BookServiceTest {
         String userEmail = "test@example.com";
         Long bookId = 1L;
 
-        when(checkoutRepository.findByUserEmailAndBookId(userEmail, bookId)).thenReturn(new Checkout());
+        when(shelfSummaryCache.get(userEmail)).thenReturn(new ShelfSummary(Map.of(bookId, LocalDate.now())));
         assertTrue(bookService.checkoutBookByUser(userEmail, bookId));
-        verify(checkoutRepository).findByUserEmailAndBookId(userEmail, bookId);
+        verifyNoInteractions(checkoutRepository);
     }
 
     @DisplayName("Should return false when book is not checked out")
@@ -227,9 +333,9 @@ class BookServiceTest {
         String userEmail = "test@example.com";
         Long bookId = 1L;
 
-        when(checkoutRepository.findByUserEmailAndBookId(userEmail, bookId)).thenReturn(null);
+        when(shelfSummaryCache.get(userEmail)).thenReturn(new ShelfSummary(Map.of(2L, LocalDate.now())));
         assertFalse(bookService.checkoutBookByUser(userEmail, bookId));
-        verify(checkoutRepository).findByUserEmailAndBookId(userEmail, bookId);
+        verifyNoInteractions(checkoutRepository);
     }
     //endregion
 
@@ -240,15 +346,12 @@ class BookServiceTest {
     void testCurrentLoansCount() {
         String userEmail = "test@example.com";
 
-        Checkout checkout = new Checkout();
-        checkout.setBookId(1L);
-
-        Checkout checkout2 = new Checkout();
-        checkout2.setBookId(2L);
-
-        when(checkoutRepository.findBooksByUserEmail(userEmail)).thenReturn(List.of(checkout, checkout2));
+        when(shelfSummaryCache.get(userEmail)).thenReturn(new ShelfSummary(Map.of(
+                1L, LocalDate.now(),
+                2L, LocalDate.now().plusDays(3))));
 
         assertEquals(2, bookService.currentLoansCount(userEmail), "Amount of books taken should be equal to 2");
+        verifyNoInteractions(checkoutRepository);
     }
 
     @DisplayName("Should return 0 if no books are taken")
@@ -256,7 +359,7 @@ class BookServiceTest {
     void testCurrentLoansCountWithoutBooksTaken() {
         String userEmail = "test@example.com";
 
-        when(checkoutRepository.findBooksByUserEmail(userEmail)).thenReturn(Collections.emptyList());
+        when(shelfSummaryCache.get(userEmail)).thenReturn(new ShelfSummary(Map.of()));
 
         assertEquals(0, bookService.currentLoansCount(userEmail), "Amount of books taken should be equal to 0");
     }
@@ -267,43 +370,31 @@ class BookServiceTest {
 
     @DisplayName("Should correctly calculate days left for loaned books")
     @Test
-    void shouldReturnLoansWithCorrectCalculatedDays() throws Exception {
+    void shouldReturnLoansWithCorrectCalculatedDays() {
         String userEmail = "test@example.com";
-        String tomorrow = LocalDate.now().plusDays(1).toString();
-
-        Checkout checkout = new Checkout();
-        checkout.setBookId(1L);
-        checkout.setReturnDate(tomorrow);
+        LocalDate tomorrow = LocalDate.now().plusDays(1);
 
-        Book book = new Book();
-        book.setId(1L);
-        book.setTitle("Unit Test");
+        ShelfCurrentLoansResponse loan = new ShelfCurrentLoansResponse(1L, "Unit Test", "Author", "BE", 1, 0, null, tomorrow);
 
-        when(checkoutRepository.findBooksByUserEmail(userEmail)).thenReturn(List.of(checkout));
-        when(bookRepository.findBooksByBookIds(List.of(1L))).thenReturn(List.of(book));
+        when(checkoutRepository.findShelfLoansByUserEmail(userEmail)).thenReturn(List.of(loan));
 
         List<ShelfCurrentLoansResponse> result = bookService.currentLoans(userEmail);
 
         assertEquals(1, result.size());
         assertEquals(1, result.getFirst().getDaysLeft());
         assertEquals("Unit Test", result.getFirst().getBook().getTitle());
+        verifyNoInteractions(bookRepository);
     }
 
     @DisplayName("Should return negative days when loan is overdue")
     @Test
-    void shouldReturnNegativeDaysWhenLoanIsOverdue() throws Exception {
+    void shouldReturnNegativeDaysWhenLoanIsOverdue() {
         String userEmail = "test@example.com";
-        String yesterday = LocalDate.now().minusDays(1).toString();
-
-        Checkout checkout = new Checkout();
-        checkout.setBookId(1L);
-        checkout.setReturnDate(yesterday);
+        LocalDate yesterday = LocalDate.now().minusDays(1);
 
-        Book book = new Book();
-        book.setId(1L);
+        ShelfCurrentLoansResponse loan = new ShelfCurrentLoansResponse(1L, "Unit Test", "Author", "BE", 1, 0, null, yesterday);
 
-        when(checkoutRepository.findBooksByUserEmail(userEmail)).thenReturn(List.of(checkout));
-        when(bookRepository.findBooksByBookIds(List.of(1L))).thenReturn(List.of(book));
+        when(checkoutRepository.findShelfLoansByUserEmail(userEmail)).thenReturn(List.of(loan));
 
         List<ShelfCurrentLoansResponse> result = bookService.currentLoans(userEmail);
 
@@ -312,11 +403,10 @@ class BookServiceTest {
 
     @DisplayName("Should return an empty array when checkout is empty")
     @Test
-    void shouldReturnEmptyArrayWhenCheckoutIsEmpty() throws Exception {
+    void shouldReturnEmptyArrayWhenCheckoutIsEmpty() {
         String userEmail = "test@example.com";
 
-        when(checkoutRepository.findBooksByUserEmail(userEmail)).thenReturn(Collections.emptyList());
-        when(bookRepository.findBooksByBookIds(Collections.emptyList())).thenReturn(Collections.emptyList());
+        when(checkoutRepository.findShelfLoansByUserEmail(userEmail)).thenReturn(Collections.emptyList());
 
         List<ShelfCurrentLoansResponse> result = bookService.currentLoans(userEmail);
 
@@ -334,24 +424,23 @@ class BookServiceTest {
         String userEmail = "test@example.com";
         Long bookId = 1L;
 
-        Book book = new Book();
-        book.setTitle("Test Book");
-        book.setCopiesAvailable(1);
-
         Checkout checkout = new Checkout();
         checkout.setId(2L);
-        checkout.setReturnDate(LocalDate.now().plusDays(1).toString());
+        checkout.setReturnDate(LocalDate.now().plusDays(1));
 
-        when(bookRepository.findById(bookId)).thenReturn(Optional.of(book));
-        when(checkoutRepository.findByUserEmailAndBookId(userEmail, bookId)).thenReturn(checkout);
+        when(checkoutRepository.findLockedByUserEmailAndBookId(userEmail, bookId)).thenReturn(checkout);
+        when(bookRepository.returnCopy(bookId)).thenReturn(1);
 
         assertDoesNotThrow(() -> bookService.returnBook(userEmail, bookId));
-        assertEquals(2, book.getCopiesAvailable());
 
-        verify(bookRepository, times(1)).save(any());
-        verifyNoInteractions(paymentRepository);
+        verify(bookRepository, times(1)).returnCopy(bookId);
+        verify(bookRepository, never()).save(any());
+        verifyNoInteractions(paymentRepository, feeLedgerRepository);
         verify(checkoutRepository, times(1)).deleteById(any());
-        verify(historyRepository, times(1)).save(any());
+        verify(historyOutboxRepository, times(1)).save(argThat(entry ->
+                entry.getBookId().equals(bookId) && entry.getReturnedDate().equals(LocalDate.now())));
+        verify(bookCache).evict(bookId);
+        verify(shelfSummaryCache).loanRemoved(userEmail, bookId);
     }
 
     @DisplayName("Return late book")
@@ -360,58 +449,41 @@ class BookServiceTest {
         String userEmail = "test@example.com";
         Long bookId = 1L;
 
-        Book book = new Book();
-        book.setTitle("Test Book");
-        book.setCopiesAvailable(1);
-
         Checkout checkout = new Checkout();
         checkout.setId(2L);
-        checkout.setReturnDate(LocalDate.now().minusDays(1).toString());
+        checkout.setReturnDate(LocalDate.now().minusDays(1));
 
-        Payment payment = new Payment();
-        payment.setAmount(100.00);
-
-        when(bookRepository.findById(bookId)).thenReturn(Optional.of(book));
-        when(checkoutRepository.findByUserEmailAndBookId(userEmail, bookId)).thenReturn(checkout);
-        when(paymentRepository.findByUserEmail(userEmail)).thenReturn(payment);
+        when(checkoutRepository.findLockedByUserEmailAndBookId(userEmail, bookId)).thenReturn(checkout);
+        when(bookRepository.returnCopy(bookId)).thenReturn(1);
 
         assertDoesNotThrow(() -> bookService.returnBook(userEmail, bookId));
-        assertEquals(2, book.getCopiesAvailable());
-        assertEquals(101.00, payment.getAmount(), 0.001);
 
-        verify(paymentRepository, times(1)).save(payment);
-        verify(bookRepository, times(1)).save(book);
+        verify(feeLedgerRepository, times(1)).save(argThat(entry -> entry.getUserEmail().equals(userEmail)
+                && entry.getAmountCents() == 100 && entry.getType() == FeeLedgerEntry.Type.FEE_ACCRUED));
+        verifyNoInteractions(paymentRepository);
+        verify(bookRepository, times(1)).returnCopy(bookId);
         verify(checkoutRepository, times(1)).deleteById(checkout.getId());
-        verify(historyRepository, times(1)).save(any());
+        verify(historyOutboxRepository, times(1)).save(any());
+        verify(bookCache).evict(bookId);
     }
 
-    @DisplayName("Return late book with no payment exists")
+    @DisplayName("Return late book charges only the days not yet accrued")
     @Test
-    void testReturnLateBookWithoutExistingPayment() {
+    void testReturnLateBookWithAccruedFees() {
         String userEmail = "test@example.com";
         Long bookId = 1L;
 
-        Book book = new Book();
-        book.setTitle("Test Book");
-        book.setCopiesAvailable(1);
-
         Checkout checkout = new Checkout();
         checkout.setId(2L);
-        checkout.setReturnDate(LocalDate.now().minusDays(1).toString());
-
-        when(bookRepository.findById(bookId)).thenReturn(Optional.of(book));
-        when(checkoutRepository.findByUserEmailAndBookId(userEmail, bookId)).thenReturn(checkout);
-        when(paymentRepository.findByUserEmail(userEmail)).thenReturn(null);
+        checkout.setReturnDate(LocalDate.now().minusDays(5));
+        checkout.setFeesAccruedThrough(LocalDate.now().minusDays(2));
 
-        Exception exception = assertThrows(Exception.class, () -> bookService.returnBook(userEmail, bookId));
+        when(checkoutRepository.findLockedByUserEmailAndBookId(userEmail, bookId)).thenReturn(checkout);
+        when(bookRepository.returnCopy(bookId)).thenReturn(1);
 
-        assertTrue(exception.getMessage().contains("Payment doesn't exist"));
-        assertEquals(1, book.getCopiesAvailable());
+        assertDoesNotThrow(() -> bookService.returnBook(userEmail, bookId));
 
-        verify(paymentRepository, never()).save(any());
-        verify(bookRepository, never()).save(book);
-        verify(checkoutRepository, never()).deleteById(checkout.getId());
-        verifyNoInteractions(historyRepository);
+        verify(feeLedgerRepository, times(1)).save(argThat(entry -> entry.getAmountCents() == 200));
     }
 
     @DisplayName("Return book which does not exist")
@@ -420,11 +492,18 @@ class BookServiceTest {
         String userEmail = "test@example.com";
         Long bookId = 1L;
 
-        when(bookRepository.findById(bookId)).thenReturn(Optional.empty());
+        Checkout checkout = new Checkout();
+        checkout.setId(2L);
+        checkout.setReturnDate(LocalDate.now().plusDays(1));
+
+        when(checkoutRepository.findLockedByUserEmailAndBookId(userEmail, bookId)).thenReturn(checkout);
+        when(bookRepository.returnCopy(bookId)).thenReturn(0);
 
         Exception exception = assertThrows(Exception.class, () -> bookService.returnBook(userEmail, bookId));
 
         assertTrue(exception.getMessage().contains("Book doesn't exist or not checked out by user"));
+        verify(checkoutRepository, never()).deleteById(any());
+        verifyNoInteractions(bookCache, shelfSummaryCache, feeLedgerRepository, historyOutboxRepository);
     }
 
     @DisplayName("Return book which is not checked out")
@@ -433,18 +512,13 @@ class BookServiceTest {
         String userEmail = "test@example.com";
         Long bookId = 1L;
 
-        Book book = new Book();
-        book.setCopiesAvailable(1);
-
-        when(bookRepository.findById(bookId)).thenReturn(Optional.of(book));
-        when(checkoutRepository.findByUserEmailAndBookId(userEmail, bookId)).thenReturn(null);
+        when(checkoutRepository.findLockedByUserEmailAndBookId(userEmail, bookId)).thenReturn(null);
 
         Exception exception = assertThrows(Exception.class, () -> bookService.returnBook(userEmail, bookId));
 
-        assertEquals(1, book.getCopiesAvailable());
         assertTrue(exception.getMessage().contains("Book doesn't exist or not checked out by user"));
 
-        verify(bookRepository, never()).save(book);
+        verify(bookRepository, never()).returnCopy(any());
     }
 
     //endregion
@@ -458,14 +532,15 @@ class BookServiceTest {
         Long bookId = 1L;
 
         Checkout checkout = new Checkout();
-        checkout.setReturnDate(LocalDate.now().plusDays(1).toString());
+        checkout.setReturnDate(LocalDate.now().plusDays(1));
 
         when(checkoutRepository.findByUserEmailAndBookId(userEmail, bookId)).thenReturn(checkout);
 
         assertDoesNotThrow(() -> bookService.renewLoan(userEmail, bookId));
-        assertEquals(LocalDate.now().plusDays(7).toString(), checkout.getReturnDate());
+        assertEquals(LocalDate.now().plusDays(7), checkout.getReturnDate());
 
         verify(checkoutRepository, times(1)).save(any());
+        verify(shelfSummaryCache).loanAdded(userEmail, bookId, LocalDate.now().plusDays(7));
     }
 
     @DisplayName("Renew the loan of book which is not checkout")
@@ -489,14 +564,15 @@ class BookServiceTest {
         Long bookId = 1L;
 
         Checkout checkout = new Checkout();
-        checkout.setReturnDate(LocalDate.now().minusDays(1).toString());
+        checkout.setReturnDate(LocalDate.now().minusDays(1));
 
         when(checkoutRepository.findByUserEmailAndBookId(userEmail, bookId)).thenReturn(checkout);
 
         assertDoesNotThrow(() -> bookService.renewLoan(userEmail, bookId));
-        assertEquals(LocalDate.now().minusDays(1).toString(), checkout.getReturnDate());
+        assertEquals(LocalDate.now().minusDays(1), checkout.getReturnDate());
 
         verify(checkoutRepository, never()).save(any());
+        verifyNoInteractions(shelfSummaryCache);
     }
 
     //endregion
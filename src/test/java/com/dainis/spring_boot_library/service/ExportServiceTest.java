@@ -0,0 +1,155 @@
+package com.dainis.spring_boot_library.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class ExportServiceTest {
+
+    @Autowired
+    private ExportService exportService;
+
+    @Autowired
+    private HistoryArchive historyArchive;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    @DisplayName("Payments export as one JSON object per line, with the balance including the ledger tail")
+    void testExportPaymentsAsNdjson() throws Exception {
+        jdbcTemplate.update("insert into fee_ledger (user_email, entry_type, amount_cents, created_at) " +
+                "values ('export-one@example.com', 'FEE_ACCRUED', 400, current_timestamp)");
+        long compactedId = jdbcTemplate.queryForObject("select max(id) from fee_ledger", Long.class);
+        jdbcTemplate.update("insert into fee_ledger (user_email, entry_type, amount_cents, created_at) " +
+                "values ('export-one@example.com', 'FEE_ACCRUED', 100, current_timestamp)");
+        jdbcTemplate.update("insert into payment (id, user_email, balance_cents, compacted_through_id) " +
+                "values (1000001, 'export-one@example.com', 250, ?)", compactedId);
+        jdbcTemplate.update("insert into payment (id, user_email, balance_cents) values (1000002, 'export-two@example.com', 0)");
+
+        List<String> lines = export(ExportService.Dataset.PAYMENTS, DataFormat.NDJSON);
+
+        assertEquals(2, lines.size());
+        JsonNode first = objectMapper.readTree(lines.getFirst());
+        assertEquals("export-one@example.com", first.get("user_email").asText());
+        assertEquals(350, first.get("balance_cents").asLong());
+        assertTrue(first.get("id").isNumber());
+    }
+
+    @Test
+    @DisplayName("Checkouts export as CSV with a header and empty fields for nulls")
+    void testExportCheckoutsAsCsv() throws Exception {
+        jdbcTemplate.update("insert into checkout (id, user_email, checkout_date, return_date, book_id) values (1000001, ?, ?, ?, ?)",
+                "export@example.com", LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 8), 7L);
+
+        List<String> lines = export(ExportService.Dataset.CHECKOUTS, DataFormat.CSV);
+
+        assertEquals("id,user_email,book_id,checkout_date,return_date,fees_accrued_through", lines.getFirst());
+        assertTrue(lines.get(1).endsWith(",export@example.com,7,2024-03-01,2024-03-08,"));
+    }
+
+    @Test
+    @DisplayName("History export includes archived rows and quotes CSV fields")
+    void testExportHistoryIncludesArchive() throws Exception {
+        insertHistory("Old, \"quoted\" title", LocalDate.now().minusYears(3));
+        insertHistory("Recent", LocalDate.now().minusDays(1));
+        historyArchive.archive(LocalDate.now());
+
+        List<String> lines = export(ExportService.Dataset.HISTORY, DataFormat.CSV);
+
+        assertEquals(1, jdbcTemplate.queryForObject("select count(*) from history", Integer.class));
+        assertTrue(lines.stream().anyMatch(line -> line.contains(",Recent,")));
+        assertTrue(lines.stream().anyMatch(line -> line.contains(",\"Old, \"\"quoted\"\" title\",")));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("An archive run started during a history export waits for it, so no row is lost or repeated")
+    void testArchiveWaitsForHistoryExport() throws Exception {
+        jdbcTemplate.update("insert into history (user_email, checkout_date, returned_date, title, author, description, img) " +
+                "values ('export-race@example.com', ?, ?, 'Racing Title', 'Author', 'Description', 'img')",
+                LocalDate.now().minusYears(3).minusDays(7), LocalDate.now().minusYears(3));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?>[] archiving = new Future<?>[1];
+        ByteArrayOutputStream exported = new ByteArrayOutputStream();
+
+        // Rows reach the stream while the export's transaction is still open
+        OutputStream out = new OutputStream() {
+            @Override
+            public void write(int b) {
+                exported.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                if(archiving[0] == null) {
+                    archiving[0] = executor.submit(() -> historyArchive.archive(LocalDate.now()));
+                    assertThrows(TimeoutException.class, () -> archiving[0].get(300, TimeUnit.MILLISECONDS));
+                }
+                exported.write(b, off, len);
+            }
+        };
+
+        try {
+            exportService.export(ExportService.Dataset.HISTORY, DataFormat.CSV, out);
+            archiving[0].get(10, TimeUnit.SECONDS);
+
+            List<String> lines = exported.toString(StandardCharsets.UTF_8).lines().toList();
+            assertEquals(1, lines.stream().filter(line -> line.contains(",Racing Title,")).count());
+            assertEquals(0, jdbcTemplate.queryForObject(
+                    "select count(*) from history where user_email = 'export-race@example.com'", Integer.class));
+        } finally {
+            executor.shutdownNow();
+            List<String> fileNames = jdbcTemplate.queryForList("select file_name from history_segment_user " +
+                    "where user_email = 'export-race@example.com'", String.class);
+            for(HistorySegment segment : historyArchive.segments()) {
+                if(fileNames.contains(segment.path().getFileName().toString())) {
+                    Files.deleteIfExists(segment.path());
+                }
+            }
+            for(String fileName : fileNames) {
+                jdbcTemplate.update("delete from history_segment_user where file_name = ?", fileName);
+                jdbcTemplate.update("delete from history_segment where file_name = ?", fileName);
+            }
+            jdbcTemplate.update("delete from history where user_email = 'export-race@example.com'");
+        }
+    }
+
+    private List<String> export(ExportService.Dataset dataset, DataFormat format) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.export(dataset, format, out);
+        return out.toString(StandardCharsets.UTF_8).lines().toList();
+    }
+
+    private void insertHistory(String title, LocalDate returnedDate) {
+        jdbcTemplate.update("insert into history (user_email, checkout_date, returned_date, title, author, description, img) " +
+                "values ('export@example.com', ?, ?, ?, 'Author', 'Description', 'img')",
+                returnedDate.minusDays(7), returnedDate, title);
+    }
+}
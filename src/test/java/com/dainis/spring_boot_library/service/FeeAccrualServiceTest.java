@@ -0,0 +1,73 @@
+package com.dainis.spring_boot_library.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@TestPropertySource(properties = "library.fees.accrual.chunk-size=2")
+@SpringBootTest
+@Transactional
+class FeeAccrualServiceTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 3, 10);
+
+    @Autowired
+    private FeeAccrualService feeAccrualService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("insert into payment (id, user_email, balance_cents) values (1000001, 'late@example.com', 0)");
+        jdbcTemplate.update("insert into payment (id, user_email, balance_cents) values (1000002, 'ontime@example.com', 0)");
+
+        insertCheckout(1000001L, "late@example.com", 1L, TODAY.minusDays(3));
+        insertCheckout(1000002L, "late@example.com", 2L, TODAY.minusDays(1));
+        insertCheckout(1000003L, "late@example.com", 3L, TODAY.minusDays(2));
+        insertCheckout(1000004L, "ontime@example.com", 1L, TODAY);
+    }
+
+    @Test
+    @DisplayName("Overdue days are charged across chunks and recorded per loan")
+    void testAccruesOverdueFees() {
+        assertEquals(3, feeAccrualService.accrueOverdueFees(TODAY));
+
+        assertEquals(6.00, amount("late@example.com"), 0.001);
+        assertEquals(0.00, amount("ontime@example.com"), 0.001);
+        assertEquals(3, jdbcTemplate.queryForObject(
+                "select count(*) from checkout where fees_accrued_through = ?", Integer.class, TODAY));
+    }
+
+    @Test
+    @DisplayName("Running again the same day charges nothing, the next day charges one more day per loan")
+    void testAccrualIsIncremental() {
+        feeAccrualService.accrueOverdueFees(TODAY);
+
+        assertEquals(0, feeAccrualService.accrueOverdueFees(TODAY));
+        assertEquals(6.00, amount("late@example.com"), 0.001);
+
+        assertEquals(4, feeAccrualService.accrueOverdueFees(TODAY.plusDays(1)));
+        assertEquals(9.00, amount("late@example.com"), 0.001);
+        assertEquals(1.00, amount("ontime@example.com"), 0.001);
+    }
+
+    private void insertCheckout(Long id, String userEmail, Long bookId, LocalDate returnDate) {
+        jdbcTemplate.update("insert into checkout (id, user_email, checkout_date, return_date, book_id) values (?, ?, ?, ?, ?)",
+                id, userEmail, returnDate.minusDays(7), returnDate, bookId);
+    }
+
+    private double amount(String userEmail) {
+        return jdbcTemplate.queryForObject("select coalesce(sum(amount_cents), 0) from fee_ledger where user_email = ?",
+                Long.class, userEmail) / 100.0;
+    }
+}
@@ -0,0 +1,121 @@
+package com.dainis.spring_boot_library.service;
+
+import com.dainis.spring_boot_library.dao.FeeLedgerRepository;
+import com.dainis.spring_boot_library.dao.PaymentRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@TestPropertySource(properties = "library.fees.ledger.compaction-chunk-size=2")
+@SpringBootTest
+@Transactional
+class FeeLedgerCompactorTest {
+
+    @Autowired
+    private FeeLedgerCompactor feeLedgerCompactor;
+
+    @Autowired
+    private FeeLedgerRepository feeLedgerRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("insert into payment (id, user_email, balance_cents) values (1000001, 'late@example.com', 150)");
+        jdbcTemplate.update("insert into payment (id, user_email, balance_cents) values (1000002, 'paid@example.com', 0)");
+
+        insertEntry("late@example.com", "FEE_ACCRUED", 300);
+        insertEntry("paid@example.com", "FEE_ACCRUED", 200);
+        insertEntry("late@example.com", "FEE_ACCRUED", 100);
+        insertEntry("paid@example.com", "PAYMENT_RECEIVED", -200);
+        insertEntry("nopayment@example.com", "FEE_ACCRUED", 100);
+    }
+
+    @Test
+    @DisplayName("Balances are the snapshot plus the ledger tail")
+    void testBalance() {
+        assertEquals(550L, feeLedgerRepository.findBalanceCents("late@example.com"));
+        assertEquals(0L, feeLedgerRepository.findBalanceCents("paid@example.com"));
+        assertNull(feeLedgerRepository.findBalanceCents("nopayment@example.com"));
+
+        assertEquals(5.50, paymentRepository.findByUserEmail("late@example.com").getAmount(), 0.001);
+    }
+
+    @Test
+    @DisplayName("Compaction folds entries into the snapshots across chunks, keeps them, and leaves balances alone")
+    void testCompact() {
+        assertEquals(4, feeLedgerCompactor.compact());
+
+        assertEquals(550L, snapshot("late@example.com"));
+        assertEquals(0L, snapshot("paid@example.com"));
+        assertEquals(550L, feeLedgerRepository.findBalanceCents("late@example.com"));
+        assertEquals(0L, feeLedgerRepository.findBalanceCents("paid@example.com"));
+
+        // The ledger keeps every entry; only the watermarks moved
+        assertEquals(5, jdbcTemplate.queryForObject("select count(*) from fee_ledger", Integer.class));
+        assertEquals(0, feeLedgerCompactor.compact());
+
+        entityManager.clear();
+        assertEquals(5.50, paymentRepository.findByUserEmail("late@example.com").getAmount(), 0.001);
+    }
+
+    @Test
+    @DisplayName("Compaction stops at the first entry younger than the delay")
+    void testCompactStopsAtYoungEntries() {
+        insertEntry("late@example.com", "FEE_ACCRUED", 50, LocalDateTime.now());
+        insertEntry("late@example.com", "FEE_ACCRUED", 25, LocalDateTime.now().minusHours(1));
+
+        assertEquals(4, feeLedgerCompactor.compact());
+
+        assertEquals(550L, snapshot("late@example.com"));
+        assertEquals(625L, feeLedgerRepository.findBalanceCents("late@example.com"));
+    }
+
+    @Test
+    @DisplayName("A run starts above the entries the last run got past")
+    void testCompactStartsAtWatermark() {
+        assertEquals(4, feeLedgerCompactor.compact());
+        long lastId = jdbcTemplate.queryForObject("select max(id) from fee_ledger", Long.class);
+        assertEquals(lastId, jdbcTemplate.queryForObject("select compacted_through_id from fee_ledger_watermark " +
+                "where job_name = ?", Long.class, FeeLedgerCompactor.JOB_NAME));
+
+        // Were the next run to read from the start, it would fold the old entries again into this reset snapshot
+        jdbcTemplate.update("update payment set compacted_through_id = 0 where user_email = 'late@example.com'");
+        insertEntry("paid@example.com", "FEE_ACCRUED", 75);
+
+        assertEquals(1, feeLedgerCompactor.compact());
+        assertEquals(550L, snapshot("late@example.com"));
+        assertEquals(75L, snapshot("paid@example.com"));
+    }
+
+    private void insertEntry(String userEmail, String type, long amountCents) {
+        insertEntry(userEmail, type, amountCents, LocalDateTime.now().minusHours(1));
+    }
+
+    private void insertEntry(String userEmail, String type, long amountCents, LocalDateTime createdAt) {
+        jdbcTemplate.update("insert into fee_ledger (user_email, entry_type, amount_cents, created_at) values (?, ?, ?, ?)",
+                userEmail, type, amountCents, createdAt);
+    }
+
+    private long snapshot(String userEmail) {
+        return jdbcTemplate.queryForObject("select balance_cents from payment where user_email = ?", Long.class, userEmail);
+    }
+}
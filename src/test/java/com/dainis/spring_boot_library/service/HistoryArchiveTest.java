@@ -0,0 +1,262 @@
+package com.dainis.spring_boot_library.service;
+
+import com.dainis.spring_boot_library.dao.HistoryRepository;
+import com.dainis.spring_boot_library.entity.History;
+import com.dainis.spring_boot_library.responsemodels.CursorPageResponse;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@TestPropertySource(properties = "library.history.archive.segment-size=2")
+@AutoConfigureMockMvc
+@SpringBootTest
+@Transactional
+class HistoryArchiveTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 3, 10);
+
+    @Autowired
+    private HistoryArchive historyArchive;
+
+    @Autowired
+    private HistoryService historyService;
+
+    @Autowired
+    private HistoryRepository historyRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    @DisplayName("Old rows move into segments and leave the history table")
+    void testArchiveMovesOldRows() throws Exception {
+        String userEmail = "archive@example.com";
+        insertHistory(userEmail, "Old One", TODAY.minusYears(3));
+        insertHistory(userEmail, "Old Two", TODAY.minusYears(2));
+        insertHistory(userEmail, "Old Three", TODAY.minusYears(2));
+        insertHistory(userEmail, "Recent", TODAY.minusDays(5));
+
+        assertEquals(3, historyArchive.archive(TODAY));
+        assertEquals(0, historyArchive.archive(TODAY));
+
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "select count(*) from history where user_email = ?", Integer.class, userEmail));
+        assertEquals(3, historyArchive.findByUserEmailAndIdGreaterThan(userEmail, 0L, 10).size());
+    }
+
+    @Test
+    @DisplayName("Cursor paging runs from archived rows into the history table")
+    void testHistoryPagesAcrossArchive() throws Exception {
+        String userEmail = "paging@example.com";
+        insertHistory(userEmail, "Old One", TODAY.minusYears(3));
+        insertHistory(userEmail, "Old Two", TODAY.minusYears(2));
+        insertHistory(userEmail, "Recent One", TODAY.minusDays(5));
+        insertHistory(userEmail, "Recent Two", TODAY.minusDays(1));
+
+        historyArchive.archive(TODAY);
+
+        CursorPageResponse<History> first = historyService.historyByUser(userEmail, null, 3);
+        assertEquals(3, first.getContent().size());
+        assertEquals("Old One", first.getContent().getFirst().getTitle());
+        assertEquals("Recent One", first.getContent().getLast().getTitle());
+        assertTrue(first.isHasNext());
+
+        CursorPageResponse<History> second = historyService.historyByUser(userEmail, first.getNextCursor(), 3);
+        assertEquals(1, second.getContent().size());
+        assertEquals("Recent Two", second.getContent().getFirst().getTitle());
+        assertFalse(second.isHasNext());
+    }
+
+    @Test
+    @DisplayName("Another instance sharing the directory reads segments archived by this one")
+    void testSegmentsAreSeenByOtherInstances() throws Exception {
+        String userEmail = "shared@example.com";
+        insertHistory(userEmail, "Old One", TODAY.minusYears(3));
+        insertHistory(userEmail, "Old Two", TODAY.minusYears(2));
+
+        historyArchive.archive(TODAY);
+        Path directory = historyArchive.segments().getFirst().path().getParent();
+
+        HistoryArchive otherInstance = new HistoryArchive(jdbcTemplate, transactionManager, directory,
+                Period.ofDays(365), 2);
+
+        assertEquals(2, otherInstance.findByUserEmailAndIdGreaterThan(userEmail, 0L, 10).size());
+    }
+
+    @Test
+    @DisplayName("Segments holding only ids before the cursor are not opened")
+    void testPagesSkipSegmentsBeforeCursor() throws Exception {
+        String userEmail = "skip@example.com";
+        insertHistory(userEmail, "Old One", TODAY.minusYears(3));
+        insertHistory(userEmail, "Old Two", TODAY.minusYears(3));
+        insertHistory(userEmail, "Old Three", TODAY.minusYears(2));
+
+        assertEquals(3, historyArchive.archive(TODAY));
+
+        List<History> archived = historyArchive.findByUserEmailAndIdGreaterThan(userEmail, 0L, 10);
+        long firstSegmentMaxId = archived.get(1).getId();
+        Path directory = historyArchive.segments().getFirst().path().getParent();
+        Files.delete(directory.resolve(String.format("history-%019d.seg", firstSegmentMaxId)));
+
+        HistoryArchive otherInstance = new HistoryArchive(jdbcTemplate, transactionManager, directory,
+                Period.ofDays(365), 2);
+
+        List<History> page = otherInstance.findByUserEmailAndIdGreaterThan(userEmail, firstSegmentMaxId, 10);
+        assertEquals(1, page.size());
+        assertEquals("Old Three", page.getFirst().getTitle());
+
+        assertThrows(IOException.class, () -> otherInstance.findByUserEmailAndIdGreaterThan(userEmail, 0L, 10));
+    }
+
+    @Test
+    @DisplayName("The paged finder merges archived rows with the table by id")
+    void testPagedFinderIncludesArchivedRows() throws Exception {
+        String userEmail = "finder@example.com";
+        // Returned recently but inserted first, so its id is below the archived rows
+        insertHistory(userEmail, "Long Loan", TODAY.minusDays(2));
+        insertHistory(userEmail, "Old One", TODAY.minusYears(3));
+        insertHistory(userEmail, "Old Two", TODAY.minusYears(2));
+        insertHistory(userEmail, "Recent One", TODAY.minusDays(5));
+        insertHistory(userEmail, "Recent Two", TODAY.minusDays(1));
+
+        assertEquals(2, historyArchive.archive(TODAY));
+
+        Page<History> first = historyService.historyPageByUser(userEmail, PageRequest.of(0, 2));
+        assertEquals(5, first.getTotalElements());
+        assertEquals(List.of("Long Loan", "Old One"), titles(first));
+
+        Page<History> second = historyService.historyPageByUser(userEmail, PageRequest.of(1, 2));
+        assertEquals(List.of("Old Two", "Recent One"), titles(second));
+
+        Page<History> third = historyService.historyPageByUser(userEmail, PageRequest.of(2, 2));
+        assertEquals(List.of("Recent Two"), titles(third));
+        assertTrue(third.isLast());
+
+        mockMvc.perform(get("/api/histories/search/findBooksByUserEmail")
+                        .param("email", userEmail)
+                        .param("page", "1")
+                        .param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$._embedded.histories[0].title").value("Old Two"))
+                .andExpect(jsonPath("$._embedded.histories[1].title").value("Recent One"))
+                .andExpect(jsonPath("$.page.totalElements").value(5))
+                .andExpect(jsonPath("$.page.totalPages").value(3));
+    }
+
+    @Test
+    @DisplayName("A user's lookup opens only the segments that hold the user")
+    void testLookupSkipsSegmentsWithoutUser() throws Exception {
+        insertHistory("first@example.com", "First One", TODAY.minusYears(3));
+        insertHistory("first@example.com", "First Two", TODAY.minusYears(3));
+        insertHistory("second@example.com", "Second One", TODAY.minusYears(2));
+        insertHistory("second@example.com", "Second Two", TODAY.minusYears(2));
+
+        assertEquals(4, historyArchive.archive(TODAY));
+
+        HistorySegment firstSegment = historyArchive.segments().getFirst();
+        assertEquals(Set.of("first@example.com"), firstSegment.userEmails());
+        Path directory = firstSegment.path().getParent();
+        Files.delete(firstSegment.path());
+
+        HistoryArchive otherInstance = new HistoryArchive(jdbcTemplate, transactionManager, directory,
+                Period.ofDays(365), 2);
+
+        assertEquals(2, otherInstance.findByUserEmailAndIdGreaterThan("second@example.com", 0L, 10).size());
+        assertTrue(otherInstance.findByUserEmailAndIdGreaterThan("nobody@example.com", 0L, 10).isEmpty());
+        assertThrows(IOException.class,
+                () -> otherInstance.findByUserEmailAndIdGreaterThan("first@example.com", 0L, 10));
+    }
+
+    @Test
+    @DisplayName("A page opens only the archived ranges that reach it")
+    void testPageReadsOnlyRangesItReaches() throws Exception {
+        String userEmail = "window@example.com";
+        insertHistory(userEmail, "Old One", TODAY.minusYears(3));
+        insertHistory(userEmail, "Old Two", TODAY.minusYears(3));
+        insertHistory(userEmail, "Old Three", TODAY.minusYears(2));
+        insertHistory(userEmail, "Old Four", TODAY.minusYears(2));
+        insertHistory(userEmail, "Recent One", TODAY.minusDays(5));
+        insertHistory(userEmail, "Recent Two", TODAY.minusDays(1));
+
+        assertEquals(4, historyArchive.archive(TODAY));
+
+        List<HistoryArchive.ArchivedRange> ranges = historyArchive.rangesByUserEmail(userEmail);
+        assertEquals(2, ranges.size());
+        assertEquals(2, ranges.getFirst().rows());
+
+        // Pages past the oldest rows never need the first segment
+        Path directory = historyArchive.segments().getFirst().path().getParent();
+        Files.delete(directory.resolve(ranges.getFirst().fileNames().getFirst()));
+        HistoryService otherInstance = new HistoryService(historyRepository, new HistoryArchive(jdbcTemplate,
+                transactionManager, directory, Period.ofDays(365), 2));
+
+        Page<History> second = otherInstance.historyPageByUser(userEmail, PageRequest.of(1, 2));
+        assertEquals(List.of("Old Three", "Old Four"), titles(second));
+        assertEquals(6, second.getTotalElements());
+
+        Page<History> third = otherInstance.historyPageByUser(userEmail, PageRequest.of(2, 2));
+        assertEquals(List.of("Recent One", "Recent Two"), titles(third));
+
+        assertThrows(IOException.class, () -> otherInstance.historyPageByUser(userEmail, PageRequest.of(0, 2)));
+    }
+
+    @Test
+    @DisplayName("A row archived after later ids joins the range it falls inside")
+    void testLateArchivedRowJoinsRange() throws Exception {
+        String userEmail = "late@example.com";
+        insertHistory(userEmail, "Old One", TODAY.minusYears(3));
+        insertHistory(userEmail, "Long Loan", TODAY.minusDays(300));
+        insertHistory(userEmail, "Old Two", TODAY.minusYears(3));
+        insertHistory(userEmail, "Recent", TODAY.minusDays(1));
+
+        assertEquals(2, historyArchive.archive(TODAY));
+        assertEquals(1, historyArchive.archive(TODAY.plusDays(100)));
+
+        List<HistoryArchive.ArchivedRange> ranges = historyArchive.rangesByUserEmail(userEmail);
+        assertEquals(1, ranges.size());
+        assertEquals(3, ranges.getFirst().rows());
+        assertEquals(2, ranges.getFirst().fileNames().size());
+
+        assertEquals(List.of("Old One", "Long Loan"),
+                titles(historyService.historyPageByUser(userEmail, PageRequest.of(0, 2))));
+        assertEquals(List.of("Old Two", "Recent"),
+                titles(historyService.historyPageByUser(userEmail, PageRequest.of(1, 2))));
+    }
+
+    private static List<String> titles(Page<History> page) {
+        return page.getContent().stream().map(History::getTitle).toList();
+    }
+
+    private void insertHistory(String userEmail, String title, LocalDate returnedDate) {
+        jdbcTemplate.update("insert into history (user_email, checkout_date, returned_date, title, author, description, img) " +
+                "values (?, ?, ?, ?, 'Author', 'Description', 'img')", userEmail, returnedDate.minusDays(7), returnedDate, title);
+    }
+}
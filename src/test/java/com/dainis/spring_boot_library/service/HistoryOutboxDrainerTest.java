@@ -0,0 +1,102 @@
+package com.dainis.spring_boot_library.service;
+
+import com.dainis.spring_boot_library.dao.CheckoutRepository;
+import com.dainis.spring_boot_library.dao.DailyBorrowCount;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@TestPropertySource(properties = "library.history.outbox.batch-size=2")
+@SpringBootTest
+@Transactional
+class HistoryOutboxDrainerTest {
+
+    @Autowired
+    private HistoryOutboxDrainer historyOutboxDrainer;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CheckoutRepository checkoutRepository;
+
+    private Long firstBookId;
+
+    private Long secondBookId;
+
+    @BeforeEach
+    void setUp() {
+        firstBookId = insertBook(1000001L, "First Book");
+        secondBookId = insertBook(1000002L, "Second Book");
+
+        insertOutbox(1000001L, "one@example.com", firstBookId);
+        insertOutbox(1000002L, "two@example.com", firstBookId);
+        insertOutbox(1000003L, "three@example.com", secondBookId);
+    }
+
+    @Test
+    @DisplayName("Drain copies every outbox row into history with the book details, across batches")
+    void testDrain() {
+        assertEquals(3, historyOutboxDrainer.drain());
+
+        assertEquals(List.of("First Book", "First Book", "Second Book"),
+                jdbcTemplate.queryForList("select title from history order by title", String.class));
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from history_outbox", Integer.class));
+        assertEquals(0, historyOutboxDrainer.drain());
+    }
+
+    @Test
+    @DisplayName("Draining one book leaves other books in the outbox")
+    void testDrainBook() {
+        historyOutboxDrainer.drainBook(secondBookId);
+
+        assertEquals(List.of("Second Book"), jdbcTemplate.queryForList("select title from history", String.class));
+        assertEquals(2, jdbcTemplate.queryForObject("select count(*) from history_outbox", Integer.class));
+    }
+
+    @Test
+    @DisplayName("Returned loans still count as this week's borrows, before and after the outbox is drained")
+    void testReturnedLoansCountAsBorrows() {
+        jdbcTemplate.update("insert into checkout (id, user_email, checkout_date, return_date, book_id) values (?, ?, ?, ?, ?)",
+                1000001L, "four@example.com", LocalDate.now().minusDays(3), LocalDate.now().plusDays(4), secondBookId);
+
+        assertEquals(Map.of(firstBookId, 2L, secondBookId, 2L), borrowsThisWeek());
+
+        historyOutboxDrainer.drain();
+
+        assertEquals(List.of(firstBookId, firstBookId, secondBookId),
+                jdbcTemplate.queryForList("select book_id from history order by book_id", Long.class));
+        assertEquals(Map.of(firstBookId, 2L, secondBookId, 2L), borrowsThisWeek());
+    }
+
+    private Map<Long, Long> borrowsThisWeek() {
+        Map<Long, Long> borrows = new HashMap<>();
+        for(DailyBorrowCount count : checkoutRepository.countBorrowsSince(LocalDate.now().minusDays(7))) {
+            borrows.merge(count.getBookId(), count.getBorrows(), Long::sum);
+        }
+        return borrows;
+    }
+
+    private Long insertBook(Long id, String title) {
+        jdbcTemplate.update("insert into book (id, title, author, description, copies, copies_available, category, img, version) " +
+                "values (?, ?, 'Author', 'Description', 1, 1, 'BE', 'img', 0)", id, title);
+        return id;
+    }
+
+    private void insertOutbox(Long id, String userEmail, Long bookId) {
+        jdbcTemplate.update("insert into history_outbox (id, user_email, book_id, checkout_date, returned_date) values (?, ?, ?, ?, ?)",
+                id, userEmail, bookId, LocalDate.now().minusDays(3), LocalDate.now());
+    }
+}
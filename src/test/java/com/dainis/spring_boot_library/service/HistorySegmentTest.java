@@ -0,0 +1,58 @@
+package com.dainis.spring_boot_library.service;
+
+import com.dainis.spring_boot_library.entity.History;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistorySegmentTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testWriteThenReadPerUser() throws IOException {
+        Path path = directory.resolve("history-1.seg");
+
+        HistorySegment.write(path, List.of(
+                history(3L, "one@example.com", "Third"),
+                history(1L, "one@example.com", "First"),
+                history(2L, "two@example.com", "Second")));
+
+        HistorySegment segment = HistorySegment.open(path);
+
+        List<History> histories = segment.findByUserEmailAndIdGreaterThan("one@example.com", 0L);
+        assertEquals(List.of(1L, 3L), histories.stream().map(History::getId).toList());
+        assertEquals("First", histories.getFirst().getTitle());
+        assertEquals(LocalDate.of(2020, 1, 1), histories.getFirst().getCheckoutDate());
+        assertEquals("one@example.com", histories.getFirst().getUserEmail());
+        assertNull(histories.getFirst().getImg());
+
+        assertEquals(List.of(3L), segment.findByUserEmailAndIdGreaterThan("one@example.com", 1L)
+                .stream().map(History::getId).toList());
+        assertTrue(segment.findByUserEmailAndIdGreaterThan("one@example.com", 3L).isEmpty());
+        assertTrue(segment.findByUserEmailAndIdGreaterThan("nobody@example.com", 0L).isEmpty());
+        assertFalse(Files.exists(directory.resolve("history-1.seg.tmp")));
+    }
+
+    @Test
+    void testOpenRejectsOtherFiles() throws IOException {
+        Path path = Files.writeString(directory.resolve("history-2.seg"), "not a segment");
+
+        assertThrows(IOException.class, () -> HistorySegment.open(path));
+    }
+
+    private History history(Long id, String userEmail, String title) {
+        History history = new History(userEmail, LocalDate.of(2020, 1, 1), LocalDate.of(2020, 1, 8),
+                title, "Author", "Description", null);
+        history.setId(id);
+        return history;
+    }
+}
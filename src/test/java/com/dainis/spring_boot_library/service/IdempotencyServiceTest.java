@@ -0,0 +1,219 @@
+package com.dainis.spring_boot_library.service;
+
+import com.dainis.spring_boot_library.config.CacheConfiguration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class IdempotencyServiceTest {
+
+    private static final String USER = "test@example.com";
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private AtomicInteger calls = new AtomicInteger();
+
+    private Supplier<CompletableFuture<String>> action = () ->
+            CompletableFuture.completedFuture("response " + calls.incrementAndGet());
+
+    @BeforeEach
+    void setUp() {
+        cacheManager.getCache(CacheConfiguration.IDEMPOTENCY).clear();
+    }
+
+    private String execute(String userEmail, String key, String requestHash,
+                           Supplier<CompletableFuture<String>> action) throws Exception {
+        return idempotencyService.execute("payment-intent", userEmail, key, requestHash, action).get();
+    }
+
+    private static String failure(CompletableFuture<String> future) {
+        return assertThrows(ExecutionException.class, future::get).getCause().getMessage();
+    }
+
+    @Test
+    @DisplayName("A repeated key returns the stored response without running the action again")
+    void testReplay() throws Exception {
+        assertEquals("response 1", execute(USER, "key-1", "a", action));
+        assertEquals("response 1", execute(USER, "key-1", "a", action));
+
+        // From the table once the cache has lost it
+        cacheManager.getCache(CacheConfiguration.IDEMPOTENCY).clear();
+        assertEquals("response 1", execute(USER, "key-1", "a", action));
+
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    @DisplayName("Without a key, or with another user's key, the action runs")
+    void testScope() throws Exception {
+        assertEquals("response 1", execute(USER, null, "a", action));
+        assertEquals("response 2", execute(USER, null, "a", action));
+
+        assertEquals("response 3", execute(USER, "key-1", "a", action));
+        assertEquals("response 4", execute("other@example.com", "key-1", "a", action));
+    }
+
+    @Test
+    @DisplayName("Reusing a key for a different request fails")
+    void testDifferentRequest() throws Exception {
+        execute(USER, "key-1", "a", action);
+
+        assertEquals("Idempotency-Key was already used for a different request",
+                failure(idempotencyService.execute("payment-intent", USER, "key-1", "b", action)));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    @DisplayName("A failed request releases the key so it can be retried")
+    void testFailureReleasesKey() throws Exception {
+        assertEquals("Stripe down", failure(idempotencyService.execute("payment-intent", USER, "key-1", "a",
+                () -> CompletableFuture.failedFuture(new Exception("Stripe down")))));
+
+        assertEquals("response 1", execute(USER, "key-1", "a", action));
+    }
+
+    @Test
+    @DisplayName("A duplicate of a request still in progress fails instead of running twice")
+    void testInProgress() throws Exception {
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CompletableFuture<String> response = idempotencyService.execute("payment-intent", USER, "key-1", "a",
+                () -> first);
+
+        assertEquals("A request with this Idempotency-Key is still in progress",
+                failure(idempotencyService.execute("payment-intent", USER, "key-1", "a", action)));
+
+        first.complete("first response");
+        assertEquals("first response", response.get());
+        assertEquals("first response", execute(USER, "key-1", "a", action));
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    @DisplayName("A claim left behind by an unfinished request is taken over after the claim timeout")
+    void testAbandonedClaim() throws Exception {
+        idempotencyService.execute("payment-intent", USER, "key-1", "a", CompletableFuture::new);
+        jdbcTemplate.update("update idempotency_record set created_at = ?", LocalDateTime.now().minusDays(1));
+
+        assertEquals("response 1", execute(USER, "key-1", "a", action));
+    }
+
+    @Test
+    @DisplayName("Records older than the retention period are removed")
+    void testRemoveExpired() throws Exception {
+        execute(USER, "key-1", "a", action);
+        execute(USER, "key-2", "a", action);
+        jdbcTemplate.update("update idempotency_record set created_at = ? where key_hash = ?",
+                LocalDateTime.now().minusDays(2), IdempotencyService.hash("payment-intent", USER, "key-1"));
+
+        idempotencyService.removeExpired();
+
+        assertEquals(1, jdbcTemplate.queryForObject("select count(*) from idempotency_record", Integer.class));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("A transactional action commits together with its stored response")
+    void testTransactionalActionStoresResponseWithItsWrites() throws Exception {
+        try {
+            assertEquals("settled", idempotencyService.executeInTransaction("payment-complete", USER, "key-tx",
+                    "a", () -> settle("settled")).get());
+            assertEquals("settled", idempotencyService.executeInTransaction("payment-complete", USER, "key-tx",
+                    "a", () -> settle("again")).get());
+
+            assertEquals(1, settlements());
+            assertEquals(Boolean.TRUE, jdbcTemplate.queryForObject(
+                    "select completed from idempotency_record where key_hash = ?", Boolean.class, txKeyHash()));
+        } finally {
+            cleanUpTransactional();
+        }
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("A transactional action whose response cannot be stored is rolled back")
+    void testTransactionalActionRollsBackWithoutStoredResponse() throws Exception {
+        try {
+            assertEquals("A request with this Idempotency-Key is still in progress",
+                    failure(idempotencyService.executeInTransaction("payment-complete", USER, "key-tx", "a", () -> {
+                        String body = settle("settled");
+                        // As if the claim had been completed by a request that took it over
+                        jdbcTemplate.update("update idempotency_record set completed = true where key_hash = ?",
+                                txKeyHash());
+                        return body;
+                    })));
+
+            assertEquals(0, settlements());
+        } finally {
+            cleanUpTransactional();
+        }
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("A failed transactional action leaves no writes and releases the key")
+    void testTransactionalActionFailureReleasesKey() throws Exception {
+        try {
+            assertEquals("Payment information is missing",
+                    failure(idempotencyService.executeInTransaction("payment-complete", USER, "key-tx", "a", () -> {
+                        settle("settled");
+                        throw new Exception("Payment information is missing");
+                    })));
+
+            assertEquals(0, settlements());
+            assertEquals(0, jdbcTemplate.queryForObject(
+                    "select count(*) from idempotency_record where key_hash = ?", Integer.class, txKeyHash()));
+        } finally {
+            cleanUpTransactional();
+        }
+    }
+
+    // A write standing in for the payment ledger entry
+    private String settle(String body) {
+        jdbcTemplate.update("insert into job_lock (job_name) values (?)", "idempotency-" + calls.incrementAndGet());
+        return body;
+    }
+
+    private int settlements() {
+        return jdbcTemplate.queryForObject("select count(*) from job_lock where job_name like 'idempotency-%'",
+                Integer.class);
+    }
+
+    private static String txKeyHash() {
+        return IdempotencyService.hash("payment-complete", USER, "key-tx");
+    }
+
+    private void cleanUpTransactional() {
+        jdbcTemplate.update("delete from job_lock where job_name like 'idempotency-%'");
+        jdbcTemplate.update("delete from idempotency_record where key_hash = ?", txKeyHash());
+    }
+
+    @Test
+    @DisplayName("Overlong keys are refused")
+    void testKeyLength() {
+        assertEquals("Idempotency-Key must be 1 to 255 characters", failure(idempotencyService.execute(
+                "payment-intent", USER, "k".repeat(256), "a", action)));
+    }
+}
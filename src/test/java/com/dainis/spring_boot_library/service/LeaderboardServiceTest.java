@@ -0,0 +1,164 @@
+package com.dainis.spring_boot_library.service;
+
+import com.dainis.spring_boot_library.dao.BookRepository;
+import com.dainis.spring_boot_library.dao.CheckoutRepository;
+import com.dainis.spring_boot_library.dao.DailyBorrowCount;
+import com.dainis.spring_boot_library.responsemodels.BookSummary;
+import com.dainis.spring_boot_library.responsemodels.LeaderboardResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LeaderboardServiceTest {
+
+    private static final Instant NOW = Instant.parse("2024-03-10T12:30:00Z");
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private CheckoutRepository checkoutRepository;
+
+    private MutableClock clock;
+
+    private LeaderboardService leaderboardService;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(NOW);
+        leaderboardService = new LeaderboardService(bookRepository, checkoutRepository, 2, 3, clock);
+    }
+
+    @Test
+    @DisplayName("Top-K keeps only the largest counts, largest first")
+    void testTopK() {
+        assertEquals(List.of(3L, 1L), LeaderboardService.topK(Map.of(1L, 5L, 2L, 2L, 3L, 9L, 4L, 1L), 2));
+        assertEquals(List.of(2L), LeaderboardService.topK(Map.of(2L, 1L), 5));
+    }
+
+    @Test
+    @DisplayName("Published snapshot ranks books borrowed in the last week")
+    void testRefreshPublishesMostBorrowed() {
+        stubBookSummaries();
+        LocalDate today = LocalDate.ofInstant(NOW, ZoneOffset.UTC);
+        when(checkoutRepository.countBorrowsSince(any())).thenReturn(List.of(
+                borrows(1L, today.minusDays(2), 1),
+                borrows(2L, today.minusDays(2), 2),
+                borrows(3L, today, 2),
+                borrows(3L, today.minusDays(1), 1)));
+
+        assertTrue(leaderboardService.leaderboard().getMostBorrowed().isEmpty(), "Nothing is published before a refresh");
+
+        leaderboardService.refresh();
+
+        LeaderboardResponse leaderboard = leaderboardService.leaderboard();
+        assertEquals(List.of(3L, 2L), leaderboard.getMostBorrowed().stream().map(BookSummary::getId).toList());
+        verify(bookRepository).findTopRated(eq(3L), any());
+    }
+
+    @Test
+    @DisplayName("The window is today and the six days before it")
+    void testWindowIsSevenDays() {
+        when(checkoutRepository.countBorrowsSince(any())).thenReturn(List.of());
+
+        leaderboardService.refresh();
+        verify(checkoutRepository).countBorrowsSince(LocalDate.of(2024, 3, 4));
+
+        clock.advance(Duration.ofDays(1));
+        leaderboardService.refresh();
+        verify(checkoutRepository).countBorrowsSince(LocalDate.of(2024, 3, 5));
+    }
+
+    @Test
+    @DisplayName("Instances sharing a database publish the same list")
+    void testInstancesAgree() {
+        stubBookSummaries();
+        when(checkoutRepository.countBorrowsSince(any())).thenReturn(List.of(
+                borrows(1L, LocalDate.of(2024, 3, 9), 1),
+                borrows(2L, LocalDate.of(2024, 3, 10), 3)));
+
+        LeaderboardService otherInstance = new LeaderboardService(bookRepository, checkoutRepository, 2, 3, clock);
+
+        leaderboardService.refresh();
+        otherInstance.refresh();
+
+        assertEquals(List.of(2L, 1L), leaderboardService.leaderboard().getMostBorrowed().stream()
+                .map(BookSummary::getId).toList());
+        assertEquals(leaderboardService.leaderboard().getMostBorrowed(), otherInstance.leaderboard().getMostBorrowed());
+    }
+
+    private static DailyBorrowCount borrows(Long bookId, LocalDate checkoutDate, long borrows) {
+        return new DailyBorrowCount() {
+            @Override
+            public Long getBookId() {
+                return bookId;
+            }
+
+            @Override
+            public LocalDate getCheckoutDate() {
+                return checkoutDate;
+            }
+
+            @Override
+            public long getBorrows() {
+                return borrows;
+            }
+        };
+    }
+
+    private void stubBookSummaries() {
+        when(bookRepository.findSummariesByBookIds(anyList())).thenAnswer(invocation -> {
+            List<Long> bookIds = invocation.getArgument(0);
+            List<BookSummary> books = new ArrayList<>();
+            for(Long bookId : bookIds) {
+                books.add(new BookSummary(bookId, "Book " + bookId, "Author", "BE", 1, 1, null));
+            }
+            return books;
+        });
+    }
+
+    private static class MutableClock extends Clock {
+
+        private Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -3,12 +3,18 @@ package com.dainis.spring_boot_library.service;
 import com.dainis.spring_boot_library.dao.MessageRepository;
 import com.dainis.spring_boot_library.entity.Message;
 import com.dainis.spring_boot_library.requestmodels.AdminQuestionRequest;
+import com.dainis.spring_boot_library.responsemodels.CursorPageResponse;
+import com.dainis.spring_boot_library.utils.KeysetCursor;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -73,4 +79,51 @@ public class MessagesServiceTest {
 
         verify(messageRepository, never()).save(any(Message.class));
     }
+
+    @Test
+    void testMessagesByUserReturnsCursorForNextPage() throws Exception {
+        String userEmail = "test@example.com";
+        PageRequest pageRequest = PageRequest.of(0, 2, Sort.by("id"));
+
+        Message first = new Message("First", "Question");
+        first.setId(5L);
+        Message second = new Message("Second", "Question");
+        second.setId(9L);
+
+        when(messageRepository.findByUserEmailAndIdGreaterThan(userEmail, 0L, pageRequest))
+                .thenReturn(new SliceImpl<>(List.of(first, second), pageRequest, true));
+
+        CursorPageResponse<Message> page = messagesService.messagesByUser(userEmail, null, 2);
+
+        assertEquals(2, page.getContent().size());
+        assertTrue(page.isHasNext());
+        assertEquals(9L, KeysetCursor.decode(page.getNextCursor()));
+    }
+
+    @Test
+    void testMessagesByClosedLastPageHasNoCursor() throws Exception {
+        PageRequest pageRequest = PageRequest.of(0, 2, Sort.by("id"));
+        String cursor = KeysetCursor.encode(9L);
+
+        Message last = new Message("Last", "Question");
+        last.setId(12L);
+
+        when(messageRepository.findByClosedAndIdGreaterThan(false, 9L, pageRequest))
+                .thenReturn(new SliceImpl<>(List.of(last), pageRequest, false));
+
+        CursorPageResponse<Message> page = messagesService.messagesByClosed(false, cursor, 2);
+
+        assertEquals(1, page.getContent().size());
+        assertFalse(page.isHasNext());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void testMessagesByUserRejectsInvalidCursor() {
+        Exception exception = assertThrows(Exception.class,
+                () -> messagesService.messagesByUser("test@example.com", "not-a-cursor", 2));
+
+        assertEquals("Invalid cursor", exception.getMessage());
+        verifyNoInteractions(messageRepository);
+    }
 }
@@ -0,0 +1,161 @@
+package com.dainis.spring_boot_library.service;
+
+import com.dainis.spring_boot_library.dao.FeeLedgerRepository;
+import com.dainis.spring_boot_library.dao.PaymentRepository;
+import com.dainis.spring_boot_library.entity.FeeLedgerEntry;
+import com.dainis.spring_boot_library.entity.Payment;
+import com.dainis.spring_boot_library.requestmodels.PaymentInfoRequest;
+import com.dainis.spring_boot_library.utils.CircuitBreaker;
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.InvalidRequestException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+public class PaymentServiceTest {
+
+    private PaymentGateway paymentGateway = mock(PaymentGateway.class);
+
+    private FeeLedgerRepository feeLedgerRepository = mock(FeeLedgerRepository.class);
+
+    private PaymentRepository paymentRepository = mock(PaymentRepository.class);
+
+    private PaymentService paymentService;
+
+    @AfterEach
+    void tearDown() {
+        paymentService.shutdown();
+    }
+
+    private PaymentService paymentService(int threads, int queueCapacity, Duration deadline, int failureThreshold,
+                                          Duration openDuration) {
+        paymentService = new PaymentService(feeLedgerRepository, paymentRepository, paymentGateway, threads,
+                queueCapacity, deadline, failureThreshold, openDuration);
+        return paymentService;
+    }
+
+    private static PaymentInfoRequest request() {
+        PaymentInfoRequest request = new PaymentInfoRequest();
+        request.setAmount(1500);
+        request.setCurrency("USD");
+        return request;
+    }
+
+    private static String failure(CompletableFuture<String> future) throws Exception {
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        return e.getCause().getMessage();
+    }
+
+    @Test
+    void testCreatePaymentIntentRunsOnGatewayThread() throws Exception {
+        paymentService(2, 2, Duration.ofSeconds(5), 5, Duration.ofSeconds(30));
+        when(paymentGateway.createPaymentIntent(any(), any())).thenAnswer(invocation ->
+                "{\"thread\":\"" + Thread.currentThread().getName() + "\"}");
+
+        String json = paymentService.createPaymentIntent(request(), null).get(5, TimeUnit.SECONDS);
+
+        assertTrue(json.contains("payment-gateway-"), json);
+    }
+
+    @Test
+    void testSlowGatewayMissesDeadline() throws Exception {
+        paymentService(2, 2, Duration.ofMillis(50), 5, Duration.ofSeconds(30));
+        when(paymentGateway.createPaymentIntent(any(), any())).thenAnswer(invocation -> {
+            Thread.sleep(1000);
+            return "{}";
+        });
+
+        assertEquals("Payment provider timed out", failure(paymentService.createPaymentIntent(request(), null)));
+    }
+
+    @Test
+    void testFullBulkheadRejectsStraightAway() throws Exception {
+        paymentService(1, 1, Duration.ofSeconds(5), 5, Duration.ofSeconds(30));
+        CountDownLatch release = new CountDownLatch(1);
+        when(paymentGateway.createPaymentIntent(any(), any())).thenAnswer(invocation -> {
+            release.await();
+            return "{}";
+        });
+
+        CompletableFuture<String> running = paymentService.createPaymentIntent(request(), null);
+        CompletableFuture<String> queued = paymentService.createPaymentIntent(request(), null);
+        CompletableFuture<String> rejected = paymentService.createPaymentIntent(request(), null);
+
+        assertEquals("Too many payments in progress, try again later", failure(rejected));
+
+        release.countDown();
+        assertEquals("{}", running.get(5, TimeUnit.SECONDS));
+        assertEquals("{}", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testCircuitOpensAfterConsecutiveFailuresAndClosesAfterTrial() throws Exception {
+        paymentService(2, 2, Duration.ofSeconds(5), 2, Duration.ofMillis(200));
+        when(paymentGateway.createPaymentIntent(any(), any()))
+                .thenThrow(new ApiConnectionException("Connection refused"))
+                .thenThrow(new ApiConnectionException("Connection refused"))
+                .thenReturn("{}");
+
+        assertEquals("Connection refused", failure(paymentService.createPaymentIntent(request(), null)));
+        assertEquals("Connection refused", failure(paymentService.createPaymentIntent(request(), null)));
+        assertEquals(CircuitBreaker.State.OPEN, paymentService.circuitState());
+
+        assertEquals("Payment provider unavailable, try again later",
+                failure(paymentService.createPaymentIntent(request(), null)));
+        verify(paymentGateway, times(2)).createPaymentIntent(any(), any());
+
+        Thread.sleep(250);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, paymentService.circuitState());
+        assertEquals("{}", paymentService.createPaymentIntent(request(), null).get(5, TimeUnit.SECONDS));
+        assertEquals(CircuitBreaker.State.CLOSED, paymentService.circuitState());
+    }
+
+    @Test
+    void testDeclinedRequestsDoNotOpenCircuit() throws Exception {
+        paymentService(2, 2, Duration.ofSeconds(5), 1, Duration.ofSeconds(30));
+        when(paymentGateway.createPaymentIntent(any(), any()))
+                .thenThrow(new InvalidRequestException("Amount must be at least 50 cents", "amount", null, null, 400, null));
+
+        assertEquals("Amount must be at least 50 cents", failure(paymentService.createPaymentIntent(request(), null)));
+        assertEquals(CircuitBreaker.State.CLOSED, paymentService.circuitState());
+    }
+
+    @Test
+    void testStripePaymentAppendsPaymentForBalance() throws Exception {
+        paymentService(1, 1, Duration.ofSeconds(5), 5, Duration.ofSeconds(30));
+        when(paymentRepository.findLockedByUserEmail("test@example.com")).thenReturn(new Payment());
+        when(feeLedgerRepository.findBalanceCents("test@example.com")).thenReturn(450L);
+
+        paymentService.stripePayment("test@example.com");
+
+        InOrder inOrder = inOrder(paymentRepository, feeLedgerRepository);
+        inOrder.verify(paymentRepository).findLockedByUserEmail("test@example.com");
+        inOrder.verify(feeLedgerRepository).findBalanceCents("test@example.com");
+        verify(feeLedgerRepository).save(argThat(entry -> entry.getUserEmail().equals("test@example.com")
+                && entry.getType() == FeeLedgerEntry.Type.PAYMENT_RECEIVED && entry.getAmountCents() == -450));
+    }
+
+    @Test
+    void testStripePaymentWithoutBalance() throws Exception {
+        paymentService(1, 1, Duration.ofSeconds(5), 5, Duration.ofSeconds(30));
+        when(paymentRepository.findLockedByUserEmail("paid@example.com")).thenReturn(new Payment());
+        when(feeLedgerRepository.findBalanceCents("paid@example.com")).thenReturn(0L);
+
+        paymentService.stripePayment("paid@example.com");
+
+        assertEquals("Payment information is missing",
+                assertThrows(Exception.class, () -> paymentService.stripePayment("new@example.com")).getMessage());
+        verify(feeLedgerRepository, never()).save(any());
+    }
+}
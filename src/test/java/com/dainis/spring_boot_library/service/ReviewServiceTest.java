@@ -1,14 +1,18 @@
 package com.dainis.spring_boot_library.service;
 
+import com.dainis.spring_boot_library.dao.BookRatingRepository;
 import com.dainis.spring_boot_library.dao.ReviewRepository;
+import com.dainis.spring_boot_library.entity.BookRating;
 import com.dainis.spring_boot_library.entity.Review;
 import com.dainis.spring_boot_library.requestmodels.ReviewRequest;
+import com.dainis.spring_boot_library.responsemodels.BookRatingResponse;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -20,6 +24,9 @@ public class ReviewServiceTest {
     @Mock
     private ReviewRepository reviewRepository;
 
+    @Mock
+    private BookRatingRepository bookRatingRepository;
+
     @InjectMocks
     private ReviewService reviewService;
 
@@ -38,6 +45,50 @@ public class ReviewServiceTest {
         assertDoesNotThrow(() -> reviewService.postReview(userEmail, reviewRequest));
 
         verify(reviewRepository, times(1)).save(any(Review.class));
+        verify(bookRatingRepository).addRating(bookId, 5, 5);
+    }
+
+    @Test
+    void testPostReviewRoundsRatingToStars() {
+        String userEmail = "test@example.com";
+        Long bookId = 1L;
+
+        ReviewRequest reviewRequest = new ReviewRequest();
+        reviewRequest.setBookId(bookId);
+        reviewRequest.setRating(3.5);
+        reviewRequest.setReviewDescription(Optional.empty());
+
+        assertDoesNotThrow(() -> reviewService.postReview(userEmail, reviewRequest));
+
+        verify(bookRatingRepository).addRating(bookId, 3.5, 4);
+        verify(bookRatingRepository, never()).save(any());
+    }
+
+    @Test
+    void testBookRating() {
+        BookRating rating = new BookRating(1L);
+        rating.setReviewCount(4);
+        rating.setRatingSum(14);
+        rating.setStars3(2);
+        rating.setStars4(2);
+
+        when(bookRatingRepository.findById(1L)).thenReturn(Optional.of(rating));
+
+        BookRatingResponse response = reviewService.bookRating(1L);
+
+        assertEquals(4, response.getReviewCount());
+        assertEquals(3.5, response.getAverageRating(), 0.001);
+        assertEquals(List.of(0L, 0L, 2L, 2L, 0L), response.getHistogram());
+    }
+
+    @Test
+    void testBookRatingWithoutReviews() {
+        when(bookRatingRepository.findById(1L)).thenReturn(Optional.empty());
+
+        BookRatingResponse response = reviewService.bookRating(1L);
+
+        assertEquals(0, response.getReviewCount());
+        assertEquals(0, response.getAverageRating());
     }
 
     @Test
@@ -56,5 +107,6 @@ public class ReviewServiceTest {
         assertTrue(exception.getMessage().equals("Review already created"));
 
         verify(reviewRepository, never()).save(any(Review.class));
+        verifyNoInteractions(bookRatingRepository);
     }
 }
@@ -0,0 +1,108 @@
+package com.dainis.spring_boot_library.service;
+
+import com.dainis.spring_boot_library.config.CacheConfiguration;
+import com.dainis.spring_boot_library.dao.CheckoutRepository;
+import com.dainis.spring_boot_library.entity.Checkout;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ShelfSummaryCacheTest {
+
+    private static final String USER_EMAIL = "test@example.com";
+
+    @Mock
+    private CheckoutRepository checkoutRepository;
+
+    private ShelfSummaryCache shelfSummaryCache;
+
+    @BeforeEach
+    void setUp() {
+        var cacheManager = new CacheConfiguration().cacheManager(100, Duration.ofMinutes(10), 100, Duration.ofMinutes(1), 100, Duration.ofHours(24), 100, Duration.ofMinutes(10));
+        shelfSummaryCache = new ShelfSummaryCache(cacheManager, checkoutRepository);
+    }
+
+    @Test
+    void testLoadsOnceThenServesFromCache() {
+        LocalDate dueDate = LocalDate.now().plusDays(3);
+        when(checkoutRepository.findBooksByUserEmail(USER_EMAIL)).thenReturn(List.of(
+                new Checkout(USER_EMAIL, LocalDate.now(), dueDate, 1L),
+                new Checkout(USER_EMAIL, LocalDate.now(), dueDate.plusDays(2), 2L)));
+
+        assertEquals(2, shelfSummaryCache.get(USER_EMAIL).loanCount());
+        assertTrue(shelfSummaryCache.get(USER_EMAIL).isCheckedOut(2L));
+        assertEquals(dueDate, shelfSummaryCache.get(USER_EMAIL).nearestDueDate());
+
+        verify(checkoutRepository, times(1)).findBooksByUserEmail(USER_EMAIL);
+    }
+
+    @Test
+    void testLoanChangesUpdateCachedSummary() {
+        when(checkoutRepository.findBooksByUserEmail(USER_EMAIL)).thenReturn(Collections.emptyList());
+        shelfSummaryCache.get(USER_EMAIL);
+
+        shelfSummaryCache.loanAdded(USER_EMAIL, 1L, LocalDate.now().plusDays(7));
+        assertTrue(shelfSummaryCache.get(USER_EMAIL).isCheckedOut(1L));
+
+        shelfSummaryCache.loanRemoved(USER_EMAIL, 1L);
+        assertEquals(0, shelfSummaryCache.get(USER_EMAIL).loanCount());
+
+        verify(checkoutRepository, times(1)).findBooksByUserEmail(USER_EMAIL);
+    }
+
+    @Test
+    void testLoanAddedWhileLoadingIsApplied() {
+        when(checkoutRepository.findBooksByUserEmail(USER_EMAIL)).thenAnswer(invocation -> {
+            // A loan committed while this read is in flight
+            shelfSummaryCache.loanAdded(USER_EMAIL, 1L, LocalDate.now().plusDays(7));
+            return Collections.emptyList();
+        });
+
+        shelfSummaryCache.get(USER_EMAIL);
+
+        assertTrue(shelfSummaryCache.get(USER_EMAIL).isCheckedOut(1L));
+        verify(checkoutRepository, times(1)).findBooksByUserEmail(USER_EMAIL);
+    }
+
+    @Test
+    void testLoanChangesWaitForCommit() {
+        when(checkoutRepository.findBooksByUserEmail(USER_EMAIL)).thenReturn(Collections.emptyList());
+        shelfSummaryCache.get(USER_EMAIL);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            shelfSummaryCache.loanAdded(USER_EMAIL, 1L, LocalDate.now().plusDays(7));
+            assertFalse(shelfSummaryCache.get(USER_EMAIL).isCheckedOut(1L), "Uncommitted loan must not be visible");
+
+            for(TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCommit();
+            }
+
+            assertTrue(shelfSummaryCache.get(USER_EMAIL).isCheckedOut(1L));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testLocalUpdatesDoNotPostponeReload() {
+        var expiry = ShelfSummaryCache.expireAfterLoad(Duration.ofSeconds(30));
+
+        assertEquals(Duration.ofSeconds(30).toNanos(), expiry.expireAfterCreate(USER_EMAIL, "summary", 0));
+        assertEquals(5L, expiry.expireAfterUpdate(USER_EMAIL, "summary", 0, 5L));
+        assertEquals(5L, expiry.expireAfterRead(USER_EMAIL, "summary", 0, 5L));
+    }
+}
@@ -0,0 +1,72 @@
+package com.dainis.spring_boot_library.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    static class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    private final MutableClock clock = new MutableClock();
+
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker(1, Duration.ofSeconds(30), clock);
+
+    @Test
+    @DisplayName("A late success from a call started before the breaker opened leaves it open")
+    void testLateSuccessDoesNotCloseBreaker() {
+        CircuitBreaker.Permit slow = circuitBreaker.tryAcquire();
+        circuitBreaker.onFailure(circuitBreaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.state());
+
+        circuitBreaker.onSuccess(slow);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.state());
+        assertNull(circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    @DisplayName("Only the half-open trial closes the breaker, and a late failure does not free the trial")
+    void testTrialClosesBreaker() {
+        CircuitBreaker.Permit slow = circuitBreaker.tryAcquire();
+        circuitBreaker.onFailure(circuitBreaker.tryAcquire());
+
+        clock.advance(Duration.ofSeconds(31));
+        CircuitBreaker.Permit trial = circuitBreaker.tryAcquire();
+        assertTrue(trial.trial());
+
+        circuitBreaker.onFailure(slow);
+        assertNull(circuitBreaker.tryAcquire());
+
+        circuitBreaker.onSuccess(trial);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.state());
+    }
+}
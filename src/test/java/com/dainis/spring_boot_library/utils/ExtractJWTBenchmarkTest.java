@@ -0,0 +1,120 @@
+package com.dainis.spring_boot_library.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.lang.management.ManagementFactory;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Time and allocation per call of the byte scanner against the split-based extractor it replaced,
+ * on an Okta-sized access token. Each round is timed after a warm-up, and the best round is reported.
+ * <p>
+ * Skipped in the normal build. Run with
+ * {@code mvn test -Dtest=ExtractJWTBenchmarkTest -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ExtractJWTBenchmarkTest {
+
+    private static final int WARMUP_ROUNDS = 5;
+
+    private static final int ROUNDS = 10;
+
+    private static final int CALLS_PER_ROUND = 200_000;
+
+    private static final String TOKEN = ExtractJWTTest.token("{\"ver\":1,\"jti\":\"AT.kMkN3bVqJvC0pS2n8yZ1\"," +
+            "\"iss\":\"https://dev-123456.okta.com/oauth2/default\",\"aud\":\"api://default\",\"iat\":1700000000," +
+            "\"exp\":1700003600,\"cid\":\"0oa1b2c3d4e5f6g7h8i9\",\"uid\":\"00u1a2b3c4d5e6f7g8h9\"," +
+            "\"scp\":[\"openid\",\"profile\",\"email\"],\"auth_time\":1699999990,\"sub\":\"reader@example.com\"," +
+            "\"email\":\"reader@example.com\",\"userType\":\"admin\"}");
+
+    private static volatile Object sink;
+
+    @Test
+    void compareExtractors() {
+        assertEquals("reader@example.com", legacyPayloadJWTExtraction(TOKEN, "\"email\""));
+        assertEquals("reader@example.com", ExtractJWT.payloadJWTExtraction(TOKEN, "\"email\""));
+
+        Result legacy = measure("split", () -> legacyPayloadJWTExtraction(TOKEN, "\"email\""));
+        Result scanner = measure("scanner", () -> ExtractJWT.payloadJWTExtraction(TOKEN, "\"email\""));
+        Result twoClaims = measure("scanner x2", () -> ExtractJWT.extractClaims(TOKEN, "email", "userType"));
+
+        System.out.printf("%n%-11s %10s %12s%n", "extractor", "ns/op", "bytes/op");
+        for(Result result : new Result[] { legacy, scanner, twoClaims }) {
+            System.out.printf("%-11s %10.1f %12.0f%n", result.name(), result.nanosPerCall(), result.bytesPerCall());
+        }
+    }
+
+    private static Result measure(String name, Supplier<Object> call) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+
+        double bestNanos = Double.MAX_VALUE;
+        double bestBytes = Double.MAX_VALUE;
+
+        for(int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            long allocated = threads.getThreadAllocatedBytes(threadId);
+            long started = System.nanoTime();
+
+            for(int i = 0; i < CALLS_PER_ROUND; i++) {
+                sink = call.get();
+            }
+
+            double nanos = (double) (System.nanoTime() - started) / CALLS_PER_ROUND;
+            double bytes = (double) (threads.getThreadAllocatedBytes(threadId) - allocated) / CALLS_PER_ROUND;
+
+            if(round >= WARMUP_ROUNDS) {
+                bestNanos = Math.min(bestNanos, nanos);
+                bestBytes = Math.min(bestBytes, bytes);
+            }
+        }
+
+        return new Result(name, bestNanos, bestBytes);
+    }
+
+    /**
+     * ExtractJWT.payloadJWTExtraction as it was before the scanner.
+     */
+    private static String legacyPayloadJWTExtraction(String token, String extraction) {
+
+        token = token.replace("Bearer ", "");
+
+        String[] chunks = token.split("\\.");
+        Base64.Decoder decoder = Base64.getUrlDecoder();
+
+        String payload = new String(decoder.decode(chunks[1]));
+
+        String[] entries = payload.split(",");
+        Map<String, String> map = new HashMap<String, String>();
+
+        for(String entry : entries) {
+            String[] keyValue = entry.split(":");
+
+            if(keyValue[0].equals(extraction)) {
+                int remove = 1;
+
+                if(keyValue[1].equals("}")) {
+                    remove = 2;
+                }
+
+                keyValue[1] = keyValue[1].substring(0, keyValue[1].length() - remove);
+                keyValue[1] = keyValue[1].substring(1);
+
+                map.put(keyValue[0], keyValue[1]);
+            }
+        }
+
+        if(map.containsKey(extraction)) {
+            return map.get(extraction);
+        }
+
+        return null;
+    }
+
+    private record Result(String name, double nanosPerCall, double bytesPerCall) {}
+}
@@ -0,0 +1,85 @@
+package com.dainis.spring_boot_library.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExtractJWTTest {
+
+    static String token(String payload) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return "Bearer " + encoder.encodeToString("{\"alg\":\"RS256\"}".getBytes(StandardCharsets.UTF_8)) + "."
+                + encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + ".signature";
+    }
+
+    @Test
+    @DisplayName("Reads a claim by plain or quoted name")
+    void testPayloadJWTExtraction() {
+        String token = token("{\"sub\":\"00u1\",\"email\":\"test@example.com\",\"userType\":\"admin\"}");
+
+        assertEquals("test@example.com", ExtractJWT.payloadJWTExtraction(token, "\"email\""));
+        assertEquals("admin", ExtractJWT.payloadJWTExtraction(token, "userType"));
+        assertNull(ExtractJWT.payloadJWTExtraction(token, "name"));
+    }
+
+    @Test
+    @DisplayName("Reads several claims in one pass, whatever their type")
+    void testExtractClaims() {
+        String token = token("{ \"exp\" : 1700000000, \"groups\": [\"a,b\", {\"c\": \"}\"}], " +
+                "\"email_verified\": true, \"email\": \"test@example.com\" }");
+
+        assertArrayEquals(new String[] { "test@example.com", "1700000000", "[\"a,b\", {\"c\": \"}\"}]", "true", null },
+                ExtractJWT.extractClaims(token, "email", "exp", "groups", "email_verified", "missing"));
+    }
+
+    @Test
+    @DisplayName("Commas, colons, escapes and non-ASCII text inside values survive")
+    void testValuesWithSeparators() {
+        String token = token("{\"name\":\"Doe, Jane: \\\"JD\\\" \\u00e9\\n\",\"city\":\"Rīga\",\"email\":\"a@b.c\"}");
+
+        assertArrayEquals(new String[] { "Doe, Jane: \"JD\" é\n", "Rīga", "a@b.c" },
+                ExtractJWT.extractClaims(token, "name", "city", "email"));
+    }
+
+    @Test
+    @DisplayName("Nested claims with the same name are not mistaken for top-level ones")
+    void testNestedClaim() {
+        String token = token("{\"address\":{\"email\":\"nested@example.com\"},\"email\":\"top@example.com\"}");
+
+        assertEquals("top@example.com", ExtractJWT.payloadJWTExtraction(token, "email"));
+    }
+
+    @Test
+    @DisplayName("Unreadable tokens give null claims")
+    void testMalformedTokens() {
+        assertNull(ExtractJWT.payloadJWTExtraction(null, "email"));
+        assertNull(ExtractJWT.payloadJWTExtraction("Bearer not-a-jwt", "email"));
+        assertNull(ExtractJWT.payloadJWTExtraction("Bearer a.%%%.c", "email"));
+        assertNull(ExtractJWT.payloadJWTExtraction(token("{\"email\":\"unterminated"), "email"));
+        assertNull(ExtractJWT.payloadJWTExtraction(token("[\"email\"]"), "email"));
+    }
+
+    @Test
+    @DisplayName("Non-ASCII characters in the encoded payload are rejected, not truncated to their low byte")
+    void testNonAsciiInEncodedPayload() {
+        String token = token("{\"email\":\"abcd@e.fg\"}");
+        int second = token.lastIndexOf('.');
+        // U+0141 has low byte 'A', so truncating it would decode as three trailing zero bytes
+        String tampered = token.substring(0, second) + "\u0141\u0141\u0141\u0141" + token.substring(second);
+
+        assertEquals("abcd@e.fg", ExtractJWT.payloadJWTExtraction(token, "email"));
+        assertNull(ExtractJWT.payloadJWTExtraction(tampered, "email"));
+    }
+
+    @Test
+    @DisplayName("Decodes every base64url padding length")
+    void testPaddingLengths() {
+        for(String email : new String[] { "a@b.c", "ab@b.c", "abc@b.c" }) {
+            assertEquals(email, ExtractJWT.payloadJWTExtraction(token("{\"email\":\"" + email + "\"}"), "email"));
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.dainis.spring_boot_library.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThumbnailsTest {
+
+    static String png(int width, int height) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", out);
+        return "data:image/png;base64," + Base64.getEncoder().encodeToString(out.toByteArray());
+    }
+
+    static BufferedImage decode(String dataUrl) throws Exception {
+        return ImageIO.read(new ByteArrayInputStream(
+                Base64.getDecoder().decode(dataUrl.substring(dataUrl.indexOf(',') + 1))));
+    }
+
+    @Test
+    @DisplayName("Large images are scaled down to fit the thumbnail size")
+    void testScalesLargeImage() throws Exception {
+        String thumbnail = Thumbnails.of(png(600, 400));
+
+        assertTrue(thumbnail.startsWith("data:image/jpeg;base64,"));
+        BufferedImage image = decode(thumbnail);
+        assertEquals(Thumbnails.SIZE, image.getWidth());
+        assertEquals(64, image.getHeight());
+    }
+
+    @Test
+    @DisplayName("Small images and short unreadable values are kept, long unreadable ones dropped")
+    void testKeepsSmallValues() throws Exception {
+        String small = png(40, 60);
+
+        assertEquals(small, Thumbnails.of(small));
+        assertEquals("Test Image", Thumbnails.of("Test Image"));
+        assertNull(Thumbnails.of("x".repeat(Thumbnails.MAX_INLINE_LENGTH + 1)));
+        assertNull(Thumbnails.of(null));
+    }
+}